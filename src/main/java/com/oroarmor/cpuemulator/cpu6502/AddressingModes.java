@@ -28,8 +28,6 @@ package com.oroarmor.cpuemulator.cpu6502;
  * The different types of addressing modes the 6502 processor supports
  */
 public final class AddressingModes {
-    private static int indirectReadAddress = -1;
-
     /**
      * Implied Addressing Mode
      *
@@ -149,13 +147,21 @@ public final class AddressingModes {
         }
 
         if (currentOpCycle == 3) {
-            cpu.setCurrentAddressPointer(cpu.getCurrentAddressPointer() + cpu.getXRegister());
-            return (cpu.getCurrentAddressPointer() & 0xFF00) == ((Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter() - 1))) << 8);
+            return addIndex(cpu, cpu.getXRegister());
         }
 
         return true;
     }
 
+    /**
+     * The same as {@link #absoluteX(int, CPU6502, Bus)}, but always takes the additional cycle, as instructions that write to memory do
+     *
+     * @see AddressingMode#address(int, CPU6502, Bus)
+     */
+    public static boolean absoluteXWrite(int currentOpCycle, CPU6502 cpu, Bus bus) {
+        return absoluteX(currentOpCycle, cpu, bus) && currentOpCycle > 3;
+    }
+
     /**
      * Loads the address from the address at <code>(PC + 1) << 8 + PC + Y</code> ({@link CPU6502#getProgramCounter}<code> = PC</code>, {@link CPU6502#getYRegister}<code> = Y</code>) into the {@link CPU6502#getCurrentAddressPointer()}<br>
      * This normally takes 3 cycles, but if adding <code>Y</code> causes the address to move into the next page, it will take an additional cycle
@@ -176,13 +182,21 @@ public final class AddressingModes {
         }
 
         if (currentOpCycle == 3) {
-            cpu.setCurrentAddressPointer(cpu.getCurrentAddressPointer() + cpu.getYRegister());
-            return (cpu.getCurrentAddressPointer() & 0xFF00) == (Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter() - 1))) << 8;
+            return addIndex(cpu, cpu.getYRegister());
         }
 
         return true;
     }
 
+    /**
+     * The same as {@link #absoluteY(int, CPU6502, Bus)}, but always takes the additional cycle, as instructions that write to memory do
+     *
+     * @see AddressingMode#address(int, CPU6502, Bus)
+     */
+    public static boolean absoluteYWrite(int currentOpCycle, CPU6502 cpu, Bus bus) {
+        return absoluteY(currentOpCycle, cpu, bus) && currentOpCycle > 3;
+    }
+
     /**
      * Loads the value that is pointed from the value the current program counter points to. <br>
      * <code>pc -> ind_addr -> value</code>
@@ -191,23 +205,23 @@ public final class AddressingModes {
      */
     public static boolean indirect(int currentOpCycle, CPU6502 cpu, Bus bus) {
         if (currentOpCycle == 1) {
-            indirectReadAddress = Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter()));
+            cpu.setIndirectReadAddress(Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter())));
             cpu.incrementProgramCounter();
             return false;
         }
         if (currentOpCycle == 2) {
-            indirectReadAddress |= Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter())) << 8;
+            cpu.setIndirectReadAddress(cpu.getIndirectReadAddress() | Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter())) << 8);
             cpu.incrementProgramCounter();
             return false;
         }
         if (currentOpCycle == 3) {
-            cpu.setCurrentAddressPointer(bus.readByte(indirectReadAddress));
+            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(cpu.getIndirectReadAddress())));
             return false;
         }
-        if ((indirectReadAddress & 0x00FF) == 0x00FF) {
-            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(indirectReadAddress & 0xFF00)) << 8 | cpu.getCurrentAddressPointer());
+        if ((cpu.getIndirectReadAddress() & 0x00FF) == 0x00FF) {
+            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(cpu.getIndirectReadAddress() & 0xFF00)) << 8 | cpu.getCurrentAddressPointer());
         } else {
-            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(indirectReadAddress + 1)) << 8 | cpu.getCurrentAddressPointer());
+            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(cpu.getIndirectReadAddress() + 1)) << 8 | cpu.getCurrentAddressPointer());
         }
         return true;
     }
@@ -220,18 +234,18 @@ public final class AddressingModes {
      */
     public static boolean indirectX(int currentOpCycle, CPU6502 cpu, Bus bus) {
         if (currentOpCycle == 1) {
-            indirectReadAddress = Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter()));
+            cpu.setIndirectReadAddress(Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter())));
             cpu.incrementProgramCounter();
             return false;
         }
 
         if (currentOpCycle == 2) {
-            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(indirectReadAddress + cpu.getXRegister())) & 0x00FF);
+            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte((cpu.getIndirectReadAddress() + cpu.getXRegister()) & 0x00FF)));
             return false;
         }
 
         if (currentOpCycle == 3) {
-            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte((indirectReadAddress + cpu.getXRegister() + 1) & 0x00FF)) << 8 | cpu.getCurrentAddressPointer());
+            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte((cpu.getIndirectReadAddress() + cpu.getXRegister() + 1) & 0x00FF)) << 8 | cpu.getCurrentAddressPointer());
             return false;
         }
 
@@ -246,29 +260,51 @@ public final class AddressingModes {
      */
     public static boolean indirectY(int currentOpCycle, CPU6502 cpu, Bus bus) {
         if (currentOpCycle == 1) {
-            indirectReadAddress = Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter()));
+            cpu.setIndirectReadAddress(Byte.toUnsignedInt(bus.readByte(cpu.getProgramCounter())));
             cpu.incrementProgramCounter();
             return false;
         }
 
         if (currentOpCycle == 2) {
-            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(indirectReadAddress & 0x00FF)));
+            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte(cpu.getIndirectReadAddress() & 0x00FF)));
             return false;
         }
 
         if (currentOpCycle == 3) {
-            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte((indirectReadAddress + 1) & 0x00FF)) << 8 | cpu.getCurrentAddressPointer());
+            cpu.setCurrentAddressPointer(Byte.toUnsignedInt(bus.readByte((cpu.getIndirectReadAddress() + 1) & 0x00FF)) << 8 | cpu.getCurrentAddressPointer());
             return false;
         }
 
         if (currentOpCycle == 4) {
-            cpu.setCurrentAddressPointer(cpu.getCurrentAddressPointer() + cpu.getYRegister());
-            return (cpu.getCurrentAddressPointer() & 0xFF00) == Byte.toUnsignedInt(bus.readByte((indirectReadAddress + 1) & 0x00FF)) << 8;
+            return addIndex(cpu, cpu.getYRegister());
         }
 
         return true;
     }
 
+    /**
+     * The same as {@link #indirectY(int, CPU6502, Bus)}, but always takes the additional cycle, as instructions that write to memory do
+     *
+     * @see AddressingMode#address(int, CPU6502, Bus)
+     */
+    public static boolean indirectYWrite(int currentOpCycle, CPU6502 cpu, Bus bus) {
+        return indirectY(currentOpCycle, cpu, bus) && currentOpCycle > 4;
+    }
+
+    /**
+     * Adds the unsigned value of an index register to the {@link CPU6502#getCurrentAddressPointer()}, wrapping at the end of memory
+     *
+     * @param cpu   The cpu
+     * @param index The index register
+     * @return True if the address stayed in the same page, false if the additional cycle is needed
+     */
+    private static boolean addIndex(CPU6502 cpu, int index) {
+        int base = cpu.getCurrentAddressPointer();
+        int address = (base + (index & 0xFF)) & 0xFFFF;
+        cpu.setCurrentAddressPointer(address);
+        return (address & 0xFF00) == (base & 0xFF00);
+    }
+
     /**
      * A functional interface for all addressing modes to use. <br>
      * Returning true signifies that this operation has loaded the address into {@link CPU6502#getCurrentAddressPointer()}, while false signifies it has more cycles to run.<br>
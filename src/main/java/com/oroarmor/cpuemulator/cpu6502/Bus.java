@@ -24,16 +24,27 @@
 
 package com.oroarmor.cpuemulator.cpu6502;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+
+import com.oroarmor.cpuemulator.cpu6502.events.PageTableEvent;
 
 /**
  * A wrapper class for the bus of the cpu. If two {@link BusDevice}s listen to the same location, the one added first
- * will be notified, and no other devices will be notified
+ * will be notified, and no other devices will be notified.<br>
+ * Accesses go through a table of 256 pages of 256 bytes. A page that one device fully handles is routed straight to it,
+ * and every other page scans the devices in order. Devices must be added with {@link #attachDevice(BusDevice)} so the
+ * table is rebuilt
  */
 public class Bus {
     public final List<BusDevice> devices = new ArrayList<>();
 
+    private final BusDevice[] pages = new BusDevice[256];
+    private final BusDevice[] mappedPages = new BusDevice[256];
+    private final BusDevice scanningDevice = new ScanningDevice();
+
     /**
      * Sets the byte at location to the new value
      *
@@ -41,12 +52,15 @@ public class Bus {
      * @param value    The value
      */
     public void writeByte(int location, byte value) {
-        for (BusDevice device : devices) {
-            if (device.isValidAddress(location)) {
-                device.writeValue(location, value);
-                return;
-            }
+        if ((location & ~0xFFFF) != 0) {
+            scanningDevice.writeValue(location, value);
+            return;
         }
+        BusDevice device = pages[location >>> 8];
+        if (device == null) {
+            device = resolvePage(location >>> 8);
+        }
+        device.writeValue(location, value);
     }
 
     /**
@@ -56,12 +70,121 @@ public class Bus {
      * @return The value
      */
     public byte readByte(int location) {
-        for (BusDevice device : devices) {
-            if (device.isValidAddress(location)) {
-                return device.readValue(location);
+        if ((location & ~0xFFFF) != 0) {
+            return scanningDevice.readValue(location);
+        }
+        BusDevice device = pages[location >>> 8];
+        if (device == null) {
+            device = resolvePage(location >>> 8);
+        }
+        return device.readValue(location);
+    }
+
+    /**
+     * Reads a block of bytes. The block is split where the devices handling it change, and each part is read with one call to
+     * {@link BusDevice#readValues(int, byte[], int, int)}. Locations no device listens to read as 0
+     *
+     * @param location    The first location
+     * @param destination The array to read into
+     * @param offset      The first index of the array to read into
+     * @param length      The number of bytes to read
+     */
+    public void readBytes(int location, byte[] destination, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, destination.length);
+        int end = location + length;
+        while (location < end) {
+            BusDevice device = getBlockDevice(location);
+            int blockEnd = getBlockEnd(location, end, device);
+            device.readValues(location, destination, offset, blockEnd - location);
+            offset += blockEnd - location;
+            location = blockEnd;
+        }
+    }
+
+    /**
+     * Writes a block of bytes. The block is split where the devices handling it change, and each part is written with one call to
+     * {@link BusDevice#writeValues(int, byte[], int, int)}
+     *
+     * @param location The first location
+     * @param source   The array to write from
+     * @param offset   The first index of the array to write from
+     * @param length   The number of bytes to write
+     */
+    public void writeBytes(int location, byte[] source, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        int end = location + length;
+        while (location < end) {
+            BusDevice device = getBlockDevice(location);
+            int blockEnd = getBlockEnd(location, end, device);
+            device.writeValues(location, source, offset, blockEnd - location);
+            offset += blockEnd - location;
+            location = blockEnd;
+        }
+    }
+
+    /**
+     * Reads bytes until the buffer is full
+     *
+     * @param location    The first location
+     * @param destination The buffer to read into, from its position to its limit
+     * @see #readBytes(int, byte[], int, int)
+     */
+    public void readBytes(int location, ByteBuffer destination) {
+        int limit = destination.limit();
+        int end = location + destination.remaining();
+        try {
+            while (location < end) {
+                BusDevice device = getBlockDevice(location);
+                int blockEnd = getBlockEnd(location, end, device);
+                destination.limit(destination.position() + blockEnd - location);
+                device.readValues(location, destination);
+                location = blockEnd;
             }
+        } finally {
+            destination.limit(limit);
         }
-        return 0;
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer
+     *
+     * @param location The first location
+     * @param source   The buffer to write from, from its position to its limit
+     * @see #writeBytes(int, byte[], int, int)
+     */
+    public void writeBytes(int location, ByteBuffer source) {
+        int limit = source.limit();
+        int end = location + source.remaining();
+        try {
+            while (location < end) {
+                BusDevice device = getBlockDevice(location);
+                int blockEnd = getBlockEnd(location, end, device);
+                source.limit(source.position() + blockEnd - location);
+                device.writeValues(location, source);
+                location = blockEnd;
+            }
+        } finally {
+            source.limit(limit);
+        }
+    }
+
+    private BusDevice getBlockDevice(int location) {
+        return (location & ~0xFFFF) != 0 ? scanningDevice : getPageDevice(location >>> 8);
+    }
+
+    /**
+     * Returns the end of the block starting at location that the device handles. Pages that scan the devices are
+     * handled one location at a time, and pages that are routed to the same device are joined
+     */
+    private int getBlockEnd(int location, int end, BusDevice device) {
+        if (device == scanningDevice) {
+            return location + 1;
+        }
+        int page = location >>> 8;
+        while (page < 0xFF && (page + 1) << 8 < end && getPageDevice(page + 1) == device) {
+            page++;
+        }
+        return Math.min(end, (page + 1) << 8);
     }
 
     /**
@@ -71,6 +194,269 @@ public class Bus {
      */
     public void attachDevice(BusDevice device) {
         devices.add(device);
+        System.arraycopy(mappedPages, 0, pages, 0, pages.length);
+        recordInvalidation(0, pages.length);
+    }
+
+    /**
+     * Attaches a device that is mirrored across a window of the bus, like a small RAM repeated over a larger range or a
+     * few registers repeated across a block of I/O space. The device is given the offset <code>(location - start) &amp; mask</code>
+     * instead of the location, and its {@link BusDevice#isValidAddress(int)} is not used. Pages the window fully covers are routed straight
+     * to the device, so the mask is the only work done for each access
+     *
+     * @param device The device
+     * @param start  The first location of the window
+     * @param end    The last location of the window
+     * @param mask   The mask applied to the offset into the window, one less than a power of two
+     */
+    public void attachMirroredDevice(BusDevice device, int start, int end, int mask) {
+        if (mask < 0 || (mask & (mask + 1)) != 0) {
+            throw new IllegalArgumentException(String.format("The mask must be one less than a power of two, %X was given", mask));
+        }
+        if (start > end) {
+            throw new IllegalArgumentException(String.format("The window must not be empty, %X to %X was given", start, end));
+        }
+        attachDevice(new MirroredDevice(device, start, end, mask));
+    }
+
+    /**
+     * Routes every access to a page to a device, ahead of the attached devices
+     *
+     * @param page   The page (address >> 8)
+     * @param device The device, or null to route the page to the attached devices again
+     * @return The device the page was mapped to before, or null if it was not mapped
+     */
+    public BusDevice mapPage(int page, BusDevice device) {
+        BusDevice previous = mappedPages[page];
+        mappedPages[page] = device;
+        pages[page] = device;
+        recordInvalidation(page, 1);
+        return previous;
+    }
+
+    /**
+     * Routes every access to a page to a device underneath the proxies mapped over the page, so the proxies keep forwarding to
+     * the device and the page is routed to it once they are removed. A page without proxies is mapped with {@link #mapPage(int, BusDevice)}
+     *
+     * @param page   The page (address >> 8)
+     * @param device The device
+     * @return The device the page was mapped to under the proxies, or null if it was not mapped
+     */
+    public BusDevice mapPageUnderProxies(int page, BusDevice device) {
+        if (!(mappedPages[page] instanceof PageProxy)) {
+            return mapPage(page, device);
+        }
+        PageProxy innermost = (PageProxy) mappedPages[page];
+        while (innermost.getPreviousMapping() instanceof PageProxy) {
+            innermost = (PageProxy) innermost.getPreviousMapping();
+        }
+        BusDevice previous = innermost.getPreviousMapping();
+        innermost.setDevice(device);
+        innermost.setPreviousMapping(device);
+        recordInvalidation(page, 1);
+        return previous;
+    }
+
+    /**
+     * Removes a proxy from a page. A proxy the page is still mapped to is replaced by the mapping it was put over, and one that
+     * other proxies have since been put over is unlinked from under them, so proxies can be removed in any order
+     *
+     * @param page  The page (address >> 8)
+     * @param proxy The proxy
+     * @return True if the proxy was found on the page
+     */
+    public boolean unmapPage(int page, PageProxy proxy) {
+        BusDevice device = mappedPages[page];
+        if (device == proxy) {
+            mapPage(page, proxy.getPreviousMapping());
+            return true;
+        }
+        while (device instanceof PageProxy) {
+            PageProxy outer = (PageProxy) device;
+            if (outer.getPreviousMapping() == proxy) {
+                outer.setDevice(proxy.getDevice());
+                outer.setPreviousMapping(proxy.getPreviousMapping());
+                return true;
+            }
+            device = outer.getPreviousMapping();
+        }
+        return false;
+    }
+
+    private static void recordInvalidation(int firstPage, int count) {
+        PageTableEvent event = new PageTableEvent();
+        if (event.shouldCommit()) {
+            event.firstPage = firstPage;
+            event.pages = count;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the device that handles every access to a page. For pages that are not handled by a single device,
+     * this device scans the attached devices in order
+     *
+     * @param page The page (address >> 8)
+     * @return The device
+     */
+    public BusDevice getPageDevice(int page) {
+        BusDevice device = pages[page];
+        return device == null ? resolvePage(page) : device;
+    }
+
+    /**
+     * Returns the device that handles a location, the same device {@link #readByte(int)} and {@link #writeByte(int, byte)} go to
+     *
+     * @param location The location
+     * @return The device, or null if no device listens to the location
+     */
+    public BusDevice getDevice(int location) {
+        if ((location & ~0xFFFF) != 0) {
+            return findDevice(location);
+        }
+        BusDevice device = getPageDevice(location >>> 8);
+        return device == scanningDevice ? findDevice(location) : device;
+    }
+
+    private BusDevice resolvePage(int page) {
+        BusDevice pageDevice = null;
+        for (int location = page << 8; location < (page + 1) << 8; location++) {
+            BusDevice device = findDevice(location);
+            if (device == null || (pageDevice != null && pageDevice != device)) {
+                pageDevice = scanningDevice;
+                break;
+            }
+            pageDevice = device;
+        }
+        pages[page] = pageDevice;
+        return pageDevice;
+    }
+
+    private BusDevice findDevice(int location) {
+        for (int i = 0; i < devices.size(); i++) {
+            BusDevice device = devices.get(i);
+            if (device.isValidAddress(location)) {
+                return device;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Scans the attached devices for every access
+     */
+    private class ScanningDevice implements BusDevice {
+        @Override
+        public byte readValue(int location) {
+            BusDevice device = findDevice(location);
+            return device == null ? 0 : device.readValue(location);
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+            BusDevice device = findDevice(location);
+            if (device != null) {
+                device.writeValue(location, value);
+            }
+        }
+
+        @Override
+        public boolean isValidAddress(int location) {
+            return true;
+        }
+    }
+
+    /**
+     * Gives a device the offset into its mirror instead of the location
+     */
+    private static final class MirroredDevice implements TimedDevice {
+        private final BusDevice device;
+        private final int start;
+        private final int end;
+        private final int mask;
+
+        private MirroredDevice(BusDevice device, int start, int end, int mask) {
+            this.device = device;
+            this.start = start;
+            this.end = end;
+            this.mask = mask;
+        }
+
+        @Override
+        public byte readValue(int location) {
+            return device.readValue((location - start) & mask);
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+            device.writeValue((location - start) & mask, value);
+        }
+
+        @Override
+        public boolean isValidAddress(int location) {
+            return location >= start && location <= end;
+        }
+
+        @Override
+        public void readValues(int location, byte[] destination, int offset, int length) {
+            while (length > 0) {
+                int mirrorOffset = (location - start) & mask;
+                int part = Math.min(length, mask + 1 - mirrorOffset);
+                device.readValues(mirrorOffset, destination, offset, part);
+                location += part;
+                offset += part;
+                length -= part;
+            }
+        }
+
+        @Override
+        public void writeValues(int location, byte[] source, int offset, int length) {
+            while (length > 0) {
+                int mirrorOffset = (location - start) & mask;
+                int part = Math.min(length, mask + 1 - mirrorOffset);
+                device.writeValues(mirrorOffset, source, offset, part);
+                location += part;
+                offset += part;
+                length -= part;
+            }
+        }
+
+        @Override
+        public void readValues(int location, ByteBuffer destination) {
+            int limit = destination.limit();
+            try {
+                while (destination.position() < limit) {
+                    int mirrorOffset = (location - start) & mask;
+                    int part = Math.min(limit - destination.position(), mask + 1 - mirrorOffset);
+                    destination.limit(destination.position() + part);
+                    device.readValues(mirrorOffset, destination);
+                    location += part;
+                }
+            } finally {
+                destination.limit(limit);
+            }
+        }
+
+        @Override
+        public void writeValues(int location, ByteBuffer source) {
+            int limit = source.limit();
+            try {
+                while (source.position() < limit) {
+                    int mirrorOffset = (location - start) & mask;
+                    int part = Math.min(limit - source.position(), mask + 1 - mirrorOffset);
+                    source.limit(source.position() + part);
+                    device.writeValues(mirrorOffset, source);
+                    location += part;
+                }
+            } finally {
+                source.limit(limit);
+            }
+        }
+
+        @Override
+        public long getNextEventCycle(int location, long cycle) {
+            return device instanceof TimedDevice ? ((TimedDevice) device).getNextEventCycle((location - start) & mask, cycle) : cycle;
+        }
     }
 
     /**
@@ -100,5 +486,118 @@ public class Bus {
          * @return True when the device listens to the location
          */
         boolean isValidAddress(int location);
+
+        /**
+         * Reads a block of values from this device. Every location in the block is a valid address of the device.
+         * Reads one value at a time by default, devices backed by an array can copy the block at once
+         *
+         * @param location    The first location to read from
+         * @param destination The array to read into
+         * @param offset      The first index of the array to read into
+         * @param length      The number of values to read
+         */
+        default void readValues(int location, byte[] destination, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = readValue(location + i);
+            }
+        }
+
+        /**
+         * Writes a block of values to this device. Every location in the block is a valid address of the device.
+         * Writes one value at a time by default, devices backed by an array can copy the block at once
+         *
+         * @param location The first location to write to
+         * @param source   The array to write from
+         * @param offset   The first index of the array to write from
+         * @param length   The number of values to write
+         */
+        default void writeValues(int location, byte[] source, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                writeValue(location + i, source[offset + i]);
+            }
+        }
+
+        /**
+         * Reads values from this device until the buffer is full
+         *
+         * @param location    The first location to read from
+         * @param destination The buffer to read into, from its position to its limit
+         * @see #readValues(int, byte[], int, int)
+         */
+        default void readValues(int location, ByteBuffer destination) {
+            int length = destination.remaining();
+            if (destination.hasArray()) {
+                readValues(location, destination.array(), destination.arrayOffset() + destination.position(), length);
+                destination.position(destination.position() + length);
+                return;
+            }
+            for (int i = 0; i < length; i++) {
+                destination.put(readValue(location + i));
+            }
+        }
+
+        /**
+         * Writes the remaining values of the buffer to this device
+         *
+         * @param location The first location to write to
+         * @param source   The buffer to write from, from its position to its limit
+         * @see #writeValues(int, byte[], int, int)
+         */
+        default void writeValues(int location, ByteBuffer source) {
+            int length = source.remaining();
+            if (source.hasArray()) {
+                writeValues(location, source.array(), source.arrayOffset() + source.position(), length);
+                source.position(source.position() + length);
+                return;
+            }
+            for (int i = 0; i < length; i++) {
+                writeValue(location + i, source.get());
+            }
+        }
+    }
+
+    /**
+     * A device that knows when the values it reads can change. Reading one of these devices never has a side effect until the cycle
+     * it returns, which lets a {@link CPU6502} with {@link CPU6502#setIdleLoopSkipping(boolean)} enabled skip over loops that only poll it
+     */
+    public interface TimedDevice extends BusDevice {
+        /**
+         * Returns the first cycle a read of the location might return a different value than a read at <code>cycle</code>
+         *
+         * @param location The location
+         * @param cycle    The current cpu cycle
+         * @return The cycle of the next event, {@link Long#MAX_VALUE} if only writes change the value, or <code>cycle</code> if reading the location has side effects
+         */
+        long getNextEventCycle(int location, long cycle);
+    }
+
+    /**
+     * A device mapped over a page with {@link #mapPage(int, BusDevice)} that forwards every access to the device the page was routed to
+     * before, such as a debugging proxy. Proxies stacked on the same page are removed with {@link #unmapPage(int, PageProxy)}
+     */
+    public interface PageProxy extends BusDevice {
+        /**
+         * @return The device accesses are forwarded to
+         */
+        BusDevice getDevice();
+
+        /**
+         * Sets the device accesses are forwarded to, when a proxy under this one is removed
+         *
+         * @param device The device
+         */
+        void setDevice(BusDevice device);
+
+        /**
+         * @return The device the page was mapped to before this proxy, or null if it was not mapped
+         */
+        BusDevice getPreviousMapping();
+
+        /**
+         * Sets the mapping restored when this proxy is removed
+         *
+         * @param previousMapping The mapping, or null to route the page to the attached devices
+         */
+        void setPreviousMapping(BusDevice previousMapping);
     }
 }
@@ -24,10 +24,20 @@
 
 package com.oroarmor.cpuemulator.cpu6502;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.oroarmor.cpuemulator.cpu6502.debug.Breakpoints;
+
 /**
  * A class representing the 6502 CPU and its registers
  */
 public class CPU6502 {
+    /**
+     * The number of bytes {@link #saveState(ByteBuffer)} writes
+     */
+    public static final int STATE_SIZE = 32;
+
     private final Flags flags = new Flags();
     private int programCounter = 0xFFFC;
     private int stackPointer = 0xFD;
@@ -40,6 +50,23 @@ public class CPU6502 {
     private int instructionStartCycle;
 
     private int currentAddressPointer = 0;
+    private int indirectReadAddress = -1;
+    private byte currentValue;
+
+    private long cycles;
+    private int stallCycles;
+
+    private Breakpoints breakpoints;
+    private boolean atBreakpoint;
+    private boolean skipBreakpoint;
+
+    private IdleLoopDetector idleLoopDetector;
+    private long instructions;
+
+    private SubroutineListener[] subroutineListeners = new SubroutineListener[0];
+    private Sampler sampler;
+    private long sampleInterval;
+    private long sampleCountdown = Long.MAX_VALUE;
 
     /**
      * Resets the CPU
@@ -53,25 +80,86 @@ public class CPU6502 {
         flags.fromByte((byte) 0b00000000);
         currentInstruction = null;
         currentInstructionCycle = 0;
+        cycles = 0;
+        instructions = 0;
+        stallCycles = 0;
+        atBreakpoint = false;
+        skipBreakpoint = false;
+        if (idleLoopDetector != null) {
+            idleLoopDetector.cancel();
+        }
     }
 
     /**
-     * Clocks the CPU once
+     * Clocks the CPU once. When the CPU is stopped at a breakpoint the clock is ignored until {@link #resume()} is called,
+     * and while the CPU is stalled the clock only counts down the stall
      *
      * @param bus The memory for the CPU
      */
     public void tick(Bus bus) {
+        if (currentInstruction == null && stallCycles == 0 && breakpoints != null && breakpoints.size() != 0 && checkBreakpoint()) {
+            return;
+        }
+
+        cycles++;
+        if (stallCycles != 0) {
+            stallCycles--;
+        } else if (currentInstruction == null) {
+            fetch(bus);
+        } else {
+            executeCycle(bus);
+        }
+
+        if (--sampleCountdown == 0) {
+            takeSample();
+        }
+    }
+
+    /**
+     * Runs the CPU to the end of the current instruction, or through the next instruction if it is between instructions.
+     * Has the same result as calling {@link #tick(Bus)} until {@link #isInstructionComplete()}, and a pending stall is run first
+     *
+     * @param bus The memory for the CPU
+     * @return The number of cycles that were run, 0 if the CPU is stopped at a breakpoint
+     */
+    public int step(Bus bus) {
+        long start = cycles;
+        runStall(stallCycles);
         if (currentInstruction == null) {
-            currentInstruction = CPU6502Instructions.getFrom(bus.readByte(programCounter));
-            if (currentInstruction == null || bus.readByte(programCounter) == 0x00) {
-                throw new UnsupportedOperationException(String.format("Unknown Op Code: %s", Integer.toHexString(bus.readByte(programCounter)).toUpperCase()));
+            if (breakpoints != null && breakpoints.size() != 0 && checkBreakpoint()) {
+                return 0;
+            }
+            cycles++;
+            fetch(bus);
+            if (--sampleCountdown == 0) {
+                takeSample();
+            }
+        }
+
+        while (currentInstruction != null) {
+            cycles++;
+            executeCycle(bus);
+            if (--sampleCountdown == 0) {
+                takeSample();
             }
-            programCounter++;
-            currentInstructionCycle = 1;
-            instructionStartCycle = -1;
-            return;
         }
+        return (int) (cycles - start);
+    }
 
+    private void fetch(Bus bus) {
+        byte opcode = bus.readByte(programCounter);
+        CPU6502Instructions instruction = CPU6502Instructions.getFrom(opcode);
+        if (instruction == null || opcode == 0x00) {
+            throw new UnsupportedOperationException(String.format("Unknown Op Code: %s", Integer.toHexString(Byte.toUnsignedInt(opcode)).toUpperCase()));
+        }
+        currentInstruction = instruction;
+        instructions++;
+        programCounter++;
+        currentInstructionCycle = 1;
+        instructionStartCycle = -1;
+    }
+
+    private void executeCycle(Bus bus) {
         if (currentInstructionCycle > currentInstruction.getMaxCycles()) {
             throw new IllegalArgumentException(String.format("%s only has %d operation(s), %d was requested", currentInstruction, currentInstruction.getMaxCycles(), currentInstructionCycle));
         }
@@ -89,6 +177,295 @@ public class CPU6502 {
         currentInstructionCycle++;
     }
 
+    /**
+     * Clocks the CPU for a batch of cycles, stopping early at a breakpoint. A stall is run as a single step
+     *
+     * @param bus    The memory for the CPU
+     * @param cycles The number of cycles to run
+     * @return The number of cycles that were run
+     * @see #setIdleLoopSkipping(boolean)
+     */
+    public long run(Bus bus, long cycles) {
+        if (idleLoopDetector != null) {
+            return idleLoopDetector.run(bus, cycles);
+        }
+        long ran = 0;
+        while (ran < cycles) {
+            if (stallCycles != 0) {
+                ran += runStall(cycles - ran);
+                continue;
+            }
+            tick(bus);
+            if (atBreakpoint) {
+                return ran;
+            }
+            ran++;
+        }
+        return ran;
+    }
+
+    /**
+     * Halts the CPU for a number of cycles, as a DMA transfer taking over the bus does. The cycles are added to any stall
+     * already pending, and the CPU carries on where it was once they have been clocked
+     *
+     * @param cycles The cycles to halt for
+     */
+    public void stall(int cycles) {
+        stallCycles += cycles;
+    }
+
+    /**
+     * @return The cycles left before a stalled CPU runs again
+     */
+    public int getStallCycles() {
+        return stallCycles;
+    }
+
+    /**
+     * Runs up to a number of the pending stall cycles at once
+     *
+     * @return The cycles run
+     */
+    long runStall(long maxCycles) {
+        int stalled = (int) Math.min(stallCycles, maxCycles);
+        stallCycles -= stalled;
+        skipCycles(stalled);
+        return stalled;
+    }
+
+    /**
+     * Adds a listener told about every subroutine call and return. Listeners are told in the order they were added
+     *
+     * @param subroutineListener The listener
+     */
+    public void addSubroutineListener(SubroutineListener subroutineListener) {
+        subroutineListeners = Arrays.copyOf(subroutineListeners, subroutineListeners.length + 1);
+        subroutineListeners[subroutineListeners.length - 1] = subroutineListener;
+    }
+
+    /**
+     * Removes a listener added with {@link #addSubroutineListener(SubroutineListener)}
+     *
+     * @param subroutineListener The listener
+     */
+    public void removeSubroutineListener(SubroutineListener subroutineListener) {
+        for (int i = 0; i < subroutineListeners.length; i++) {
+            if (subroutineListeners[i] == subroutineListener) {
+                SubroutineListener[] listeners = new SubroutineListener[subroutineListeners.length - 1];
+                System.arraycopy(subroutineListeners, 0, listeners, 0, i);
+                System.arraycopy(subroutineListeners, i + 1, listeners, i, listeners.length - i);
+                subroutineListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The subroutine listeners in the order they are told
+     */
+    public SubroutineListener[] getSubroutineListeners() {
+        return subroutineListeners.clone();
+    }
+
+    /**
+     * Tells every {@link SubroutineListener} about a finished <code>JSR</code>
+     *
+     * @param target The address of the subroutine
+     */
+    public void notifySubroutineCall(int target) {
+        for (SubroutineListener listener : subroutineListeners) {
+            listener.onCall(this, target);
+        }
+    }
+
+    /**
+     * Tells every {@link SubroutineListener} about a finished <code>RTS</code>
+     */
+    public void notifySubroutineReturn() {
+        for (SubroutineListener listener : subroutineListeners) {
+            listener.onReturn(this);
+        }
+    }
+
+    /**
+     * Sets a sampler that is called every time a number of cycles have been clocked. Counting down to the next sample is
+     * the only cost while no sample is due, and cycles that are skipped or stalled through at once are sampled as if they were clocked
+     *
+     * @param sampler        The sampler, or null to stop sampling
+     * @param intervalCycles The cycles between samples
+     */
+    public void setSampler(Sampler sampler, long intervalCycles) {
+        if (sampler != null && intervalCycles <= 0) {
+            throw new IllegalArgumentException(String.format("Sample interval must be positive, %d was given", intervalCycles));
+        }
+        this.sampler = sampler;
+        this.sampleInterval = intervalCycles;
+        this.sampleCountdown = sampler == null ? Long.MAX_VALUE : intervalCycles;
+    }
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    private void takeSample() {
+        sampleCountdown = sampleInterval;
+        sampler.sample(this);
+    }
+
+    private boolean checkBreakpoint() {
+        if (atBreakpoint) {
+            return true;
+        }
+        if (skipBreakpoint) {
+            skipBreakpoint = false;
+            return false;
+        }
+        atBreakpoint = breakpoints.shouldBreak(this);
+        return atBreakpoint;
+    }
+
+    /**
+     * Continues after the CPU stopped at a breakpoint. The instruction at the breakpoint runs on the next clock
+     */
+    public void resume() {
+        skipBreakpoint = atBreakpoint;
+        atBreakpoint = false;
+    }
+
+    /**
+     * @return True when the CPU is stopped before the instruction at a breakpoint
+     */
+    public boolean isAtBreakpoint() {
+        return atBreakpoint;
+    }
+
+    /**
+     * Sets the breakpoints the CPU checks at every instruction fetch
+     *
+     * @param breakpoints The breakpoints, or null to remove them
+     */
+    public void setBreakpoints(Breakpoints breakpoints) {
+        this.breakpoints = breakpoints;
+        atBreakpoint = false;
+        skipBreakpoint = false;
+    }
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+
+    /**
+     * Enables skipping idle loops in {@link #run(Bus, long)}. A loop that writes nothing, only reads from {@link Bus.TimedDevice}s,
+     * and leaves the registers as they were is fast-forwarded to the next event of the devices it reads, or to the end of the batch.
+     * The cycles and the final state are the same as running it, but devices that are not {@link Bus.TimedDevice}s stop the loop from being skipped.
+     * {@link #tick(Bus)} and {@link #step(Bus)} never skip
+     *
+     * @param enabled True to skip idle loops
+     */
+    public void setIdleLoopSkipping(boolean enabled) {
+        if (enabled != (idleLoopDetector != null)) {
+            idleLoopDetector = enabled ? new IdleLoopDetector(this) : null;
+        }
+    }
+    public boolean isIdleLoopSkipping() {
+        return idleLoopDetector != null;
+    }
+
+    /**
+     * @return The cycles {@link #run(Bus, long)} skipped instead of running since idle loop skipping was enabled
+     */
+    public long getSkippedCycles() {
+        return idleLoopDetector == null ? 0 : idleLoopDetector.getSkippedCycles();
+    }
+
+    void skipCycles(long skipped) {
+        cycles += skipped;
+        if (sampler != null) {
+            sampleCountdown -= skipped;
+            while (sampleCountdown <= 0) {
+                sampleCountdown += sampleInterval;
+                sampler.sample(this);
+            }
+        }
+    }
+
+    void skipInstructions(long skipped) {
+        instructions += skipped;
+    }
+
+    /**
+     * @return The number of instructions the CPU has started since it was created or last reset. The count is not part of the saved state
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return True when the last clock finished an instruction and the next clock fetches a new one
+     */
+    public boolean isInstructionComplete() {
+        return currentInstruction == null;
+    }
+
+    /**
+     * Writes the registers, the progress of the current instruction and the pending stall, {@link #STATE_SIZE} bytes in total.
+     * The current instruction is saved as its opcode, so saved states do not depend on the order of {@link CPU6502Instructions}
+     *
+     * @param buffer The buffer to write to
+     */
+    public void saveState(ByteBuffer buffer) {
+        buffer.putShort((short) programCounter);
+        buffer.put((byte) stackPointer);
+        buffer.put((byte) accumulator);
+        buffer.put((byte) xRegister);
+        buffer.put((byte) yRegister);
+        buffer.put(flags.toByte());
+        buffer.putLong(cycles);
+        buffer.putShort((short) (currentInstruction == null ? -1 : Byte.toUnsignedInt(currentInstruction.getCode())));
+        buffer.put((byte) currentInstructionCycle);
+        buffer.put((byte) instructionStartCycle);
+        buffer.putInt(currentAddressPointer);
+        buffer.putInt(indirectReadAddress);
+        buffer.put(currentValue);
+        buffer.putInt(stallCycles);
+    }
+
+    /**
+     * Reads the state written by {@link #saveState(ByteBuffer)}. The CPU is no longer stopped at a breakpoint
+     *
+     * @param buffer The buffer to read from
+     */
+    public void loadState(ByteBuffer buffer) {
+        programCounter = Short.toUnsignedInt(buffer.getShort());
+        stackPointer = Byte.toUnsignedInt(buffer.get());
+        accumulator = buffer.get();
+        xRegister = buffer.get();
+        yRegister = buffer.get();
+        flags.fromByte(buffer.get());
+        cycles = buffer.getLong();
+        short instruction = buffer.getShort();
+        currentInstruction = instruction == -1 ? null : CPU6502Instructions.getFrom((byte) instruction);
+        if (instruction != -1 && ((instruction & ~0xFF) != 0 || currentInstruction == null || currentInstruction.getInstructionProcessor() == null)) {
+            throw new IllegalArgumentException(String.format("The saved state has an unknown opcode %X", instruction));
+        }
+        currentInstructionCycle = buffer.get();
+        instructionStartCycle = buffer.get();
+        currentAddressPointer = buffer.getInt();
+        indirectReadAddress = buffer.getInt();
+        currentValue = buffer.get();
+        stallCycles = buffer.getInt();
+        atBreakpoint = false;
+        skipBreakpoint = false;
+        if (idleLoopDetector != null) {
+            idleLoopDetector.cancel();
+        }
+    }
+
+    /**
+     * @return The number of cycles the CPU has been clocked since it was created or last reset
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
     public int getCurrentAddressPointer() {
         return currentAddressPointer;
     }
@@ -96,6 +473,26 @@ public class CPU6502 {
         this.currentAddressPointer = currentAddressPointer;
     }
 
+    /**
+     * @return The pointer an indirect {@link AddressingModes.AddressingMode} reads the address from
+     */
+    public int getIndirectReadAddress() {
+        return indirectReadAddress;
+    }
+    public void setIndirectReadAddress(int indirectReadAddress) {
+        this.indirectReadAddress = indirectReadAddress;
+    }
+
+    /**
+     * @return The value an instruction that spans multiple cycles is operating on
+     */
+    public byte getCurrentValue() {
+        return currentValue;
+    }
+    public void setCurrentValue(byte currentValue) {
+        this.currentValue = currentValue;
+    }
+
     public int getProgramCounter() {
         return programCounter;
     }
@@ -113,10 +510,10 @@ public class CPU6502 {
         this.stackPointer = stackPointer;
     }
     public void incrementStackPointer() {
-        this.stackPointer++;
+        this.stackPointer = (this.stackPointer + 1) & 0xFF;
     }
     public void decrementStackPointer() {
-        this.stackPointer--;
+        this.stackPointer = (this.stackPointer - 1) & 0xFF;
     }
 
     public int getAccumulator() {
@@ -143,4 +540,33 @@ public class CPU6502 {
     public Flags getFlags() {
         return flags;
     }
+
+    /**
+     * Told about every <code>JSR</code> and <code>RTS</code> as it finishes
+     */
+    public interface SubroutineListener {
+        /**
+         * @param cpu    The cpu, with the program counter at the start of the subroutine
+         * @param target The address of the subroutine
+         */
+        void onCall(CPU6502 cpu, int target);
+
+        /**
+         * @param cpu The cpu, with the program counter at the return address
+         */
+        void onReturn(CPU6502 cpu);
+    }
+
+    /**
+     * Called by the cpu at a fixed interval of cycles
+     *
+     * @see #setSampler(Sampler, long)
+     */
+    @FunctionalInterface
+    public interface Sampler {
+        /**
+         * @param cpu The cpu
+         */
+        void sample(CPU6502 cpu);
+    }
 }
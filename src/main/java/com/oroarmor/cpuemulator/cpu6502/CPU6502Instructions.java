@@ -24,8 +24,6 @@
 
 package com.oroarmor.cpuemulator.cpu6502;
 
-import java.util.Arrays;
-
 import com.oroarmor.cpuemulator.cpu6502.instructions.*;
 
 // regex : (\w*\((0x\S*), (\w*)::(\w*), AddressingModes::(\w*)\, (\d)\),?)
@@ -129,21 +127,21 @@ public enum CPU6502Instructions {
      */
     STA_ABS(0x8D, StoreOperations::storeAccumulator, AddressingModes::absolute, 4),
     /**
-     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteX(int, CPU6502, Bus)}, Opcode: <code>0x9D</code>, Max Cycles: 5
+     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteXWrite(int, CPU6502, Bus)}, Opcode: <code>0x9D</code>, Max Cycles: 5
      */
-    STA_ABSX(0x9D, StoreOperations::storeAccumulator, AddressingModes::absoluteX, 5),
+    STA_ABSX(0x9D, StoreOperations::storeAccumulator, AddressingModes::absoluteXWrite, 5),
     /**
-     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteY(int, CPU6502, Bus)}, Opcode: <code>0x99</code>, Max Cycles: 5
+     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteYWrite(int, CPU6502, Bus)}, Opcode: <code>0x99</code>, Max Cycles: 5
      */
-    STA_ABSY(0x99, StoreOperations::storeAccumulator, AddressingModes::absoluteY, 5),
+    STA_ABSY(0x99, StoreOperations::storeAccumulator, AddressingModes::absoluteYWrite, 5),
     /**
-     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectX(int, CPU6502, Bus)}, Opcode: <code>0x9D</code>, Max Cycles: 6
+     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectX(int, CPU6502, Bus)}, Opcode: <code>0x81</code>, Max Cycles: 6
      */
-    STA_INX(0x9D, StoreOperations::storeAccumulator, AddressingModes::indirectX, 6),
+    STA_INX(0x81, StoreOperations::storeAccumulator, AddressingModes::indirectX, 6),
     /**
-     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectY(int, CPU6502, Bus)}, Opcode: <code>0x99</code>, Max Cycles: 6
+     * Runs {@link StoreOperations#storeAccumulator(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectYWrite(int, CPU6502, Bus)}, Opcode: <code>0x91</code>, Max Cycles: 6
      */
-    STA_INY(0x99, StoreOperations::storeAccumulator, AddressingModes::indirectY, 6),
+    STA_INY(0x91, StoreOperations::storeAccumulator, AddressingModes::indirectYWrite, 6),
 
     /* STX Operations */
     /**
@@ -183,17 +181,86 @@ public enum CPU6502Instructions {
      */
     TAY(0xA8, TransferOperations::transferAY, AddressingModes::implied, 2),
     /**
-     * Runs {@link TransferOperations#transferXA(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#implied(int, CPU6502, Bus)}, Opcode: <code>0xBA</code>, Max Cycles: 2
+     * Runs {@link TransferOperations#transferXA(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#implied(int, CPU6502, Bus)}, Opcode: <code>0x8A</code>, Max Cycles: 2
      */
-    TXA(0xBA, TransferOperations::transferXA, AddressingModes::implied, 2),
+    TXA(0x8A, TransferOperations::transferXA, AddressingModes::implied, 2),
     /**
-     * Runs {@link TransferOperations#transferYA(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#implied(int, CPU6502, Bus)}, Opcode: <code>0x8A</code>, Max Cycles: 2
+     * Runs {@link TransferOperations#transferYA(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#implied(int, CPU6502, Bus)}, Opcode: <code>0x98</code>, Max Cycles: 2
      */
-    TYA(0x8A, TransferOperations::transferYA, AddressingModes::implied, 2),
+    TYA(0x98, TransferOperations::transferYA, AddressingModes::implied, 2),
 
     TSX, TXS, PHA, PHP, PLA, PLP,
     AND, EOR, ORA, BIT,
-    ADC, SBC, CMP, CPX, CPY,
+    CMP, CPX, CPY,
+
+    /* Arithmetic Operations */
+    /* ADC Operations */
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#immediate(int, CPU6502, Bus)}, Opcode: <code>0x69</code>, Max Cycles: 2
+     */
+    ADC_IMM(0x69, ArithmeticOperations::addWithCarry, AddressingModes::immediate, 2),
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#zeroPage(int, CPU6502, Bus)}, Opcode: <code>0x65</code>, Max Cycles: 3
+     */
+    ADC_ZP(0x65, ArithmeticOperations::addWithCarry, AddressingModes::zeroPage, 3),
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#zeroPageX(int, CPU6502, Bus)}, Opcode: <code>0x75</code>, Max Cycles: 4
+     */
+    ADC_ZPX(0x75, ArithmeticOperations::addWithCarry, AddressingModes::zeroPageX, 4),
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absolute(int, CPU6502, Bus)}, Opcode: <code>0x6D</code>, Max Cycles: 4
+     */
+    ADC_ABS(0x6D, ArithmeticOperations::addWithCarry, AddressingModes::absolute, 4),
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteX(int, CPU6502, Bus)}, Opcode: <code>0x7D</code>, Max Cycles: 5
+     */
+    ADC_ABSX(0x7D, ArithmeticOperations::addWithCarry, AddressingModes::absoluteX, 5),
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteY(int, CPU6502, Bus)}, Opcode: <code>0x79</code>, Max Cycles: 5
+     */
+    ADC_ABSY(0x79, ArithmeticOperations::addWithCarry, AddressingModes::absoluteY, 5),
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectX(int, CPU6502, Bus)}, Opcode: <code>0x61</code>, Max Cycles: 6
+     */
+    ADC_INX(0x61, ArithmeticOperations::addWithCarry, AddressingModes::indirectX, 6),
+    /**
+     * Runs {@link ArithmeticOperations#addWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectY(int, CPU6502, Bus)}, Opcode: <code>0x71</code>, Max Cycles: 6
+     */
+    ADC_INY(0x71, ArithmeticOperations::addWithCarry, AddressingModes::indirectY, 6),
+
+    /* SBC Operations */
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#immediate(int, CPU6502, Bus)}, Opcode: <code>0xE9</code>, Max Cycles: 2
+     */
+    SBC_IMM(0xE9, ArithmeticOperations::subtractWithCarry, AddressingModes::immediate, 2),
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#zeroPage(int, CPU6502, Bus)}, Opcode: <code>0xE5</code>, Max Cycles: 3
+     */
+    SBC_ZP(0xE5, ArithmeticOperations::subtractWithCarry, AddressingModes::zeroPage, 3),
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#zeroPageX(int, CPU6502, Bus)}, Opcode: <code>0xF5</code>, Max Cycles: 4
+     */
+    SBC_ZPX(0xF5, ArithmeticOperations::subtractWithCarry, AddressingModes::zeroPageX, 4),
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absolute(int, CPU6502, Bus)}, Opcode: <code>0xED</code>, Max Cycles: 4
+     */
+    SBC_ABS(0xED, ArithmeticOperations::subtractWithCarry, AddressingModes::absolute, 4),
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteX(int, CPU6502, Bus)}, Opcode: <code>0xFD</code>, Max Cycles: 5
+     */
+    SBC_ABSX(0xFD, ArithmeticOperations::subtractWithCarry, AddressingModes::absoluteX, 5),
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteY(int, CPU6502, Bus)}, Opcode: <code>0xF9</code>, Max Cycles: 5
+     */
+    SBC_ABSY(0xF9, ArithmeticOperations::subtractWithCarry, AddressingModes::absoluteY, 5),
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectX(int, CPU6502, Bus)}, Opcode: <code>0xE1</code>, Max Cycles: 6
+     */
+    SBC_INX(0xE1, ArithmeticOperations::subtractWithCarry, AddressingModes::indirectX, 6),
+    /**
+     * Runs {@link ArithmeticOperations#subtractWithCarry(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#indirectY(int, CPU6502, Bus)}, Opcode: <code>0xF1</code>, Max Cycles: 6
+     */
+    SBC_INY(0xF1, ArithmeticOperations::subtractWithCarry, AddressingModes::indirectY, 6),
 
     /* Increment and Decrement Operations */
     /**
@@ -209,9 +276,9 @@ public enum CPU6502Instructions {
      */
     INC_ABS(0xEE, IncrementOperations::incrementMemory, AddressingModes::absolute, 6),
     /**
-     * Runs {@link IncrementOperations#incrementMemory(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteX(int, CPU6502, Bus)}, Opcode: <code>0xFE</code>, Max Cycles: 7
+     * Runs {@link IncrementOperations#incrementMemory(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteXWrite(int, CPU6502, Bus)}, Opcode: <code>0xFE</code>, Max Cycles: 7
      */
-    INC_ABSX(0xFE, IncrementOperations::incrementMemory, AddressingModes::absoluteX, 7),
+    INC_ABSX(0xFE, IncrementOperations::incrementMemory, AddressingModes::absoluteXWrite, 7),
 
     /**
      * Runs {@link IncrementOperations#incrementXRegister(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#implied(int, CPU6502, Bus)}, Opcode: <code>0xE8</code>, Max Cycles: 2
@@ -235,9 +302,9 @@ public enum CPU6502Instructions {
      */
     DEC_ABS(0xCE, IncrementOperations::decrementMemory, AddressingModes::absolute, 6),
     /**
-     * Runs {@link IncrementOperations#decrementMemory(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteX(int, CPU6502, Bus)}, Opcode: <code>0xDE</code>, Max Cycles: 7
+     * Runs {@link IncrementOperations#decrementMemory(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#absoluteXWrite(int, CPU6502, Bus)}, Opcode: <code>0xDE</code>, Max Cycles: 7
      */
-    DEC_ABSX(0xDE, IncrementOperations::decrementMemory, AddressingModes::absoluteX, 7),
+    DEC_ABSX(0xDE, IncrementOperations::decrementMemory, AddressingModes::absoluteXWrite, 7),
 
     /**
      * Runs {@link IncrementOperations#decrementXRegister(int, CPU6502, Bus, CPU6502Instructions)} with AddressingMode {@link AddressingModes#implied(int, CPU6502, Bus)}, Opcode: <code>0xCA</code>, Max Cycles: 2
@@ -304,6 +371,20 @@ public enum CPU6502Instructions {
 
     BRK, NOP, RTI;
 
+    /**
+     * The instruction for each opcode, indexed by the unsigned opcode
+     */
+    private static final CPU6502Instructions[] BY_OPCODE = new CPU6502Instructions[256];
+
+    static {
+        for (CPU6502Instructions instruction : values()) {
+            int index = Byte.toUnsignedInt(instruction.instruction);
+            if (BY_OPCODE[index] == null) {
+                BY_OPCODE[index] = instruction;
+            }
+        }
+    }
+
     private final byte instruction;
     private final CPU6502InstructionProcessor instructionProcessor;
     private final AddressingModes.AddressingMode addressingMode;
@@ -345,13 +426,13 @@ public enum CPU6502Instructions {
     }
 
     /**
-     * Gets the matching {@link CPU6502Instructions} from the given opcode
+     * Gets the matching {@link CPU6502Instructions} from the given opcode. The lookup is a table read and never allocates
      *
      * @param instruction The opcode for the instruction
      * @return The {@link CPU6502Instructions}
      */
     public static CPU6502Instructions getFrom(byte instruction) {
-        return Arrays.stream(values()).filter(cpu6502Instructions -> cpu6502Instructions.getCode() == instruction).findFirst().orElse(null);
+        return BY_OPCODE[Byte.toUnsignedInt(instruction)];
     }
 
     /**
@@ -99,6 +99,16 @@ public final class Flags {
         );
     }
 
+    /**
+     * Sets the negative and zero flags from a value, as loads, transfers and increments do
+     *
+     * @param value The value
+     */
+    public void setNegativeAndZero(byte value) {
+        negativeFlag = value < 0;
+        zeroFlag = value == 0;
+    }
+
     private byte getValue(boolean b) {
         return (byte) (b ? 1 : 0);
     }
@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+/**
+ * Fast-forwards a {@link CPU6502} through loops that spin without changing anything, such as <code>JMP *</code> or a loop
+ * polling a device register.<br>
+ * After every backward jump of less than {@link #MAX_LOOP_BYTES} bytes, one pass of the loop is run through a bus that watches every access.
+ * If the pass wrote nothing, only read from {@link Bus.TimedDevice}s, and came back to the start of the loop with the same registers
+ * and flags, every following pass does exactly the same thing until one of the devices it read has an event. The cycle counter is
+ * moved ahead by whole passes up to that event, so the cycles and the final state are the same as running every pass.<br>
+ * Anything outside the cpu that changes the bus in the middle of a batch, such as another processor, is not seen by the detector.
+ */
+final class IdleLoopDetector {
+    /**
+     * The largest distance from the start of a loop to the jump back to it
+     */
+    static final int MAX_LOOP_BYTES = 256;
+
+    /**
+     * The longest pass that is checked
+     */
+    private static final long MAX_PASS_CYCLES = 1024;
+
+    private final CPU6502 cpu;
+    private final ProbeBus probeBus = new ProbeBus();
+
+    private int previousProgramCounter = -1;
+    private boolean probing;
+    private int loopStart;
+    private long passStartCycle;
+    private long passStartInstruction;
+    private int stackPointer;
+    private int accumulator;
+    private int xRegister;
+    private int yRegister;
+    private byte flags;
+    private boolean sideEffects;
+    private long nextEventCycle;
+
+    private long skippedCycles;
+
+    IdleLoopDetector(CPU6502 cpu) {
+        this.cpu = cpu;
+    }
+
+    /**
+     * Clocks the CPU for a batch of cycles the same way {@link CPU6502#run(Bus, long)} does, skipping idle passes of loops
+     *
+     * @param bus    The memory for the CPU
+     * @param cycles The number of cycles to run
+     * @return The number of cycles that were run, including the skipped cycles
+     */
+    long run(Bus bus, long cycles) {
+        cancel();
+        if (cpu.isAtBreakpoint()) {
+            return 0;
+        }
+        probeBus.bus = bus;
+
+        long ran = 0;
+        while (ran < cycles) {
+            if (cpu.getStallCycles() != 0) {
+                ran += cpu.runStall(cycles - ran);
+                continue;
+            }
+            if (cpu.isInstructionComplete()) {
+                ran += atInstructionStart(cycles - ran);
+                if (ran == cycles) {
+                    break;
+                }
+            }
+            cpu.tick(probing ? probeBus : bus);
+            if (cpu.isAtBreakpoint()) {
+                break;
+            }
+            ran++;
+        }
+        probeBus.bus = null;
+        return ran;
+    }
+
+    /**
+     * Forgets the loop being checked, after the state of the cpu was changed from outside
+     */
+    void cancel() {
+        probing = false;
+        previousProgramCounter = -1;
+    }
+
+    private long atInstructionStart(long remaining) {
+        int programCounter = cpu.getProgramCounter();
+        long skipped = 0;
+        if (probing) {
+            if (programCounter == loopStart) {
+                skipped = finishPass(remaining);
+            } else if (programCounter < loopStart || programCounter - loopStart >= MAX_LOOP_BYTES || cpu.getCycles() - passStartCycle > MAX_PASS_CYCLES) {
+                probing = false;
+            }
+        }
+
+        if (!probing && previousProgramCounter != -1 && programCounter <= previousProgramCounter && previousProgramCounter - programCounter < MAX_LOOP_BYTES) {
+            startPass(programCounter);
+        }
+        previousProgramCounter = programCounter;
+        return skipped;
+    }
+
+    private void startPass(int programCounter) {
+        probing = true;
+        loopStart = programCounter;
+        passStartCycle = cpu.getCycles();
+        passStartInstruction = cpu.getInstructions();
+        stackPointer = cpu.getStackPointer();
+        accumulator = cpu.getAccumulator();
+        xRegister = cpu.getXRegister();
+        yRegister = cpu.getYRegister();
+        flags = cpu.getFlags().toByte();
+        sideEffects = false;
+        nextEventCycle = Long.MAX_VALUE;
+    }
+
+    /**
+     * Skips the passes that are the same as the one that just finished
+     *
+     * @return The cycles skipped
+     */
+    private long finishPass(long remaining) {
+        probing = false;
+        if (sideEffects || stackPointer != cpu.getStackPointer() || accumulator != cpu.getAccumulator() || xRegister != cpu.getXRegister()
+                || yRegister != cpu.getYRegister() || flags != cpu.getFlags().toByte()) {
+            return 0;
+        }
+
+        long passCycles = cpu.getCycles() - passStartCycle;
+        long passes = Math.min(remaining / passCycles, (nextEventCycle - 1 - cpu.getCycles()) / passCycles);
+        if (passes <= 0) {
+            return 0;
+        }
+        long skipped = passes * passCycles;
+        cpu.skipCycles(skipped);
+        cpu.skipInstructions(passes * (cpu.getInstructions() - passStartInstruction));
+        skippedCycles += skipped;
+        return skipped;
+    }
+
+    /**
+     * @return The total cycles skipped instead of being run
+     */
+    long getSkippedCycles() {
+        return skippedCycles;
+    }
+
+    /**
+     * Passes every access through to the real bus, noting any access that could make the next pass different
+     */
+    private final class ProbeBus extends Bus {
+        private Bus bus;
+
+        @Override
+        public byte readByte(int location) {
+            BusDevice device = bus.getDevice(location);
+            if (device instanceof TimedDevice) {
+                nextEventCycle = Math.min(nextEventCycle, ((TimedDevice) device).getNextEventCycle(location, cpu.getCycles()));
+            } else if (device != null) {
+                sideEffects = true;
+            }
+            return bus.readByte(location);
+        }
+
+        @Override
+        public void writeByte(int location, byte value) {
+            sideEffects = true;
+            bus.writeByte(location, value);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+import com.oroarmor.cpuemulator.cpu6502.events.FaultEvent;
+import com.oroarmor.cpuemulator.cpu6502.events.MachineRunEvent;
+import com.oroarmor.cpuemulator.cpu6502.monitoring.MachineMetrics;
+
+/**
+ * A {@link CPU6502} and the {@link Bus} it runs on
+ */
+public class Machine {
+    private final CPU6502 cpu;
+    private final Bus bus;
+    private volatile MachineMetrics metrics;
+
+    /**
+     * Creates a new machine
+     *
+     * @param cpu The cpu
+     * @param bus The bus the cpu reads from and writes to
+     */
+    public Machine(CPU6502 cpu, Bus bus) {
+        this.cpu = cpu;
+        this.bus = bus;
+    }
+
+    /**
+     * Runs the cpu for a batch of cycles. The batch is recorded as a {@link MachineRunEvent}, and an exception thrown out of it as a {@link FaultEvent},
+     * when those events are enabled in a flight recording. The batch is added to the {@link MachineMetrics} if the machine has them
+     *
+     * @param cycles The number of cycles to run
+     * @return The number of cycles that were run
+     * @see CPU6502#run(Bus, long)
+     */
+    public long run(long cycles) {
+        MachineRunEvent event = new MachineRunEvent();
+        event.begin();
+        MachineMetrics metrics = this.metrics;
+        long startNanos = metrics == null ? 0 : System.nanoTime();
+        long instructions = cpu.getInstructions();
+        long skippedCycles = cpu.getSkippedCycles();
+
+        long ran;
+        try {
+            ran = cpu.run(bus, cycles);
+        } catch (RuntimeException e) {
+            FaultEvent fault = new FaultEvent();
+            if (fault.shouldCommit()) {
+                fault.programCounter = cpu.getProgramCounter();
+                fault.cycle = cpu.getCycles();
+                fault.exception = e.getClass();
+                fault.message = e.getMessage();
+                fault.commit();
+            }
+            throw e;
+        }
+
+        if (metrics != null) {
+            metrics.record(ran, cpu.getInstructions() - instructions, startNanos, System.nanoTime());
+        }
+        if (event.shouldCommit()) {
+            event.requestedCycles = cycles;
+            event.cycles = ran;
+            event.instructions = cpu.getInstructions() - instructions;
+            event.skippedCycles = cpu.getSkippedCycles() - skippedCycles;
+            event.commit();
+        }
+        return ran;
+    }
+
+    /**
+     * Sets the metrics every batch is added to
+     *
+     * @param metrics The metrics, or null to stop recording them
+     * @see com.oroarmor.cpuemulator.cpu6502.monitoring.MachineRegistry
+     */
+    public void setMetrics(MachineMetrics metrics) {
+        this.metrics = metrics;
+    }
+    public MachineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public CPU6502 getCpu() {
+        return cpu;
+    }
+
+    public Bus getBus() {
+        return bus;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.checkpoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.events.RestoreEvent;
+import com.oroarmor.cpuemulator.cpu6502.events.SnapshotEvent;
+
+/**
+ * Saves a {@link Machine} into a memory mapped file as it runs, so a new process can carry on from the last checkpoint after a crash.<br>
+ * The file holds a header and two slots, each with a commit marker and room for the cpu state followed by the state of every {@link StatefulDevice}.
+ * A checkpoint copies the state into the older slot and forces it to disk, then writes the marker with a new sequence number and the
+ * CRC32 of the state and forces again. A crash part way through leaves a marker that does not match its slot, and restoring uses
+ * the newest slot whose marker matches.
+ */
+public class Checkpointer implements Closeable {
+    private static final byte[] MAGIC = {'6', '5', '0', '2', 'C', 'K', 'P', 'T'};
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int MARKER_SIZE = 16;
+
+    private final Machine machine;
+    private final CPU6502 cpu;
+    private final StatefulDevice[] devices;
+    private final long intervalCycles;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer file;
+    private final int stateSize;
+    private final int slotSize;
+    private final CRC32 crc = new CRC32();
+
+    private long sequence;
+    private long lastCheckpointCycle;
+
+    /**
+     * Opens or creates a checkpoint file. An existing file must have been written for a machine with the same state size,
+     * and its header is checked before it is mapped so a file that is refused is left as it was
+     *
+     * @param machine        The machine
+     * @param path           The checkpoint file
+     * @param intervalCycles The cycles between checkpoints in {@link #run(long)}
+     * @param devices        The devices saved after the cpu, always in the same order
+     * @throws IOException If the file can not be opened or was written for a different machine
+     */
+    public Checkpointer(Machine machine, Path path, long intervalCycles, StatefulDevice... devices) throws IOException {
+        if (intervalCycles <= 0) {
+            throw new IllegalArgumentException(String.format("Checkpoint interval must be positive, %d was given", intervalCycles));
+        }
+        this.machine = machine;
+        this.cpu = machine.getCpu();
+        this.devices = devices.clone();
+        this.intervalCycles = intervalCycles;
+
+        long size = CPU6502.STATE_SIZE;
+        for (StatefulDevice device : devices) {
+            size += device.getStateSize();
+        }
+        if (HEADER_SIZE + 2 * (MARKER_SIZE + size) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("A state of %d bytes is too large to map", size));
+        }
+        this.stateSize = (int) size;
+        this.slotSize = MARKER_SIZE + stateSize;
+
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean existing = channel.size() != 0;
+            if (existing) {
+                checkHeader(path);
+            }
+            this.file = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + 2L * slotSize);
+            if (existing) {
+                sequence = Math.max(readSequence(0), readSequence(1));
+            } else {
+                writeHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.lastCheckpointCycle = cpu.getCycles();
+    }
+
+    private void writeHeader() {
+        ByteBuffer header = file.duplicate();
+        header.put(MAGIC).putInt(VERSION).putInt(stateSize);
+        file.force();
+    }
+
+    /**
+     * Reads the header of an existing file through the channel, since mapping it would grow a file that is too short
+     */
+    private void checkHeader(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Reads until the header is full or the file ends
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE) {
+            throw new IOException(String.format("%s is not a checkpoint file", path));
+        }
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+            throw new IOException(String.format("%s is not a checkpoint file", path));
+        }
+        int size = header.getInt();
+        if (size != stateSize) {
+            throw new IOException(String.format("%s holds a state of %d bytes, this machine has %d", path, size, stateSize));
+        }
+        if (channel.size() < HEADER_SIZE + 2L * slotSize) {
+            throw new IOException(String.format("%s is %d bytes, shorter than a checkpoint file of %d bytes", path, channel.size(), HEADER_SIZE + 2L * slotSize));
+        }
+    }
+
+    /**
+     * Runs the machine, taking a checkpoint every time the interval has passed since the last one
+     *
+     * @param cycles The cycles to run
+     * @return The cycles that were run, fewer if the cpu stopped at a breakpoint
+     */
+    public long run(long cycles) {
+        long ran = 0;
+        while (ran < cycles) {
+            long batch = Math.min(cycles - ran, Math.max(1, intervalCycles - (cpu.getCycles() - lastCheckpointCycle)));
+            long batchRan = machine.run(batch);
+            ran += batchRan;
+            if (cpu.getCycles() - lastCheckpointCycle >= intervalCycles) {
+                checkpoint();
+            }
+            if (batchRan < batch) {
+                break;
+            }
+        }
+        return ran;
+    }
+
+    /**
+     * Saves the machine now, into the slot holding the older checkpoint
+     */
+    public void checkpoint() {
+        SnapshotEvent event = new SnapshotEvent();
+        event.begin();
+
+        long next = sequence + 1;
+        int slot = (int) (next & 1);
+        ByteBuffer state = slotState(slot);
+        cpu.saveState(state);
+        for (StatefulDevice device : devices) {
+            device.saveState(state);
+        }
+        file.force();
+
+        crc.reset();
+        crc.update(slotState(slot));
+        file.putLong(slotOffset(slot), next);
+        file.putInt(slotOffset(slot) + Long.BYTES, (int) crc.getValue());
+        file.force();
+
+        sequence = next;
+        lastCheckpointCycle = cpu.getCycles();
+
+        if (event.shouldCommit()) {
+            event.cycle = lastCheckpointCycle;
+            event.bytes = stateSize;
+            event.commit();
+        }
+    }
+
+    /**
+     * Loads the newest complete checkpoint into the cpu and the devices
+     *
+     * @return False if the file has no complete checkpoint, and nothing was loaded
+     */
+    public boolean restore() {
+        RestoreEvent event = new RestoreEvent();
+        event.begin();
+
+        long first = readSequence(0);
+        long second = readSequence(1);
+        if (first == 0 && second == 0) {
+            return false;
+        }
+        int slot = first > second ? 0 : 1;
+        ByteBuffer state = slotState(slot);
+        cpu.loadState(state);
+        for (StatefulDevice device : devices) {
+            device.loadState(state);
+        }
+        sequence = Math.max(first, second);
+        lastCheckpointCycle = cpu.getCycles();
+
+        if (event.shouldCommit()) {
+            event.cycle = lastCheckpointCycle;
+            event.commit();
+        }
+        return true;
+    }
+
+    /**
+     * @return The sequence number of the slot if its marker matches its state, otherwise 0
+     */
+    private long readSequence(int slot) {
+        long slotSequence = file.getLong(slotOffset(slot));
+        if (slotSequence <= 0) {
+            return 0;
+        }
+        crc.reset();
+        crc.update(slotState(slot));
+        return file.getInt(slotOffset(slot) + Long.BYTES) == (int) crc.getValue() ? slotSequence : 0;
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private ByteBuffer slotState(int slot) {
+        ByteBuffer state = file.duplicate();
+        state.position(slotOffset(slot) + MARKER_SIZE).limit(slotOffset(slot) + slotSize);
+        return state.slice();
+    }
+
+    /**
+     * @return The sequence number of the last checkpoint, 0 if none was taken
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The cpu cycle of the last checkpoint taken or restored
+     */
+    public long getLastCheckpointCycle() {
+        return lastCheckpointCycle;
+    }
+
+    /**
+     * @return The bytes of one checkpoint
+     */
+    public int getStateSize() {
+        return stateSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.checkpoint;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Something outside of the cpu with state that a {@link Checkpointer} saves, such as the memory of a device.
+ * The state must have the same size every time it is saved.
+ */
+public interface StatefulDevice {
+    /**
+     * @return The number of bytes {@link #saveState(ByteBuffer)} writes
+     */
+    int getStateSize();
+
+    /**
+     * Writes the state
+     *
+     * @param buffer The buffer to write to
+     */
+    void saveState(ByteBuffer buffer);
+
+    /**
+     * Reads the state written by {@link #saveState(ByteBuffer)}
+     *
+     * @param buffer The buffer to read from
+     */
+    void loadState(ByteBuffer buffer);
+}
@@ -0,0 +1,230 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.cli;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+
+/**
+ * One ROM to run, read from a line of a job manifest.<br>
+ * A line has five or six comma separated fields: <code>name, rom, load address, start address, cycle budget, condition</code>.
+ * The rom path is relative to the manifest, numbers are decimal or hexadecimal with a <code>$</code> or <code>0x</code> prefix,
+ * and the condition is a space separated list of checks like <code>A=$05 X=3 $0200=$FF</code> on the <code>A</code>, <code>X</code>,
+ * <code>Y</code>, <code>SP</code> and <code>PC</code> registers or on memory. Blank lines and lines starting with <code>#</code> are skipped.
+ */
+public final class BatchJob {
+    private static final int PROGRAM_COUNTER = -1;
+    private static final int STACK_POINTER = -2;
+    private static final int ACCUMULATOR = -3;
+    private static final int X_REGISTER = -4;
+    private static final int Y_REGISTER = -5;
+
+    private final String name;
+    private final Path rom;
+    private final int loadAddress;
+    private final int startAddress;
+    private final long cycleBudget;
+    private final int[] checkTargets;
+    private final int[] checkValues;
+
+    /**
+     * Creates a new job
+     *
+     * @param name         The name of the job in the report
+     * @param rom          The file holding the ROM
+     * @param loadAddress  The address the ROM is loaded at
+     * @param startAddress The address the cpu starts running at
+     * @param cycleBudget  The most cycles the job may run
+     * @param condition    The checks that pass the job, or an empty string to pass once the budget is run
+     */
+    public BatchJob(String name, Path rom, int loadAddress, int startAddress, long cycleBudget, String condition) {
+        if (cycleBudget <= 0) {
+            throw new IllegalArgumentException(String.format("Cycle budget must be positive, %d was given", cycleBudget));
+        }
+        this.name = name;
+        this.rom = rom;
+        this.loadAddress = checkAddress(loadAddress);
+        this.startAddress = checkAddress(startAddress);
+        this.cycleBudget = cycleBudget;
+
+        String[] checks = condition.trim().isEmpty() ? new String[0] : condition.trim().split("\\s+");
+        this.checkTargets = new int[checks.length];
+        this.checkValues = new int[checks.length];
+        for (int i = 0; i < checks.length; i++) {
+            int equals = checks[i].indexOf('=');
+            if (equals == -1) {
+                throw new IllegalArgumentException(String.format("%s is not a check, expected target=value", checks[i]));
+            }
+            checkTargets[i] = parseTarget(checks[i].substring(0, equals));
+            checkValues[i] = parseNumber(checks[i].substring(equals + 1));
+        }
+    }
+
+    /**
+     * Reads every job of a manifest
+     *
+     * @param lines     The lines of the manifest
+     * @param directory The directory rom paths are relative to
+     * @return The jobs, in the order of the manifest
+     */
+    public static List<BatchJob> parseManifest(List<String> lines, Path directory) {
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != 5 && fields.length != 6) {
+                throw new IllegalArgumentException(String.format("Line %d has %d fields, expected 5 or 6", i + 1, fields.length));
+            }
+            try {
+                jobs.add(new BatchJob(fields[0].trim(), directory.resolve(fields[1].trim()), parseNumber(fields[2]), parseNumber(fields[3]),
+                        parseLong(fields[4]), fields.length == 6 ? fields[5] : ""));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Line %d: %s", i + 1, e.getMessage()), e);
+            }
+        }
+        return Collections.unmodifiableList(jobs);
+    }
+
+    /**
+     * @param cpu The cpu running the job
+     * @param bus The bus of the cpu
+     * @return True if every check holds. A job without checks is never satisfied early
+     */
+    public boolean isSatisfied(CPU6502 cpu, Bus bus) {
+        if (checkTargets.length == 0) {
+            return false;
+        }
+        for (int i = 0; i < checkTargets.length; i++) {
+            if (readTarget(checkTargets[i], cpu, bus) != checkValues[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean hasCondition() {
+        return checkTargets.length != 0;
+    }
+
+    private static int readTarget(int target, CPU6502 cpu, Bus bus) {
+        switch (target) {
+            case PROGRAM_COUNTER:
+                return cpu.getProgramCounter();
+            case STACK_POINTER:
+                return cpu.getStackPointer();
+            case ACCUMULATOR:
+                return cpu.getAccumulator() & 0xFF;
+            case X_REGISTER:
+                return cpu.getXRegister() & 0xFF;
+            case Y_REGISTER:
+                return cpu.getYRegister() & 0xFF;
+            default:
+                return Byte.toUnsignedInt(bus.readByte(target));
+        }
+    }
+
+    private static int parseTarget(String target) {
+        switch (target.toUpperCase()) {
+            case "PC":
+                return PROGRAM_COUNTER;
+            case "SP":
+                return STACK_POINTER;
+            case "A":
+                return ACCUMULATOR;
+            case "X":
+                return X_REGISTER;
+            case "Y":
+                return Y_REGISTER;
+            default:
+                return checkAddress(parseNumber(target));
+        }
+    }
+
+    private static int checkAddress(long address) {
+        if (address < 0 || address > 0xFFFF) {
+            throw new IllegalArgumentException(String.format("%X is not an address", address));
+        }
+        return (int) address;
+    }
+
+    /**
+     * @param number A decimal number, or a hexadecimal number starting with <code>$</code> or <code>0x</code>
+     * @return The number
+     */
+    static int parseNumber(String number) {
+        long value = parseLong(number);
+        if (value != (int) value) {
+            throw new IllegalArgumentException(String.format("%s is too large", number.trim()));
+        }
+        return (int) value;
+    }
+
+    /**
+     * @param number A decimal number, or a hexadecimal number starting with <code>$</code> or <code>0x</code>
+     * @return The number
+     */
+    static long parseLong(String number) {
+        String trimmed = number.trim().replace("_", "");
+        try {
+            if (trimmed.startsWith("$")) {
+                return Long.parseLong(trimmed.substring(1), 16);
+            }
+            if (trimmed.toLowerCase().startsWith("0x")) {
+                return Long.parseLong(trimmed.substring(2), 16);
+            }
+            return Long.parseLong(trimmed);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("%s is not a number", number.trim()), e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getRom() {
+        return rom;
+    }
+
+    public int getLoadAddress() {
+        return loadAddress;
+    }
+
+    public int getStartAddress() {
+        return startAddress;
+    }
+
+    public long getCycleBudget() {
+        return cycleBudget;
+    }
+}
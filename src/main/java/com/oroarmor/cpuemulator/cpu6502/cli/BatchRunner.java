@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.devices.MemoryDevice;
+
+/**
+ * Runs every job of a manifest in parallel and writes a report.<br>
+ * <code>BatchRunner &lt;manifest&gt; [--threads n] [--format csv|jsonl] [--output file]</code><br>
+ * Each job gets its own cpu and 64 KiB of memory holding its ROM, and runs with idle loop skipping until its condition holds or its
+ * cycle budget runs out. The condition is checked after every slice of {@link #SLICE_CYCLES} cycles, once the instruction the slice
+ * ended in has finished, so a job can run a few cycles past its budget. The report lists the jobs in manifest order,
+ * and the exit code is 0 if every job passed, 1 if any did not, and 2 if the arguments or the manifest could not be read.
+ *
+ * @see BatchJob
+ */
+public final class BatchRunner {
+    /**
+     * The cycles run between checks of the condition
+     */
+    public static final long SLICE_CYCLES = 10_000;
+
+    private static final String USAGE = "Usage: BatchRunner <manifest> [--threads n] [--format csv|jsonl] [--output file]";
+
+    private BatchRunner() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command line
+     *
+     * @param args The arguments
+     * @param out  Where the report goes without <code>--output</code>
+     * @param err  Where usage and errors go
+     * @return The exit code
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        Path manifest = null;
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean json = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = BatchJob.parseNumber(argument(args, ++i));
+                        if (threads <= 0) {
+                            throw new IllegalArgumentException(String.format("Threads must be positive, %d was given", threads));
+                        }
+                        break;
+                    case "--format":
+                        String format = argument(args, ++i);
+                        if (!format.equals("csv") && !format.equals("jsonl")) {
+                            throw new IllegalArgumentException(String.format("Unknown format %s", format));
+                        }
+                        json = format.equals("jsonl");
+                        break;
+                    case "--output":
+                        output = Paths.get(argument(args, ++i));
+                        break;
+                    default:
+                        if (manifest != null || args[i].startsWith("--")) {
+                            throw new IllegalArgumentException(String.format("Unexpected argument %s", args[i]));
+                        }
+                        manifest = Paths.get(args[i]);
+                }
+            }
+            if (manifest == null) {
+                throw new IllegalArgumentException("No manifest was given");
+            }
+
+            Path directory = manifest.toAbsolutePath().getParent();
+            List<BatchJob> jobs = BatchJob.parseManifest(Files.readAllLines(manifest, StandardCharsets.UTF_8), directory);
+            List<JobResult> results = runJobs(jobs, threads);
+
+            if (output == null) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writeReport(results, writer, json);
+                writer.flush();
+            } else {
+                try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                    writeReport(results, writer, json);
+                }
+            }
+            return results.stream().allMatch(result -> result.getOutcome() == JobResult.Outcome.PASS) ? 0 : 1;
+        } catch (IllegalArgumentException | IOException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+    }
+
+    private static String argument(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(String.format("%s needs a value", args[index - 1]));
+        }
+        return args[index];
+    }
+
+    /**
+     * Runs jobs across a fixed pool of threads
+     *
+     * @param jobs    The jobs
+     * @param threads The number of threads
+     * @return The results, in the order of the jobs
+     */
+    public static List<JobResult> runJobs(List<BatchJob> jobs, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+            for (BatchJob job : jobs) {
+                futures.add(executor.submit(() -> runJob(job)));
+            }
+            List<JobResult> results = new ArrayList<>(jobs.size());
+            for (Future<JobResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running jobs", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A job could not be run", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs one job on the calling thread
+     *
+     * @param job The job
+     * @return The result
+     */
+    public static JobResult runJob(BatchJob job) {
+        long start = System.nanoTime();
+        byte[] rom;
+        try {
+            rom = Files.readAllBytes(job.getRom());
+        } catch (IOException e) {
+            return new JobResult(job, JobResult.Outcome.ERROR, 0, System.nanoTime() - start, "", "Could not read " + job.getRom() + ": " + e.getMessage());
+        }
+        if (job.getLoadAddress() + rom.length > 0x10000) {
+            return new JobResult(job, JobResult.Outcome.ERROR, 0, System.nanoTime() - start, "",
+                    String.format("%d bytes do not fit at $%04X", rom.length, job.getLoadAddress()));
+        }
+
+        MemoryDevice memory = new MemoryDevice(0, 0x10000);
+        Bus bus = new Bus();
+        bus.attachDevice(memory);
+        bus.writeBytes(job.getLoadAddress(), rom, 0, rom.length);
+
+        CPU6502 cpu = new CPU6502();
+        cpu.reset();
+        cpu.setProgramCounter(job.getStartAddress());
+        cpu.setIdleLoopSkipping(true);
+        Machine machine = new Machine(cpu, bus);
+
+        JobResult.Outcome outcome = job.hasCondition() ? JobResult.Outcome.FAIL : JobResult.Outcome.PASS;
+        String message = job.hasCondition() ? "The condition did not hold within the budget" : "";
+        long cycles = 0;
+        try {
+            while (cycles < job.getCycleBudget()) {
+                long ran = machine.run(Math.min(SLICE_CYCLES, job.getCycleBudget() - cycles));
+                if (!cpu.isInstructionComplete()) {
+                    ran += cpu.step(bus);
+                }
+                cycles += ran;
+                if (job.isSatisfied(cpu, bus)) {
+                    outcome = JobResult.Outcome.PASS;
+                    message = "";
+                    break;
+                }
+                if (ran == 0) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            outcome = JobResult.Outcome.ERROR;
+            message = e.getClass().getSimpleName() + ": " + e.getMessage();
+            cycles = cpu.getCycles();
+        }
+        return new JobResult(job, outcome, cycles, System.nanoTime() - start, hashState(cpu, memory), message);
+    }
+
+    /**
+     * @return The CRC32 of the saved cpu state followed by all of memory, as 8 hexadecimal digits
+     */
+    private static String hashState(CPU6502 cpu, MemoryDevice memory) {
+        ByteBuffer state = ByteBuffer.allocate(CPU6502.STATE_SIZE);
+        cpu.saveState(state);
+        CRC32 crc = new CRC32();
+        crc.update(state.array());
+        crc.update(memory.getMemory());
+        return String.format("%08x", crc.getValue());
+    }
+
+    private static void writeReport(List<JobResult> results, Writer writer, boolean json) throws IOException {
+        if (json) {
+            writeJsonLines(results, writer);
+        } else {
+            writeCsv(results, writer);
+        }
+    }
+
+    /**
+     * Writes a header and one comma separated line per result
+     *
+     * @param results The results
+     * @param out     The output
+     * @throws IOException If the output throws
+     */
+    public static void writeCsv(List<JobResult> results, Appendable out) throws IOException {
+        out.append("name,outcome,cycles,wall_ms,state_hash,message\n");
+        for (JobResult result : results) {
+            out.append(csv(result.getJob().getName())).append(',')
+                    .append(result.getOutcome().name()).append(',')
+                    .append(Long.toString(result.getCycles())).append(',')
+                    .append(String.format(Locale.ROOT, "%.3f", result.getWallNanos() / 1e6)).append(',')
+                    .append(result.getStateHash()).append(',')
+                    .append(csv(result.getMessage())).append('\n');
+        }
+    }
+
+    /**
+     * Writes one JSON object per line for each result
+     *
+     * @param results The results
+     * @param out     The output
+     * @throws IOException If the output throws
+     */
+    public static void writeJsonLines(List<JobResult> results, Appendable out) throws IOException {
+        for (JobResult result : results) {
+            out.append("{\"name\":").append(json(result.getJob().getName()))
+                    .append(",\"outcome\":\"").append(result.getOutcome().name())
+                    .append("\",\"cycles\":").append(Long.toString(result.getCycles()))
+                    .append(",\"wall_ms\":").append(String.format(Locale.ROOT, "%.3f", result.getWallNanos() / 1e6))
+                    .append(",\"state_hash\":").append(json(result.getStateHash()))
+                    .append(",\"message\":").append(json(result.getMessage()))
+                    .append("}\n");
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
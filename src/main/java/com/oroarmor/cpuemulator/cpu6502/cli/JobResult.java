@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.cli;
+
+/**
+ * The outcome of one {@link BatchJob}
+ */
+public final class JobResult {
+    private final BatchJob job;
+    private final Outcome outcome;
+    private final long cycles;
+    private final long wallNanos;
+    private final String stateHash;
+    private final String message;
+
+    /**
+     * Creates a new result
+     *
+     * @param job       The job
+     * @param outcome   The outcome
+     * @param cycles    The cycles the job ran
+     * @param wallNanos The host nanoseconds the job took
+     * @param stateHash The hash of the final cpu state and memory, or an empty string if the job never ran
+     * @param message   The reason for a failure or an error, or an empty string
+     */
+    public JobResult(BatchJob job, Outcome outcome, long cycles, long wallNanos, String stateHash, String message) {
+        this.job = job;
+        this.outcome = outcome;
+        this.cycles = cycles;
+        this.wallNanos = wallNanos;
+        this.stateHash = stateHash;
+        this.message = message;
+    }
+
+    public BatchJob getJob() {
+        return job;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public String getStateHash() {
+        return stateHash;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public enum Outcome {
+        /**
+         * The condition held within the budget, or the job had no condition and ran its whole budget
+         */
+        PASS,
+        /**
+         * The budget ran out before the condition held
+         */
+        FAIL,
+        /**
+         * The ROM could not be loaded or the cpu threw
+         */
+        ERROR
+    }
+}
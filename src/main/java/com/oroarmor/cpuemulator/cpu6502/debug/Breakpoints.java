@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.util.Arrays;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+
+/**
+ * A set of execution breakpoints for a {@link CPU6502}, stored as one bit for each of the 65536 addresses.<br>
+ * The cpu only checks the bitmap when it fetches an instruction, and only while at least one breakpoint is set,
+ * so an attached but empty set costs a single field read per instruction.
+ *
+ * @see CPU6502#setBreakpoints(Breakpoints)
+ */
+public class Breakpoints {
+    private final long[] bits = new long[0x10000 >> 6];
+    private Condition[] conditions;
+    private int count;
+
+    /**
+     * Adds a breakpoint that always stops the cpu
+     *
+     * @param address The address of the instruction
+     */
+    public void add(int address) {
+        add(address, null);
+    }
+
+    /**
+     * Adds a breakpoint that stops the cpu when the condition is true
+     *
+     * @param address   The address of the instruction
+     * @param condition The condition, or null to always stop
+     */
+    public void add(int address, Condition condition) {
+        address &= 0xFFFF;
+        if (!contains(address)) {
+            bits[address >> 6] |= 1L << address;
+            count++;
+        }
+        if (condition != null && conditions == null) {
+            conditions = new Condition[0x10000];
+        }
+        if (conditions != null) {
+            conditions[address] = condition;
+        }
+    }
+
+    /**
+     * Removes the breakpoint at the address
+     *
+     * @param address The address of the instruction
+     */
+    public void remove(int address) {
+        address &= 0xFFFF;
+        if (contains(address)) {
+            bits[address >> 6] &= ~(1L << address);
+            count--;
+        }
+        if (conditions != null) {
+            conditions[address] = null;
+        }
+    }
+
+    /**
+     * Removes every breakpoint
+     */
+    public void clear() {
+        Arrays.fill(bits, 0);
+        conditions = null;
+        count = 0;
+    }
+
+    /**
+     * @param address The address
+     * @return True if a breakpoint is set at the address
+     */
+    public boolean contains(int address) {
+        return (bits[(address & 0xFFFF) >> 6] & 1L << address) != 0;
+    }
+
+    /**
+     * @return The number of breakpoints set
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Checks if the cpu should stop before running the instruction at its program counter.
+     * Called by the cpu at instruction fetch
+     *
+     * @param cpu The cpu
+     * @return True if the cpu should stop
+     */
+    public boolean shouldBreak(CPU6502 cpu) {
+        int address = cpu.getProgramCounter() & 0xFFFF;
+        if ((bits[address >> 6] & 1L << address) == 0) {
+            return false;
+        }
+        Condition condition = conditions == null ? null : conditions[address];
+        return condition == null || condition.test(cpu.getAccumulator() & 0xFF, cpu.getXRegister() & 0xFF, cpu.getYRegister() & 0xFF, cpu.getStackPointer() & 0xFF, cpu.getFlags().toByte() & 0xFF);
+    }
+
+    /**
+     * A condition for a breakpoint over the unsigned values of the registers
+     */
+    @FunctionalInterface
+    public interface Condition {
+        /**
+         * @param accumulator  The accumulator
+         * @param xRegister    The x register
+         * @param yRegister    The y register
+         * @param stackPointer The stack pointer
+         * @param flags        The flags, laid out the same as {@link com.oroarmor.cpuemulator.cpu6502.Flags#toByte()}
+         * @return True if the cpu should stop
+         */
+        boolean test(int accumulator, int xRegister, int yRegister, int stackPointer, int flags);
+
+        /**
+         * @param other The other condition
+         * @return A condition that is true when both conditions are true
+         */
+        default Condition and(Condition other) {
+            return (a, x, y, s, p) -> test(a, x, y, s, p) && other.test(a, x, y, s, p);
+        }
+
+        static Condition accumulatorEquals(int value) {
+            int unsigned = value & 0xFF;
+            return (a, x, y, s, p) -> a == unsigned;
+        }
+
+        static Condition xRegisterEquals(int value) {
+            int unsigned = value & 0xFF;
+            return (a, x, y, s, p) -> x == unsigned;
+        }
+
+        static Condition yRegisterEquals(int value) {
+            int unsigned = value & 0xFF;
+            return (a, x, y, s, p) -> y == unsigned;
+        }
+
+        static Condition stackPointerEquals(int value) {
+            int unsigned = value & 0xFF;
+            return (a, x, y, s, p) -> s == unsigned;
+        }
+
+        /**
+         * @param flagBit The index of the flag (0 to 7)
+         * @param value   The value the flag must have
+         * @return A condition on the flag
+         */
+        static Condition flagEquals(int flagBit, boolean value) {
+            int mask = 1 << flagBit;
+            return (a, x, y, s, p) -> ((p & mask) != 0) == value;
+        }
+    }
+}
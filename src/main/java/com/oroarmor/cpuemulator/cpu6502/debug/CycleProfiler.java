@@ -0,0 +1,227 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+
+/**
+ * An exact profiler for the subroutines running on a {@link CPU6502}.<br>
+ * Every call is timed from the first cycle of its <code>JSR</code> to the last cycle of its <code>RTS</code>, so the cost of
+ * calling is counted against the subroutine. The inclusive cycles count everything while the subroutine is on the stack,
+ * and the exclusive cycles leave out the subroutines it calls. The profiler only runs on calls and returns, and keeps
+ * its statistics in arrays indexed by the subroutine address.
+ */
+public class CycleProfiler implements CPU6502.SubroutineListener {
+    /**
+     * The deepest call stack that is tracked. The 6502 stack can only hold 128 return addresses.
+     */
+    public static final int MAX_DEPTH = 128;
+
+    private static final int CALL_CYCLES = CPU6502Instructions.JSR.getMaxCycles();
+
+    private final CPU6502 cpu;
+
+    private final long[] calls = new long[0x10000];
+    private final long[] inclusiveCycles = new long[0x10000];
+    private final long[] exclusiveCycles = new long[0x10000];
+    private final long[] callCycles = new long[0x10000];
+    private final long[] minCycles = new long[0x10000];
+    private final long[] maxCycles = new long[0x10000];
+    private final int[] activeCalls = new int[0x10000];
+    private final int[] routines = new int[0x10000];
+    private int routineCount;
+
+    private final int[] stackRoutine = new int[MAX_DEPTH];
+    private final long[] stackEntry = new long[MAX_DEPTH];
+    private final long[] stackChildCycles = new long[MAX_DEPTH];
+    private int depth;
+    private int untrackedDepth;
+
+    /**
+     * Creates a new profiler and attaches it to the cpu alongside any other {@link CPU6502.SubroutineListener}
+     *
+     * @param cpu The cpu to profile
+     */
+    public CycleProfiler(CPU6502 cpu) {
+        this.cpu = cpu;
+        Arrays.fill(minCycles, Long.MAX_VALUE);
+        cpu.addSubroutineListener(this);
+    }
+
+    /**
+     * Stops profiling the cpu. The statistics that were collected are kept.
+     */
+    public void detach() {
+        cpu.removeSubroutineListener(this);
+    }
+
+    /**
+     * Removes every statistic and empties the call stack
+     */
+    public void reset() {
+        for (int i = 0; i < routineCount; i++) {
+            int routine = routines[i];
+            calls[routine] = 0;
+            inclusiveCycles[routine] = 0;
+            exclusiveCycles[routine] = 0;
+            callCycles[routine] = 0;
+            minCycles[routine] = Long.MAX_VALUE;
+            maxCycles[routine] = 0;
+        }
+        Arrays.fill(activeCalls, 0);
+        routineCount = 0;
+        depth = 0;
+        untrackedDepth = 0;
+    }
+
+    @Override
+    public void onCall(CPU6502 cpu, int target) {
+        if (depth == MAX_DEPTH) {
+            untrackedDepth++;
+            return;
+        }
+        stackRoutine[depth] = target;
+        stackEntry[depth] = cpu.getCycles() - CALL_CYCLES;
+        stackChildCycles[depth] = 0;
+        depth++;
+        activeCalls[target]++;
+    }
+
+    @Override
+    public void onReturn(CPU6502 cpu) {
+        if (untrackedDepth != 0) {
+            untrackedDepth--;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+
+        depth--;
+        int routine = stackRoutine[depth];
+        long cycles = cpu.getCycles() - stackEntry[depth];
+        if (depth != 0) {
+            stackChildCycles[depth - 1] += cycles;
+        }
+
+        if (calls[routine]++ == 0) {
+            routines[routineCount++] = routine;
+        }
+        exclusiveCycles[routine] += cycles - stackChildCycles[depth];
+        if (--activeCalls[routine] == 0) {
+            inclusiveCycles[routine] += cycles;
+        }
+        callCycles[routine] += cycles;
+        minCycles[routine] = Math.min(minCycles[routine], cycles);
+        maxCycles[routine] = Math.max(maxCycles[routine], cycles);
+    }
+
+    /**
+     * @return The addresses of every subroutine that returned at least once, in the order they first returned
+     */
+    public int[] getRoutines() {
+        return Arrays.copyOf(routines, routineCount);
+    }
+
+    /**
+     * @param routine The address of the subroutine
+     * @return The number of calls that returned
+     */
+    public long getCalls(int routine) {
+        return calls[routine & 0xFFFF];
+    }
+
+    /**
+     * @param routine The address of the subroutine
+     * @return The cycles spent with the subroutine on the stack. Recursive calls are only counted once.
+     */
+    public long getInclusiveCycles(int routine) {
+        return inclusiveCycles[routine & 0xFFFF];
+    }
+
+    /**
+     * @param routine The address of the subroutine
+     * @return The cycles spent running the subroutine itself
+     */
+    public long getExclusiveCycles(int routine) {
+        return exclusiveCycles[routine & 0xFFFF];
+    }
+
+    /**
+     * @param routine The address of the subroutine
+     * @return The fewest cycles a call took, or 0 if it was never called
+     */
+    public long getMinCycles(int routine) {
+        return calls[routine & 0xFFFF] == 0 ? 0 : minCycles[routine & 0xFFFF];
+    }
+
+    /**
+     * @param routine The address of the subroutine
+     * @return The most cycles a call took
+     */
+    public long getMaxCycles(int routine) {
+        return maxCycles[routine & 0xFFFF];
+    }
+
+    /**
+     * @param routine The address of the subroutine
+     * @return The mean cycles a call took, or 0 if it was never called
+     */
+    public double getMeanCycles(int routine) {
+        long count = calls[routine & 0xFFFF];
+        return count == 0 ? 0 : (double) callCycles[routine & 0xFFFF] / count;
+    }
+
+    /**
+     * @return The depth of the call stack
+     */
+    public int getDepth() {
+        return depth + untrackedDepth;
+    }
+
+    /**
+     * Writes one line per subroutine with its calls, cycles and cycles per call, ordered by the most exclusive cycles
+     *
+     * @param out The output
+     * @throws IOException If the output throws
+     */
+    public void writeReport(Appendable out) throws IOException {
+        Integer[] order = new Integer[routineCount];
+        for (int i = 0; i < routineCount; i++) {
+            order[i] = routines[i];
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(exclusiveCycles[b], exclusiveCycles[a]));
+
+        out.append(String.format("%-8s %10s %14s %14s %10s %10s %12s%n", "routine", "calls", "inclusive", "exclusive", "min", "max", "mean"));
+        for (int routine : order) {
+            out.append(String.format("$%04X    %10d %14d %14d %10d %10d %12.2f%n", routine, getCalls(routine), getInclusiveCycles(routine),
+                    getExclusiveCycles(routine), getMinCycles(routine), getMaxCycles(routine), getMeanCycles(routine)));
+        }
+    }
+}
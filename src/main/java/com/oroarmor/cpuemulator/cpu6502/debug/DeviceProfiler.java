@@ -0,0 +1,385 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+
+/**
+ * Measures how long the host spends in each device on a {@link Bus}.<br>
+ * Starting the profiler maps every page to a proxy that counts the accesses to the device handling each location and
+ * forwards them to the device the page was routed to. Only one in every sample interval accesses is timed with {@link System#nanoTime()},
+ * and the total time of each device is estimated from its timed accesses. Stopping the profiler restores the original mappings,
+ * so nothing is paid while it is not running.
+ */
+public class DeviceProfiler {
+    private final Bus bus;
+    private final int sampleInterval;
+    private final Map<Bus.BusDevice, DeviceStats> stats = new IdentityHashMap<>();
+    private final ProfileProxy[] proxies = new ProfileProxy[256];
+    private int countdown;
+
+    /**
+     * Creates a new profiler
+     *
+     * @param bus            The bus to profile
+     * @param sampleInterval The accesses between timed accesses, 1 times every access
+     */
+    public DeviceProfiler(Bus bus, int sampleInterval) {
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException(String.format("Sample interval must be positive, %d was given", sampleInterval));
+        }
+        this.bus = bus;
+        this.sampleInterval = sampleInterval;
+        this.countdown = sampleInterval;
+    }
+
+    /**
+     * Maps every page to a profiling proxy. The devices handling each location are looked up once, so devices attached while
+     * the profiler is running are reached but not counted until it is restarted
+     */
+    public void start() {
+        stop();
+        for (int page = 0; page < proxies.length; page++) {
+            DeviceStats[] locations = new DeviceStats[256];
+            for (int offset = 0; offset < 256; offset++) {
+                Bus.BusDevice device = bus.getDevice(page << 8 | offset);
+                locations[offset] = device == null ? null : stats.computeIfAbsent(device, DeviceStats::new);
+            }
+
+            DeviceStats only = locations[0];
+            boolean single = only != null;
+            for (int offset = 1; offset < 256 && single; offset++) {
+                single = locations[offset] == only;
+            }
+
+            ProfileProxy proxy = new ProfileProxy(bus.getPageDevice(page), single ? null : locations, only);
+            proxy.previousMapping = bus.mapPage(page, proxy);
+            proxies[page] = proxy;
+        }
+    }
+
+    /**
+     * Takes the profiling proxies off every page with {@link Bus#unmapPage(int, Bus.PageProxy)}. The statistics are kept
+     */
+    public void stop() {
+        for (int page = 0; page < proxies.length; page++) {
+            if (proxies[page] != null) {
+                bus.unmapPage(page, proxies[page]);
+                proxies[page] = null;
+            }
+        }
+    }
+
+    /**
+     * Removes every statistic
+     */
+    public void reset() {
+        for (DeviceStats deviceStats : stats.values()) {
+            deviceStats.clear();
+        }
+    }
+
+    /**
+     * @param device The device
+     * @return The statistics of the device, or null if it was never profiled
+     */
+    public DeviceStats getStats(Bus.BusDevice device) {
+        return stats.get(device);
+    }
+
+    /**
+     * @return The statistics of every accessed device, the most estimated host time first
+     */
+    public List<DeviceStats> getWorstDevices() {
+        List<DeviceStats> worst = new ArrayList<>();
+        for (DeviceStats deviceStats : stats.values()) {
+            if (deviceStats.getAccesses() != 0) {
+                worst.add(deviceStats);
+            }
+        }
+        worst.sort((a, b) -> Long.compare(b.getEstimatedNanos(), a.getEstimatedNanos()));
+        return worst;
+    }
+
+    /**
+     * Writes one line per accessed device with its accesses and host time, the most estimated host time first
+     *
+     * @param out The output
+     * @throws IOException If the output throws
+     */
+    public void writeReport(Appendable out) throws IOException {
+        out.append(String.format("%12s %12s %14s %10s %10s  %s%n", "reads", "writes", "estimated ns", "mean ns", "max ns", "device"));
+        for (DeviceStats deviceStats : getWorstDevices()) {
+            out.append(String.format("%12d %12d %14d %10.1f %10d  %s%n", deviceStats.getReads(), deviceStats.getWrites(), deviceStats.getEstimatedNanos(),
+                    deviceStats.getMeanNanos(), deviceStats.getMaxNanos(), deviceStats.getDevice()));
+        }
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    private boolean sampleNext() {
+        if (--countdown != 0) {
+            return false;
+        }
+        countdown = sampleInterval;
+        return true;
+    }
+
+    /**
+     * The accesses and host time of one device. Block transfers count as one access.
+     */
+    public static final class DeviceStats {
+        private final Bus.BusDevice device;
+        private long reads;
+        private long writes;
+        private long timedAccesses;
+        private long timedNanos;
+        private long maxNanos;
+
+        private DeviceStats(Bus.BusDevice device) {
+            this.device = device;
+        }
+
+        private void time(long nanos) {
+            timedAccesses++;
+            timedNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        private void clear() {
+            reads = 0;
+            writes = 0;
+            timedAccesses = 0;
+            timedNanos = 0;
+            maxNanos = 0;
+        }
+
+        public Bus.BusDevice getDevice() {
+            return device;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getAccesses() {
+            return reads + writes;
+        }
+
+        public long getTimedAccesses() {
+            return timedAccesses;
+        }
+
+        /**
+         * @return The host nanoseconds of the timed accesses
+         */
+        public long getTimedNanos() {
+            return timedNanos;
+        }
+
+        /**
+         * @return The slowest timed access in host nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return The mean of the timed accesses in host nanoseconds, or 0 if none were timed
+         */
+        public double getMeanNanos() {
+            return timedAccesses == 0 ? 0 : (double) timedNanos / timedAccesses;
+        }
+
+        /**
+         * @return The host nanoseconds of every access, estimated from the timed accesses
+         */
+        public long getEstimatedNanos() {
+            return Math.round(getMeanNanos() * getAccesses());
+        }
+    }
+
+    /**
+     * Counts and times the accesses of one page and forwards them to the device the page was routed to
+     */
+    private class ProfileProxy implements Bus.TimedDevice, Bus.PageProxy {
+        private Bus.BusDevice device;
+        private final DeviceStats[] locations;
+        private final DeviceStats only;
+        private Bus.BusDevice previousMapping;
+
+        private ProfileProxy(Bus.BusDevice device, DeviceStats[] locations, DeviceStats only) {
+            this.device = device;
+            this.locations = locations;
+            this.only = only;
+        }
+
+        private DeviceStats statsFor(int location) {
+            return locations == null ? only : locations[location & 0xFF];
+        }
+
+        @Override
+        public byte readValue(int location) {
+            DeviceStats deviceStats = statsFor(location);
+            if (deviceStats == null) {
+                return device.readValue(location);
+            }
+            deviceStats.reads++;
+            if (!sampleNext()) {
+                return device.readValue(location);
+            }
+            long start = System.nanoTime();
+            byte value = device.readValue(location);
+            deviceStats.time(System.nanoTime() - start);
+            return value;
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+            DeviceStats deviceStats = statsFor(location);
+            if (deviceStats == null) {
+                device.writeValue(location, value);
+                return;
+            }
+            deviceStats.writes++;
+            if (!sampleNext()) {
+                device.writeValue(location, value);
+                return;
+            }
+            long start = System.nanoTime();
+            device.writeValue(location, value);
+            deviceStats.time(System.nanoTime() - start);
+        }
+
+        @Override
+        public boolean isValidAddress(int location) {
+            return device.isValidAddress(location);
+        }
+
+        @Override
+        public void readValues(int location, byte[] destination, int offset, int length) {
+            if (locations != null) {
+                Bus.TimedDevice.super.readValues(location, destination, offset, length);
+                return;
+            }
+            only.reads++;
+            if (!sampleNext()) {
+                device.readValues(location, destination, offset, length);
+                return;
+            }
+            long start = System.nanoTime();
+            device.readValues(location, destination, offset, length);
+            only.time(System.nanoTime() - start);
+        }
+
+        @Override
+        public void writeValues(int location, byte[] source, int offset, int length) {
+            if (locations != null) {
+                Bus.TimedDevice.super.writeValues(location, source, offset, length);
+                return;
+            }
+            only.writes++;
+            if (!sampleNext()) {
+                device.writeValues(location, source, offset, length);
+                return;
+            }
+            long start = System.nanoTime();
+            device.writeValues(location, source, offset, length);
+            only.time(System.nanoTime() - start);
+        }
+
+        @Override
+        public void readValues(int location, ByteBuffer destination) {
+            if (locations != null) {
+                Bus.TimedDevice.super.readValues(location, destination);
+                return;
+            }
+            only.reads++;
+            if (!sampleNext()) {
+                device.readValues(location, destination);
+                return;
+            }
+            long start = System.nanoTime();
+            device.readValues(location, destination);
+            only.time(System.nanoTime() - start);
+        }
+
+        @Override
+        public void writeValues(int location, ByteBuffer source) {
+            if (locations != null) {
+                Bus.TimedDevice.super.writeValues(location, source);
+                return;
+            }
+            only.writes++;
+            if (!sampleNext()) {
+                device.writeValues(location, source);
+                return;
+            }
+            long start = System.nanoTime();
+            device.writeValues(location, source);
+            only.time(System.nanoTime() - start);
+        }
+
+        @Override
+        public long getNextEventCycle(int location, long cycle) {
+            DeviceStats deviceStats = statsFor(location);
+            Bus.BusDevice target = deviceStats == null ? device : deviceStats.device;
+            return target instanceof Bus.TimedDevice ? ((Bus.TimedDevice) target).getNextEventCycle(location, cycle) : cycle;
+        }
+
+        @Override
+        public Bus.BusDevice getDevice() {
+            return device;
+        }
+
+        @Override
+        public void setDevice(Bus.BusDevice device) {
+            this.device = device;
+        }
+
+        @Override
+        public Bus.BusDevice getPreviousMapping() {
+            return previousMapping;
+        }
+
+        @Override
+        public void setPreviousMapping(Bus.BusDevice previousMapping) {
+            this.previousMapping = previousMapping;
+        }
+    }
+}
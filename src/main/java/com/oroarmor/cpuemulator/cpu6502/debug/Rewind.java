@@ -0,0 +1,349 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.nio.ByteBuffer;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.events.RestoreEvent;
+import com.oroarmor.cpuemulator.cpu6502.events.SnapshotEvent;
+
+/**
+ * Records the execution of a {@link Machine} so it can be stepped backwards.<br>
+ * Every keyframe interval, at an instruction boundary, the cpu state is saved as a keyframe. Between keyframes every bus write
+ * is journaled as the address and the value it replaced, in a ring of primitive arrays. Going back restores memory by undoing
+ * the journal down to the nearest earlier keyframe, loads that keyframe and runs forward to the target instruction.<br>
+ * The keyframes and the journal share a fixed memory budget, and the oldest keyframes are dropped when it is used up.
+ * The old value of a write is read from the device, so pages with reads that have side effects should be excluded
+ * with {@link #excludePage(int)}, and the devices on the other pages must behave the same when replayed.<br>
+ * Once it is recorded the machine must only be run through {@link #run(long)}, since instructions run elsewhere are not counted
+ * and have no keyframes. Running or stepping back after the cpu was clocked elsewhere throws an {@link IllegalStateException}.
+ */
+public class Rewind {
+    private static final int KEYFRAME_SIZE = CPU6502.STATE_SIZE + 2 * Long.BYTES;
+    private static final int JOURNAL_ENTRY_SIZE = Character.BYTES + Byte.BYTES;
+
+    private final Machine machine;
+    private final CPU6502 cpu;
+    private final long keyframeInterval;
+
+    private final char[] journalAddresses;
+    private final byte[] journalValues;
+    private long journalStart;
+    private long journalEnd;
+
+    private final ByteBuffer keyframeStates;
+    private final long[] keyframeInstructions;
+    private final long[] keyframeJournalPositions;
+    private int oldestKeyframe;
+    private int keyframeCount;
+    private long lastKeyframeCycle;
+
+    private final JournalingProxy[] proxies = new JournalingProxy[256];
+    private final boolean[] journaledPages = new boolean[256];
+
+    private long instructions;
+    private long trackedCycle;
+
+    /**
+     * Starts recording a machine. The first keyframe is taken now, or at the next instruction boundary
+     *
+     * @param machine          The machine
+     * @param keyframeInterval The cycles between keyframes
+     * @param memoryBudget     The bytes the keyframes and the journal may use, an eighth of which goes to keyframes
+     */
+    public Rewind(Machine machine, long keyframeInterval, long memoryBudget) {
+        if (keyframeInterval <= 0) {
+            throw new IllegalArgumentException(String.format("Keyframe interval must be positive, %d was given", keyframeInterval));
+        }
+        int keyframes = (int) Math.min(Integer.MAX_VALUE / KEYFRAME_SIZE, memoryBudget / 8 / KEYFRAME_SIZE);
+        int journalEntries = (int) Math.min(Integer.MAX_VALUE - 8, (memoryBudget - (long) keyframes * KEYFRAME_SIZE) / JOURNAL_ENTRY_SIZE);
+        if (keyframes < 2 || journalEntries < 1) {
+            throw new IllegalArgumentException(String.format("A budget of %d bytes is too small", memoryBudget));
+        }
+
+        this.machine = machine;
+        this.cpu = machine.getCpu();
+        this.keyframeInterval = keyframeInterval;
+        this.journalAddresses = new char[journalEntries];
+        this.journalValues = new byte[journalEntries];
+        this.keyframeStates = ByteBuffer.allocate(keyframes * CPU6502.STATE_SIZE);
+        this.keyframeInstructions = new long[keyframes];
+        this.keyframeJournalPositions = new long[keyframes];
+
+        Bus bus = machine.getBus();
+        for (int page = 0; page < 256; page++) {
+            JournalingProxy proxy = new JournalingProxy(bus.getPageDevice(page));
+            proxy.previousMapping = bus.mapPage(page, proxy);
+            proxies[page] = proxy;
+            journaledPages[page] = true;
+        }
+        if (cpu.isInstructionComplete()) {
+            takeKeyframe();
+        }
+        trackedCycle = cpu.getCycles();
+    }
+
+    /**
+     * Runs the machine, stopping early if the cpu stops at a breakpoint
+     *
+     * @param cycles The cycles to run
+     * @return The cycles that were run
+     * @throws IllegalStateException If the cpu was clocked without going through this recording
+     */
+    public long run(long cycles) {
+        checkTracked();
+        Bus bus = machine.getBus();
+        for (long i = 0; i < cycles; i++) {
+            if (!tick(bus)) {
+                return i;
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Goes back a number of instructions. Memory and the cpu are left as they were at the start of that instruction
+     *
+     * @param count The number of instructions to go back
+     * @throws IllegalStateException If the cpu was clocked without going through this recording
+     */
+    public void stepBack(long count) {
+        checkTracked();
+        RestoreEvent event = new RestoreEvent();
+        event.begin();
+        long target = instructions - count;
+        if (count < 0 || keyframeCount == 0 || target < keyframeInstructions[oldestKeyframe]) {
+            throw new IllegalArgumentException(String.format("Can not go back %d instruction(s), only %d are recorded", count, getRecordedInstructions()));
+        }
+
+        int keyframe = keyframeCount - 1;
+        while (keyframeInstructions[keyframeIndex(keyframe)] > target) {
+            keyframe--;
+        }
+        int index = keyframeIndex(keyframe);
+
+        long position = keyframeJournalPositions[index];
+        long undoneWrites = journalEnd - position;
+        while (journalEnd > position) {
+            journalEnd--;
+            int entry = (int) (journalEnd % journalAddresses.length);
+            int address = journalAddresses[entry];
+            proxies[address >>> 8].device.writeValue(address, journalValues[entry]);
+        }
+
+        keyframeCount = keyframe + 1;
+        instructions = keyframeInstructions[index];
+        cpu.loadState(keyframeStates.duplicate().position(index * CPU6502.STATE_SIZE));
+        lastKeyframeCycle = cpu.getCycles();
+        trackedCycle = lastKeyframeCycle;
+
+        Breakpoints breakpoints = cpu.getBreakpoints();
+        cpu.setBreakpoints(null);
+        Bus bus = machine.getBus();
+        while (instructions < target) {
+            tick(bus);
+        }
+        cpu.setBreakpoints(breakpoints);
+
+        if (event.shouldCommit()) {
+            event.cycle = cpu.getCycles();
+            event.undoneWrites = undoneWrites;
+            event.replayedInstructions = target - keyframeInstructions[index];
+            event.commit();
+        }
+    }
+
+    /**
+     * Stops journaling a page, for example one with a device that changes when it is read
+     *
+     * @param page The page (address >> 8)
+     */
+    public void excludePage(int page) {
+        if (journaledPages[page]) {
+            journaledPages[page] = false;
+            machine.getBus().unmapPage(page, proxies[page]);
+        }
+    }
+
+    /**
+     * Stops recording and restores the mapping of every page
+     */
+    public void detach() {
+        for (int page = 0; page < 256; page++) {
+            excludePage(page);
+        }
+        keyframeCount = 0;
+        journalStart = journalEnd;
+    }
+
+    /**
+     * @return The number of instructions that were completed
+     */
+    public long getInstructionCount() {
+        return instructions;
+    }
+
+    /**
+     * @return The number of instructions that can be stepped back
+     */
+    public long getRecordedInstructions() {
+        return keyframeCount == 0 ? 0 : instructions - keyframeInstructions[oldestKeyframe];
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    /**
+     * @return The number of writes in the journal
+     */
+    public long getJournalSize() {
+        return journalEnd - journalStart;
+    }
+
+    /**
+     * Clocks the cpu once, counting instructions and taking keyframes
+     *
+     * @return False if the cpu is stopped at a breakpoint
+     */
+    private boolean tick(Bus bus) {
+        long before = cpu.getCycles();
+        boolean stalled = cpu.getStallCycles() != 0;
+        cpu.tick(bus);
+        if (cpu.getCycles() == before) {
+            return false;
+        }
+        trackedCycle = cpu.getCycles();
+        if (!stalled && cpu.isInstructionComplete()) {
+            instructions++;
+            if (keyframeCount == 0 || cpu.getCycles() - lastKeyframeCycle >= keyframeInterval) {
+                takeKeyframe();
+            }
+        }
+        return true;
+    }
+
+    private void checkTracked() {
+        if (cpu.getCycles() != trackedCycle) {
+            throw new IllegalStateException(String.format("The cpu was run to cycle %d outside of the recording, which stopped at cycle %d", cpu.getCycles(), trackedCycle));
+        }
+    }
+
+    private void takeKeyframe() {
+        SnapshotEvent event = new SnapshotEvent();
+        event.begin();
+        if (keyframeCount == keyframeInstructions.length) {
+            dropOldestKeyframe();
+        }
+        int index = keyframeIndex(keyframeCount);
+        cpu.saveState(keyframeStates.duplicate().position(index * CPU6502.STATE_SIZE));
+        keyframeInstructions[index] = instructions;
+        keyframeJournalPositions[index] = journalEnd;
+        keyframeCount++;
+        lastKeyframeCycle = cpu.getCycles();
+
+        if (event.shouldCommit()) {
+            event.cycle = lastKeyframeCycle;
+            event.bytes = CPU6502.STATE_SIZE;
+            event.commit();
+        }
+    }
+
+    private void dropOldestKeyframe() {
+        oldestKeyframe = keyframeIndex(1);
+        keyframeCount--;
+        journalStart = keyframeCount == 0 ? journalEnd : keyframeJournalPositions[oldestKeyframe];
+    }
+
+    private int keyframeIndex(int keyframe) {
+        return (oldestKeyframe + keyframe) % keyframeInstructions.length;
+    }
+
+    private void journal(int address, byte oldValue) {
+        while (journalEnd - journalStart == journalAddresses.length) {
+            dropOldestKeyframe();
+        }
+        if (keyframeCount == 0) {
+            return;
+        }
+        int entry = (int) (journalEnd % journalAddresses.length);
+        journalAddresses[entry] = (char) address;
+        journalValues[entry] = oldValue;
+        journalEnd++;
+    }
+
+    /**
+     * Journals the old value of every write to one page before forwarding it
+     */
+    private class JournalingProxy implements Bus.PageProxy {
+        private Bus.BusDevice device;
+        private Bus.BusDevice previousMapping;
+
+        private JournalingProxy(Bus.BusDevice device) {
+            this.device = device;
+        }
+
+        @Override
+        public byte readValue(int location) {
+            return device.readValue(location);
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+            if (keyframeCount != 0) {
+                journal(location, device.readValue(location));
+            }
+            device.writeValue(location, value);
+        }
+
+        @Override
+        public boolean isValidAddress(int location) {
+            return device.isValidAddress(location);
+        }
+
+        @Override
+        public Bus.BusDevice getDevice() {
+            return device;
+        }
+
+        @Override
+        public void setDevice(Bus.BusDevice device) {
+            this.device = device;
+        }
+
+        @Override
+        public Bus.BusDevice getPreviousMapping() {
+            return previousMapping;
+        }
+
+        @Override
+        public void setPreviousMapping(Bus.BusDevice previousMapping) {
+            this.previousMapping = previousMapping;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+
+/**
+ * A sampling profiler for the code running on a {@link CPU6502}.<br>
+ * A shadow call stack is kept from every <code>JSR</code> and <code>RTS</code>, and every interval of cycles the cpu
+ * counts the sample against the routine on top of it and the current program counter. Taking a sample allocates nothing, and the samples
+ * can be written as collapsed stacks for standard flame graph tools.
+ */
+public class SamplingProfiler implements CPU6502.SubroutineListener, CPU6502.Sampler {
+    /**
+     * The deepest call stack that is tracked. The 6502 stack can only hold 128 return addresses.
+     */
+    public static final int MAX_DEPTH = 128;
+
+    private final CPU6502 cpu;
+    private final long intervalCycles;
+    private final long[] programCounterSamples = new long[0x10000];
+
+    private final Node root = new Node(-1, null);
+    private Node current = root;
+    private int depth;
+    private int untrackedDepth;
+    private long totalSamples;
+
+    /**
+     * Creates a new profiler and attaches it to the cpu
+     *
+     * @param cpu            The cpu to profile
+     * @param intervalCycles The cycles between samples
+     */
+    public SamplingProfiler(CPU6502 cpu, long intervalCycles) {
+        this.cpu = cpu;
+        this.intervalCycles = intervalCycles;
+        cpu.setSampler(this, intervalCycles);
+        cpu.addSubroutineListener(this);
+    }
+
+    /**
+     * Stops sampling the cpu. The samples that were taken are kept.
+     */
+    public void detach() {
+        if (cpu.getSampler() == this) {
+            cpu.setSampler(null, 0);
+        }
+        cpu.removeSubroutineListener(this);
+    }
+
+    /**
+     * Removes every sample and empties the shadow call stack
+     */
+    public void reset() {
+        root.clear();
+        current = root;
+        depth = 0;
+        untrackedDepth = 0;
+        totalSamples = 0;
+        Arrays.fill(programCounterSamples, 0);
+    }
+
+    @Override
+    public void onCall(CPU6502 cpu, int target) {
+        if (depth == MAX_DEPTH) {
+            untrackedDepth++;
+            return;
+        }
+        current = current.child(target);
+        depth++;
+    }
+
+    @Override
+    public void onReturn(CPU6502 cpu) {
+        if (untrackedDepth != 0) {
+            untrackedDepth--;
+        } else if (current != root) {
+            current = current.parent;
+            depth--;
+        }
+    }
+
+    @Override
+    public void sample(CPU6502 cpu) {
+        current.samples++;
+        programCounterSamples[cpu.getProgramCounter() & 0xFFFF]++;
+        totalSamples++;
+    }
+
+    /**
+     * Writes every sampled stack as one line of <code>root;$C000;$C123 42</code>, with the routines named by their address
+     *
+     * @param out The output
+     * @throws IOException If the output throws
+     */
+    public void writeCollapsedStacks(Appendable out) throws IOException {
+        writeCollapsedStacks(out, address -> String.format("$%04X", address));
+    }
+
+    /**
+     * Writes every sampled stack as one line of semicolon separated routine names and the number of samples
+     *
+     * @param out   The output
+     * @param names Names each routine from its address, names can not contain a semicolon
+     * @throws IOException If the output throws
+     */
+    public void writeCollapsedStacks(Appendable out, IntFunction<String> names) throws IOException {
+        writeNode(out, names, root, "root");
+    }
+
+    private void writeNode(Appendable out, IntFunction<String> names, Node node, String stack) throws IOException {
+        if (node.samples != 0) {
+            out.append(stack).append(' ').append(Long.toString(node.samples)).append('\n');
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            Node child = node.children[i];
+            writeNode(out, names, child, stack + ';' + names.apply(child.address));
+        }
+    }
+
+    /**
+     * @param routine The address of the routine
+     * @return The samples taken while the routine was on top of the call stack, from any caller
+     */
+    public long getSelfSamples(int routine) {
+        return selfSamples(root, routine);
+    }
+
+    private static long selfSamples(Node node, int routine) {
+        long samples = node.address == routine ? node.samples : 0;
+        for (int i = 0; i < node.childCount; i++) {
+            samples += selfSamples(node.children[i], routine);
+        }
+        return samples;
+    }
+
+    /**
+     * @param address The address
+     * @return The samples taken with the program counter at the address
+     */
+    public long getSamplesAt(int address) {
+        return programCounterSamples[address & 0xFFFF];
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public long getIntervalCycles() {
+        return intervalCycles;
+    }
+
+    /**
+     * @return The depth of the shadow call stack
+     */
+    public int getDepth() {
+        return depth + untrackedDepth;
+    }
+
+    private static final class Node {
+        private final int address;
+        private final Node parent;
+        private Node[] children = new Node[0];
+        private int childCount;
+        private long samples;
+
+        private Node(int address, Node parent) {
+            this.address = address;
+            this.parent = parent;
+        }
+
+        private Node child(int target) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i].address == target) {
+                    return children[i];
+                }
+            }
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+            }
+            Node child = new Node(target, this);
+            children[childCount++] = child;
+            return child;
+        }
+
+        private void clear() {
+            children = new Node[0];
+            childCount = 0;
+            samples = 0;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+
+/**
+ * Read and write watchpoints on a {@link Bus}.<br>
+ * Setting a watchpoint maps the page holding its address to a proxy that checks the exact address and forwards to the
+ * device the page was routed to. Every other page keeps its direct route, and removing the last watchpoint of a page
+ * takes the proxy off the page again with {@link Bus#unmapPage(int, Bus.PageProxy)}.
+ */
+public class Watchpoints {
+    private final Bus bus;
+    private final Listener listener;
+    private final WatchProxy[] proxies = new WatchProxy[256];
+    private int count;
+
+    /**
+     * Creates a new set of watchpoints
+     *
+     * @param bus      The bus to watch
+     * @param listener The listener notified of every watched access
+     */
+    public Watchpoints(Bus bus, Listener listener) {
+        this.bus = bus;
+        this.listener = listener;
+    }
+
+    /**
+     * Watches reads from the address
+     *
+     * @param address The address
+     */
+    public void watchRead(int address) {
+        proxyFor(address).setRead(address & 0xFF, true);
+    }
+
+    /**
+     * Watches writes to the address
+     *
+     * @param address The address
+     */
+    public void watchWrite(int address) {
+        proxyFor(address).setWrite(address & 0xFF, true);
+    }
+
+    /**
+     * Removes the read and write watchpoints on the address
+     *
+     * @param address The address
+     */
+    public void remove(int address) {
+        int page = (address >>> 8) & 0xFF;
+        WatchProxy proxy = proxies[page];
+        if (proxy == null) {
+            return;
+        }
+        proxy.setRead(address & 0xFF, false);
+        proxy.setWrite(address & 0xFF, false);
+        if (proxy.count == 0) {
+            bus.unmapPage(page, proxy);
+            proxies[page] = null;
+        }
+    }
+
+    /**
+     * Removes every watchpoint
+     */
+    public void clear() {
+        for (int page = 0; page < proxies.length; page++) {
+            if (proxies[page] != null) {
+                bus.unmapPage(page, proxies[page]);
+                proxies[page] = null;
+            }
+        }
+        count = 0;
+    }
+
+    /**
+     * @param address The address
+     * @return True if reads from the address are watched
+     */
+    public boolean isReadWatched(int address) {
+        WatchProxy proxy = proxies[(address >>> 8) & 0xFF];
+        return proxy != null && proxy.isRead(address & 0xFF);
+    }
+
+    /**
+     * @param address The address
+     * @return True if writes to the address are watched
+     */
+    public boolean isWriteWatched(int address) {
+        WatchProxy proxy = proxies[(address >>> 8) & 0xFF];
+        return proxy != null && proxy.isWrite(address & 0xFF);
+    }
+
+    /**
+     * @return The number of read and write watchpoints set
+     */
+    public int size() {
+        return count;
+    }
+
+    private WatchProxy proxyFor(int address) {
+        int page = (address >>> 8) & 0xFF;
+        WatchProxy proxy = proxies[page];
+        if (proxy == null) {
+            proxy = new WatchProxy(bus.getPageDevice(page));
+            proxy.previousMapping = bus.mapPage(page, proxy);
+            proxies[page] = proxy;
+        }
+        return proxy;
+    }
+
+    /**
+     * Notified of accesses to watched addresses, after the access reached the device
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param address The address
+         * @param value   The value read or written
+         * @param write   True for a write, false for a read
+         */
+        void onAccess(int address, byte value, boolean write);
+    }
+
+    /**
+     * Traps the watched addresses of one page and forwards every access to the device the page was routed to
+     */
+    private class WatchProxy implements Bus.PageProxy {
+        private Bus.BusDevice device;
+        private final long[] reads = new long[4];
+        private final long[] writes = new long[4];
+        private Bus.BusDevice previousMapping;
+        private int count;
+
+        private WatchProxy(Bus.BusDevice device) {
+            this.device = device;
+        }
+
+        @Override
+        public byte readValue(int location) {
+            byte value = device.readValue(location);
+            if ((reads[(location & 0xFF) >> 6] & 1L << location) != 0) {
+                listener.onAccess(location, value, false);
+            }
+            return value;
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+            device.writeValue(location, value);
+            if ((writes[(location & 0xFF) >> 6] & 1L << location) != 0) {
+                listener.onAccess(location, value, true);
+            }
+        }
+
+        @Override
+        public boolean isValidAddress(int location) {
+            return device.isValidAddress(location);
+        }
+
+        @Override
+        public Bus.BusDevice getDevice() {
+            return device;
+        }
+
+        @Override
+        public void setDevice(Bus.BusDevice device) {
+            this.device = device;
+        }
+
+        @Override
+        public Bus.BusDevice getPreviousMapping() {
+            return previousMapping;
+        }
+
+        @Override
+        public void setPreviousMapping(Bus.BusDevice previousMapping) {
+            this.previousMapping = previousMapping;
+        }
+
+        private boolean isRead(int offset) {
+            return (reads[offset >> 6] & 1L << offset) != 0;
+        }
+
+        private boolean isWrite(int offset) {
+            return (writes[offset >> 6] & 1L << offset) != 0;
+        }
+
+        private void setRead(int offset, boolean watched) {
+            count += update(reads, offset, watched);
+        }
+
+        private void setWrite(int offset, boolean watched) {
+            count += update(writes, offset, watched);
+        }
+
+        private int update(long[] bits, int offset, boolean watched) {
+            boolean wasWatched = (bits[offset >> 6] & 1L << offset) != 0;
+            if (wasWatched == watched) {
+                return 0;
+            }
+            bits[offset >> 6] ^= 1L << offset;
+            int change = watched ? 1 : -1;
+            Watchpoints.this.count += change;
+            return change;
+        }
+    }
+}
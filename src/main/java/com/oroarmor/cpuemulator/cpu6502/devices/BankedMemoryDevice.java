@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.nio.ByteBuffer;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.checkpoint.StatefulDevice;
+
+/**
+ * ROM or RAM larger than the address space, seen through windows that each show one bank at a time.<br>
+ * Every page of a window is routed to its own view with {@link Bus#mapPageUnderProxies(int, Bus.BusDevice)}, and a view reads and writes the
+ * backing array directly at its offset. Switching banks moves the offset of each view in the window, so a switch is one store
+ * per page and a read after it is still a single array load. Debugging proxies mapped over the window keep working across switches.<br>
+ * The state of banked RAM is its contents, and the state of each window is the bank it shows
+ */
+public class BankedMemoryDevice implements StatefulDevice {
+    public static final int PAGE_SIZE = 256;
+
+    private final byte[] memory;
+    private final int bankSize;
+    private final boolean readOnly;
+
+    /**
+     * Creates a new banked memory
+     *
+     * @param memory   The array holding every bank, one after another
+     * @param bankSize The size of a bank and of every window, a multiple of {@link #PAGE_SIZE}
+     * @param readOnly True to ignore writes from the bus, as ROM does
+     */
+    public BankedMemoryDevice(byte[] memory, int bankSize, boolean readOnly) {
+        if (bankSize <= 0 || bankSize % PAGE_SIZE != 0 || memory.length % bankSize != 0) {
+            throw new IllegalArgumentException(String.format("The bank size must be a multiple of %d that divides the memory, %d was given for %d bytes", PAGE_SIZE, bankSize, memory.length));
+        }
+        this.memory = memory;
+        this.bankSize = bankSize;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Maps a window showing one bank onto the bus, underneath any debugging proxies already mapped over its pages
+     *
+     * @param bus   The bus
+     * @param start The first address of the window, at the start of a page
+     * @param bank  The bank shown first
+     * @return The window
+     */
+    public Window map(Bus bus, int start, int bank) {
+        if (start % PAGE_SIZE != 0 || start < 0 || start + bankSize > 0x10000) {
+            throw new IllegalArgumentException(String.format("The window must start on a page and fit in the bus, %X was given", start));
+        }
+        Window window = new Window(start);
+        window.selectBank(bank);
+        for (int i = 0; i < window.views.length; i++) {
+            bus.mapPageUnderProxies((start >>> 8) + i, window.views[i]);
+        }
+        return window;
+    }
+
+    public int getBankCount() {
+        return memory.length / bankSize;
+    }
+
+    public int getBankSize() {
+        return bankSize;
+    }
+
+    /**
+     * @return The array holding every bank
+     */
+    public byte[] getMemory() {
+        return memory;
+    }
+
+    @Override
+    public int getStateSize() {
+        return readOnly ? 0 : memory.length;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        if (!readOnly) {
+            buffer.put(memory);
+        }
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        if (!readOnly) {
+            buffer.get(memory);
+        }
+    }
+
+    /**
+     * A range of the bus showing one bank of a {@link BankedMemoryDevice}
+     */
+    public final class Window implements StatefulDevice {
+        private final int start;
+        private final PageView[] views = new PageView[bankSize / PAGE_SIZE];
+        private int bank;
+
+        private Window(int start) {
+            this.start = start;
+            for (int i = 0; i < views.length; i++) {
+                views[i] = new PageView();
+            }
+        }
+
+        /**
+         * Shows a different bank in the window
+         *
+         * @param bank The bank
+         */
+        public void selectBank(int bank) {
+            if (bank < 0 || bank >= getBankCount()) {
+                throw new IllegalArgumentException(String.format("Bank %d does not exist, there are %d banks", bank, getBankCount()));
+            }
+            this.bank = bank;
+            int base = bank * bankSize;
+            for (PageView view : views) {
+                view.base = base;
+                base += PAGE_SIZE;
+            }
+        }
+
+        /**
+         * @return The bank shown in the window
+         */
+        public int getBank() {
+            return bank;
+        }
+
+        /**
+         * @return The first address of the window
+         */
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getStateSize() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void saveState(ByteBuffer buffer) {
+            buffer.putInt(bank);
+        }
+
+        @Override
+        public void loadState(ByteBuffer buffer) {
+            selectBank(buffer.getInt());
+        }
+    }
+
+    /**
+     * One page of a window, reading and writing the backing array at an offset
+     */
+    private final class PageView implements Bus.TimedDevice {
+        private int base;
+
+        @Override
+        public byte readValue(int location) {
+            return memory[base | (location & 0xFF)];
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+            if (!readOnly) {
+                memory[base | (location & 0xFF)] = value;
+            }
+        }
+
+        @Override
+        public boolean isValidAddress(int location) {
+            return true;
+        }
+
+        @Override
+        public void readValues(int location, byte[] destination, int offset, int length) {
+            System.arraycopy(memory, base | (location & 0xFF), destination, offset, length);
+        }
+
+        @Override
+        public void writeValues(int location, byte[] source, int offset, int length) {
+            if (!readOnly) {
+                System.arraycopy(source, offset, memory, base | (location & 0xFF), length);
+            }
+        }
+
+        @Override
+        public void readValues(int location, ByteBuffer destination) {
+            destination.put(memory, base | (location & 0xFF), destination.remaining());
+        }
+
+        @Override
+        public void writeValues(int location, ByteBuffer source) {
+            if (readOnly) {
+                source.position(source.limit());
+            } else {
+                source.get(memory, base | (location & 0xFF), source.remaining());
+            }
+        }
+
+        @Override
+        public long getNextEventCycle(int location, long cycle) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
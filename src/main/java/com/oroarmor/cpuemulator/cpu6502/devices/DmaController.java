@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+
+/**
+ * A DMA controller that copies a page of memory into a device when its register is written, like the sprite DMA of the NES.<br>
+ * Writing <code>n</code> to the register copies <code>$n00-$nFF</code> to the target and halts the cpu for {@link #STALL_CYCLES} cycles:
+ * one cycle to halt, and a read and a write cycle for each byte. When the register is written on an odd cycle one more cycle is
+ * stolen, so that every read of the transfer lands on an even cycle.<br>
+ * Nothing else runs on the bus while the cpu is halted, so the page is copied at once as a block, and the halt is a single
+ * {@link CPU6502#stall(int)} instead of ticking through every stolen cycle
+ */
+public class DmaController implements Bus.BusDevice {
+    public static final int PAGE_SIZE = 256;
+    public static final int STALL_CYCLES = 1 + 2 * PAGE_SIZE;
+
+    private final int address;
+    private final Bus bus;
+    private final CPU6502 cpu;
+    private final Bus.BusDevice target;
+    private final int targetLocation;
+    private final byte[] page = new byte[PAGE_SIZE];
+
+    private long transfers;
+
+    /**
+     * Creates a new DMA controller
+     *
+     * @param address        The address of the register
+     * @param bus            The bus to copy from
+     * @param cpu            The cpu to halt
+     * @param target         The device to copy to, for example sprite memory that is not on the bus
+     * @param targetLocation The location in the target the page is copied to
+     */
+    public DmaController(int address, Bus bus, CPU6502 cpu, Bus.BusDevice target, int targetLocation) {
+        this.address = address;
+        this.bus = bus;
+        this.cpu = cpu;
+        this.target = target;
+        this.targetLocation = targetLocation;
+    }
+
+    @Override
+    public byte readValue(int location) {
+        return 0;
+    }
+
+    /**
+     * Copies the page and halts the cpu
+     *
+     * @param location The location of the register
+     * @param value    The page to copy from
+     */
+    @Override
+    public void writeValue(int location, byte value) {
+        int source = Byte.toUnsignedInt(value) << 8;
+        if (target instanceof MemoryDevice && !((MemoryDevice) target).isReadOnly()) {
+            MemoryDevice memory = (MemoryDevice) target;
+            bus.readBytes(source, memory.getMemory(), targetLocation - memory.getStart(), PAGE_SIZE);
+        } else {
+            bus.readBytes(source, page, 0, PAGE_SIZE);
+            target.writeValues(targetLocation, page, 0, PAGE_SIZE);
+        }
+        cpu.stall(STALL_CYCLES + (int) (cpu.getCycles() & 1));
+        transfers++;
+    }
+
+    @Override
+    public boolean isValidAddress(int location) {
+        return location == address;
+    }
+
+    /**
+     * @return The number of pages copied
+     */
+    public long getTransfers() {
+        return transfers;
+    }
+}
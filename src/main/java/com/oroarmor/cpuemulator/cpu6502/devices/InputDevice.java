@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.util.function.LongSupplier;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+
+/**
+ * An input device with a status and a data register, fed by host threads through an {@link InputQueue}.<br>
+ * Bit 7 of the status register is set while an event is visible at the current cpu cycle. Reading the data register removes
+ * the event and returns its value, or returns the last value again when no event is visible. Writes are ignored.
+ * The queue is only drained when the cpu reads the registers, so the emulation thread never takes a lock.<br>
+ * The status register reports the cycle of the next queued event as a {@link Bus.TimedDevice}. An empty queue has no event scheduled,
+ * so a cpu skipping idle loops that polls an empty queue runs to the end of its batch and sees input pushed in the meantime on the next batch.
+ */
+public class InputDevice implements Bus.TimedDevice {
+    public static final byte READY = (byte) 0b10000000;
+
+    private final int statusAddress;
+    private final int dataAddress;
+    private final InputQueue queue;
+    private final LongSupplier cycleSource;
+    private byte data;
+
+    /**
+     * Creates a new input device
+     *
+     * @param address     The address of the status register. The data register is the next address
+     * @param capacity    The capacity of the queue
+     * @param cycleSource The current cpu cycle, for example <code>cpu::getCycles</code>
+     */
+    public InputDevice(int address, int capacity, LongSupplier cycleSource) {
+        this.statusAddress = address;
+        this.dataAddress = address + 1;
+        this.queue = new InputQueue(capacity);
+        this.cycleSource = cycleSource;
+    }
+
+    /**
+     * Adds an event from a host thread. Only one host thread may push events
+     *
+     * @param cycle The cpu cycle the event becomes visible at
+     * @param value The value
+     * @return False if the queue is full
+     */
+    public boolean push(long cycle, byte value) {
+        return queue.offer(cycle, value);
+    }
+
+    @Override
+    public byte readValue(int location) {
+        long cycle = cycleSource.getAsLong();
+        if (location == statusAddress) {
+            return queue.isReady(cycle) ? READY : 0;
+        }
+        int value = queue.poll(cycle);
+        if (value != -1) {
+            data = (byte) value;
+        }
+        return data;
+    }
+
+    @Override
+    public long getNextEventCycle(int location, long cycle) {
+        if (location != statusAddress) {
+            return cycle;
+        }
+        long now = cycleSource.getAsLong();
+        if (queue.isReady(now)) {
+            return Long.MAX_VALUE;
+        }
+        long event = queue.peekTimestamp();
+        return event == Long.MAX_VALUE ? Long.MAX_VALUE : cycle + (event - now);
+    }
+
+    @Override
+    public void writeValue(int location, byte value) {
+    }
+
+    @Override
+    public boolean isValidAddress(int location) {
+        return location == statusAddress || location == dataAddress;
+    }
+
+    public InputQueue getQueue() {
+        return queue;
+    }
+}
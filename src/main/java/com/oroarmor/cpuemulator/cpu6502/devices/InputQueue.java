@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free single producer, single consumer ring buffer of input events for a device.<br>
+ * One host thread calls {@link #offer(long, byte)}, and the emulation thread calls {@link #poll(long)}.
+ * Each event is timestamped with the cpu cycle that it becomes visible at, so the guest sees it at the same cycle no matter
+ * when the host thread got to run.
+ */
+public class InputQueue {
+    private final long[] timestamps;
+    private final byte[] values;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Only used by the producer
+     */
+    private long cachedHead;
+    private long lastTimestamp;
+
+    /**
+     * Only used by the consumer
+     */
+    private long cachedTail;
+
+    /**
+     * Creates a new queue
+     *
+     * @param capacity The maximum number of events waiting, rounded up to a power of two
+     */
+    public InputQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException(String.format("Capacity must be between 1 and 2^30, %d was given", capacity));
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        timestamps = new long[size];
+        values = new byte[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an event. Only one thread may call this method.<br>
+     * Timestamps earlier than the last event are moved up to it so that events stay in order
+     *
+     * @param cycle The cpu cycle the event becomes visible at
+     * @param value The value of the event
+     * @return False if the queue is full
+     */
+    public boolean offer(long cycle, byte value) {
+        long currentTail = tail.get();
+        if (currentTail - cachedHead > mask) {
+            cachedHead = head.get();
+            if (currentTail - cachedHead > mask) {
+                return false;
+            }
+        }
+
+        lastTimestamp = Math.max(lastTimestamp, cycle);
+        int index = (int) currentTail & mask;
+        timestamps[index] = lastTimestamp;
+        values[index] = value;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Returns if an event is visible at the cycle. Only the consumer thread may call this method
+     *
+     * @param currentCycle The current cpu cycle
+     * @return True when {@link #poll(long)} would return an event
+     */
+    public boolean isReady(long currentCycle) {
+        long currentHead = head.get();
+        return hasEvent(currentHead) && timestamps[(int) currentHead & mask] <= currentCycle;
+    }
+
+    /**
+     * Returns the cycle the next event becomes visible at. Only the consumer thread may call this method
+     *
+     * @return The timestamp of the next event, or {@link Long#MAX_VALUE} if the queue is empty
+     */
+    public long peekTimestamp() {
+        long currentHead = head.get();
+        return hasEvent(currentHead) ? timestamps[(int) currentHead & mask] : Long.MAX_VALUE;
+    }
+
+    private boolean hasEvent(long currentHead) {
+        if (currentHead == cachedTail) {
+            cachedTail = tail.get();
+            return currentHead != cachedTail;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the next event if it is visible at the cycle. Only the consumer thread may call this method
+     *
+     * @param currentCycle The current cpu cycle
+     * @return The unsigned value of the event, or -1 if there is no visible event
+     */
+    public int poll(long currentCycle) {
+        if (!isReady(currentCycle)) {
+            return -1;
+        }
+        long currentHead = head.get();
+        int value = Byte.toUnsignedInt(values[(int) currentHead & mask]);
+        head.lazySet(currentHead + 1);
+        return value;
+    }
+
+    /**
+     * @return The number of events waiting, visible or not
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
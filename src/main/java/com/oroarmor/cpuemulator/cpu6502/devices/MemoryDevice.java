@@ -0,0 +1,149 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.nio.ByteBuffer;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.checkpoint.StatefulDevice;
+
+/**
+ * RAM or ROM backed by a byte array. Blocks are copied with {@link System#arraycopy} instead of one value at a time.
+ * Its values only change when they are written, so loops reading it can be skipped as idle. The state of RAM is its contents,
+ * and ROM has no state
+ */
+public class MemoryDevice implements Bus.TimedDevice, StatefulDevice {
+    private final int start;
+    private final byte[] memory;
+    private final boolean readOnly;
+
+    /**
+     * Creates new RAM filled with zeros
+     *
+     * @param start The first address of the memory
+     * @param size  The number of bytes
+     */
+    public MemoryDevice(int start, int size) {
+        this(start, new byte[size], false);
+    }
+
+    /**
+     * Creates memory backed by an existing array. Changes to the array are seen by the bus
+     *
+     * @param start    The first address of the memory
+     * @param memory   The array holding the memory
+     * @param readOnly True to ignore writes from the bus, as ROM does
+     */
+    public MemoryDevice(int start, byte[] memory, boolean readOnly) {
+        this.start = start;
+        this.memory = memory;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public byte readValue(int location) {
+        return memory[location - start];
+    }
+
+    @Override
+    public void writeValue(int location, byte value) {
+        if (!readOnly) {
+            memory[location - start] = value;
+        }
+    }
+
+    @Override
+    public boolean isValidAddress(int location) {
+        return location >= start && location - start < memory.length;
+    }
+
+    @Override
+    public void readValues(int location, byte[] destination, int offset, int length) {
+        System.arraycopy(memory, location - start, destination, offset, length);
+    }
+
+    @Override
+    public void writeValues(int location, byte[] source, int offset, int length) {
+        if (!readOnly) {
+            System.arraycopy(source, offset, memory, location - start, length);
+        }
+    }
+
+    @Override
+    public void readValues(int location, ByteBuffer destination) {
+        destination.put(memory, location - start, destination.remaining());
+    }
+
+    @Override
+    public void writeValues(int location, ByteBuffer source) {
+        if (readOnly) {
+            source.position(source.limit());
+        } else {
+            source.get(memory, location - start, source.remaining());
+        }
+    }
+
+    @Override
+    public long getNextEventCycle(int location, long cycle) {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int getStateSize() {
+        return readOnly ? 0 : memory.length;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        if (!readOnly) {
+            buffer.put(memory);
+        }
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        if (!readOnly) {
+            buffer.get(memory);
+        }
+    }
+
+    /**
+     * @return The first address of the memory
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return The array holding the memory
+     */
+    public byte[] getMemory() {
+        return memory;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+}
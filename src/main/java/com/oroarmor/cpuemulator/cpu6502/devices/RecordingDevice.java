@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.LongSupplier;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+
+/**
+ * Records every value a device returns to the cpu, with the cpu cycle it was read at, so a run can be reproduced with a
+ * {@link ReplayDevice}. Writes are passed to the device and are not recorded, since the cpu makes them again when replayed.<br>
+ * The journal is append only and buffered, and most entries take three bytes, so recording can be left on.
+ */
+public class RecordingDevice implements Bus.BusDevice, Closeable {
+    private final Bus.BusDevice device;
+    private final LongSupplier cycleSource;
+    private final OutputStream out;
+    private long lastCycle;
+    private int lastAddress;
+    private long reads;
+
+    /**
+     * Starts a new journal
+     *
+     * @param device      The device to record
+     * @param cycleSource The current cpu cycle, for example <code>cpu::getCycles</code>
+     * @param out         The stream to write the journal to
+     */
+    public RecordingDevice(Bus.BusDevice device, LongSupplier cycleSource, OutputStream out) {
+        this.device = device;
+        this.cycleSource = cycleSource;
+        this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out);
+        try {
+            this.out.write(InputJournal.MAGIC);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte readValue(int location) {
+        byte value = device.readValue(location);
+        long cycle = cycleSource.getAsLong();
+        try {
+            InputJournal.writeVarLong(out, cycle - lastCycle);
+            InputJournal.writeVarLong(out, location - lastAddress);
+            out.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lastCycle = cycle;
+        lastAddress = location;
+        reads++;
+        return value;
+    }
+
+    @Override
+    public void writeValue(int location, byte value) {
+        device.writeValue(location, value);
+    }
+
+    @Override
+    public boolean isValidAddress(int location) {
+        return device.isValidAddress(location);
+    }
+
+    /**
+     * @return The number of reads recorded
+     */
+    public long getReads() {
+        return reads;
+    }
+
+    /**
+     * Writes the buffered entries to the stream
+     *
+     * @throws IOException If the stream could not be written
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
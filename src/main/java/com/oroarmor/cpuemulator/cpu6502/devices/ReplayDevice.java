@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+
+/**
+ * Replays a journal written by a {@link RecordingDevice}, returning the recorded values in place of the device.<br>
+ * Every read is checked against the cycle and address it was recorded at, and an {@link IllegalStateException} is thrown
+ * when the run stops matching the recording.
+ */
+public class ReplayDevice implements Bus.BusDevice, Closeable {
+    private final Bus.BusDevice device;
+    private final LongSupplier cycleSource;
+    private final InputStream in;
+    private long lastCycle;
+    private int lastAddress;
+    private long reads;
+
+    /**
+     * Opens a journal
+     *
+     * @param device      The device that was recorded, which decides the addresses listened to and receives the writes
+     * @param cycleSource The current cpu cycle, for example <code>cpu::getCycles</code>
+     * @param in          The stream to read the journal from
+     */
+    public ReplayDevice(Bus.BusDevice device, LongSupplier cycleSource, InputStream in) {
+        this.device = device;
+        this.cycleSource = cycleSource;
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+        try {
+            byte[] magic = new byte[InputJournal.MAGIC.length];
+            for (int i = 0; i < magic.length; i++) {
+                magic[i] = (byte) InputJournal.readByte(this.in);
+            }
+            if (!Arrays.equals(magic, InputJournal.MAGIC)) {
+                throw new IllegalArgumentException("The stream is not an input journal");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte readValue(int location) {
+        long cycle = cycleSource.getAsLong();
+        long recordedCycle;
+        int recordedAddress;
+        byte value;
+        try {
+            recordedCycle = lastCycle + InputJournal.readVarLong(in);
+            recordedAddress = (int) (lastAddress + InputJournal.readVarLong(in));
+            value = (byte) InputJournal.readByte(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Replay failed after %d read(s)", reads), e);
+        }
+
+        if (recordedCycle != cycle || recordedAddress != location) {
+            throw new IllegalStateException(String.format("Replay diverged at read %d: %04X was read at cycle %d, the journal has %04X at cycle %d", reads, location, cycle, recordedAddress, recordedCycle));
+        }
+        lastCycle = recordedCycle;
+        lastAddress = recordedAddress;
+        reads++;
+        return value;
+    }
+
+    @Override
+    public void writeValue(int location, byte value) {
+        device.writeValue(location, value);
+    }
+
+    @Override
+    public boolean isValidAddress(int location) {
+        return device.isValidAddress(location);
+    }
+
+    /**
+     * @return The number of reads replayed
+     */
+    public long getReads() {
+        return reads;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
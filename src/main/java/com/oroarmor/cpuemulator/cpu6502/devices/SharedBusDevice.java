@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+
+/**
+ * Exposes a window of a shared {@link Bus} as a device on another bus, so that several processors with their own private
+ * buses can see the same memory and devices
+ */
+public class SharedBusDevice implements Bus.BusDevice {
+    private final Bus sharedBus;
+    private final int start;
+    private final int end;
+
+    /**
+     * Creates a new shared window. Addresses are passed to the shared bus unchanged
+     *
+     * @param sharedBus The shared bus
+     * @param start     The first address of the window
+     * @param end       The last address of the window
+     */
+    public SharedBusDevice(Bus sharedBus, int start, int end) {
+        this.sharedBus = sharedBus;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public byte readValue(int location) {
+        return sharedBus.readByte(location);
+    }
+
+    @Override
+    public void writeValue(int location, byte value) {
+        sharedBus.writeByte(location, value);
+    }
+
+    @Override
+    public boolean isValidAddress(int location) {
+        return location >= start && location <= end;
+    }
+
+    public Bus getSharedBus() {
+        return sharedBus;
+    }
+}
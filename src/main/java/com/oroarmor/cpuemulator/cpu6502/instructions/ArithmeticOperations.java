@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.instructions;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Flags;
+
+public final class ArithmeticOperations {
+    /**
+     * Adds the value at the address specified by the {@link CPU6502Instructions#getAddressingMode} and the carry flag to {@link CPU6502#getAccumulator}.
+     * When the decimal mode flag is set the result is read from the precomputed {@link DecimalModeTables}
+     *
+     * @see CPU6502Instructions.CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
+     */
+    public static boolean addWithCarry(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
+        Flags flags = cpu.getFlags();
+        int accumulator = cpu.getAccumulator() & 0xFF;
+        int operand = Byte.toUnsignedInt(bus.readByte(cpu.getCurrentAddressPointer()));
+        int carry = flags.getFlag((byte) 0) ? 1 : 0;
+
+        int result = flags.getFlag((byte) 3) ? DecimalModeTables.add(accumulator, operand, carry) : binaryAdd(accumulator, operand, carry);
+        return storeResult(cpu, result);
+    }
+
+    /**
+     * Subtracts the value at the address specified by the {@link CPU6502Instructions#getAddressingMode} and the borrow (inverted carry flag) from {@link CPU6502#getAccumulator}.
+     * When the decimal mode flag is set the result is read from the precomputed {@link DecimalModeTables}
+     *
+     * @see CPU6502Instructions.CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
+     */
+    public static boolean subtractWithCarry(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
+        Flags flags = cpu.getFlags();
+        int accumulator = cpu.getAccumulator() & 0xFF;
+        int operand = Byte.toUnsignedInt(bus.readByte(cpu.getCurrentAddressPointer()));
+        int carry = flags.getFlag((byte) 0) ? 1 : 0;
+
+        int result = flags.getFlag((byte) 3) ? DecimalModeTables.subtract(accumulator, operand, carry) : binaryAdd(accumulator, operand ^ 0xFF, carry);
+        return storeResult(cpu, result);
+    }
+
+    /**
+     * Adds two unsigned bytes and a carry the same way the binary mode <code>ADC</code> does
+     *
+     * @param accumulator The unsigned accumulator value
+     * @param operand     The unsigned operand value
+     * @param carry       1 if the carry flag is set, otherwise 0
+     * @return The result in the low byte and the <code>NV----ZC</code> flags in the high byte
+     */
+    static int binaryAdd(int accumulator, int operand, int carry) {
+        int sum = accumulator + operand + carry;
+        int result = sum & 0xFF;
+
+        int flags = result & 0b10000000;
+        flags |= (~(accumulator ^ operand) & (accumulator ^ result) & 0x80) != 0 ? 0b01000000 : 0;
+        flags |= result == 0 ? 0b00000010 : 0;
+        flags |= sum > 0xFF ? 0b00000001 : 0;
+        return flags << 8 | result;
+    }
+
+    /**
+     * Stores the low byte of the result into the accumulator and replaces the <code>NV----ZC</code> flags with the high byte
+     *
+     * @param cpu    The cpu
+     * @param result The result from {@link #binaryAdd(int, int, int)} or the {@link DecimalModeTables}
+     * @return true
+     */
+    private static boolean storeResult(CPU6502 cpu, int result) {
+        cpu.setAccumulator((byte) result);
+
+        byte flags = (byte) ((cpu.getFlags().toByte() & ~DecimalModeTables.FLAG_MASK) | (result >> 8));
+        cpu.getFlags().fromByte(flags);
+        return true;
+    }
+}
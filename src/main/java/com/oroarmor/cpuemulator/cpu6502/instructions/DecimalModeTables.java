@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.instructions;
+
+/**
+ * Precomputed results of the NMOS 6502 decimal mode <code>ADC</code> and <code>SBC</code>.<br>
+ * Each table is indexed by <code>carry << 16 | accumulator << 8 | operand</code>, and each entry holds the result in the low byte
+ * and the <code>NV----ZC</code> flags in the high byte, laid out the same as {@link com.oroarmor.cpuemulator.cpu6502.Flags#toByte()}
+ */
+final class DecimalModeTables {
+    /**
+     * The flag bits that <code>ADC</code> and <code>SBC</code> write
+     */
+    static final int FLAG_MASK = 0b11000011;
+
+    private static final char[] ADD = new char[0x20000];
+    private static final char[] SUBTRACT = new char[0x20000];
+
+    static {
+        for (int carry = 0; carry <= 1; carry++) {
+            for (int accumulator = 0; accumulator <= 0xFF; accumulator++) {
+                for (int operand = 0; operand <= 0xFF; operand++) {
+                    int index = carry << 16 | accumulator << 8 | operand;
+                    ADD[index] = (char) computeAdd(accumulator, operand, carry);
+                    SUBTRACT[index] = (char) computeSubtract(accumulator, operand, carry);
+                }
+            }
+        }
+    }
+
+    private DecimalModeTables() {
+    }
+
+    /**
+     * Looks up a decimal mode add
+     *
+     * @param accumulator The unsigned accumulator value
+     * @param operand     The unsigned operand value
+     * @param carry       1 if the carry flag is set, otherwise 0
+     * @return The result in the low byte and the flags in the high byte
+     */
+    static int add(int accumulator, int operand, int carry) {
+        return ADD[carry << 16 | accumulator << 8 | operand];
+    }
+
+    /**
+     * Looks up a decimal mode subtract
+     *
+     * @param accumulator The unsigned accumulator value
+     * @param operand     The unsigned operand value
+     * @param carry       1 if the carry flag is set, otherwise 0
+     * @return The result in the low byte and the flags in the high byte
+     */
+    static int subtract(int accumulator, int operand, int carry) {
+        return SUBTRACT[carry << 16 | accumulator << 8 | operand];
+    }
+
+    /**
+     * Decimal add as the NMOS 6502 performs it. The carry comes from the decimal result, Z from the binary sum,
+     * and N and V from the intermediate value before the high nibble is adjusted.
+     */
+    private static int computeAdd(int accumulator, int operand, int carry) {
+        int low = (accumulator & 0x0F) + (operand & 0x0F) + carry;
+        if (low >= 0x0A) {
+            low = ((low + 0x06) & 0x0F) + 0x10;
+        }
+
+        int intermediate = (accumulator & 0xF0) + (operand & 0xF0) + low;
+        int signedIntermediate = (byte) (accumulator & 0xF0) + (byte) (operand & 0xF0) + low;
+
+        int result = intermediate >= 0xA0 ? intermediate + 0x60 : intermediate;
+
+        int flags = 0;
+        flags |= (intermediate & 0x80) != 0 ? 0b10000000 : 0;
+        flags |= signedIntermediate < -128 || signedIntermediate > 127 ? 0b01000000 : 0;
+        flags |= ((accumulator + operand + carry) & 0xFF) == 0 ? 0b00000010 : 0;
+        flags |= result >= 0x100 ? 0b00000001 : 0;
+        return flags << 8 | (result & 0xFF);
+    }
+
+    /**
+     * Decimal subtract as the NMOS 6502 performs it. Every flag is the same as the binary subtract, only the result is adjusted.
+     */
+    private static int computeSubtract(int accumulator, int operand, int carry) {
+        int low = (accumulator & 0x0F) - (operand & 0x0F) + carry - 1;
+        if (low < 0) {
+            low = ((low - 0x06) & 0x0F) - 0x10;
+        }
+
+        int result = (accumulator & 0xF0) - (operand & 0xF0) + low;
+        if (result < 0) {
+            result -= 0x60;
+        }
+
+        int binary = ArithmeticOperations.binaryAdd(accumulator, operand ^ 0xFF, carry);
+        return (binary & 0xFF00) | (result & 0xFF);
+    }
+}
@@ -24,9 +24,6 @@
 
 package com.oroarmor.cpuemulator.cpu6502.instructions;
 
-import java.util.function.Consumer;
-import java.util.function.Supplier;
-
 import com.oroarmor.cpuemulator.cpu6502.Bus;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
@@ -40,55 +37,49 @@ public class IncrementOperations {
      * @param value          The value to add to the register
      * @see CPU6502Instructions.CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
      */
-    public static boolean incrementRegister(CPU6502 cpu, Supplier<Integer> register, Consumer<Byte> registerSetter, byte value) {
-        byte newValue = (byte) ((byte) (int) register.get() + value);
-        registerSetter.accept(newValue);
-
-        cpu.incrementProgramCounter();
-
-        byte flags = (byte) (((newValue < 0 ? 0b10000000 : 0) + (newValue == 0 ? 0b00000010 : 0)) | cpu.getFlags().toByte());
-        cpu.getFlags().fromByte(flags);
+    public static boolean incrementRegister(CPU6502 cpu, RegisterAccess.Getter register, RegisterAccess.Setter registerSetter, byte value) {
+        byte newValue = (byte) (register.get(cpu) + value);
+        registerSetter.set(cpu, newValue);
+        cpu.getFlags().setNegativeAndZero(newValue);
         return true;
     }
 
     /**
      * Increments the X register
      *
-     * @see #incrementRegister(CPU6502, Supplier, Consumer, byte)
+     * @see #incrementRegister(CPU6502, RegisterAccess.Getter, RegisterAccess.Setter, byte)
      */
     public static boolean incrementXRegister(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return incrementRegister(cpu, cpu::getXRegister, cpu::setXRegister, (byte) 1);
+        return incrementRegister(cpu, CPU6502::getXRegister, CPU6502::setXRegister, (byte) 1);
     }
 
     /**
      * Decrements the X register
      *
-     * @see #incrementRegister(CPU6502, Supplier, Consumer, byte)
+     * @see #incrementRegister(CPU6502, RegisterAccess.Getter, RegisterAccess.Setter, byte)
      */
     public static boolean decrementXRegister(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return incrementRegister(cpu, cpu::getXRegister, cpu::setXRegister, (byte) -1);
+        return incrementRegister(cpu, CPU6502::getXRegister, CPU6502::setXRegister, (byte) -1);
     }
 
     /**
      * Increments the Y register
      *
-     * @see #incrementRegister(CPU6502, Supplier, Consumer, byte)
+     * @see #incrementRegister(CPU6502, RegisterAccess.Getter, RegisterAccess.Setter, byte)
      */
     public static boolean incrementYRegister(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return incrementRegister(cpu, cpu::getYRegister, cpu::setYRegister, (byte) 1);
+        return incrementRegister(cpu, CPU6502::getYRegister, CPU6502::setYRegister, (byte) 1);
     }
 
     /**
      * Decrements the Y register
      *
-     * @see #incrementRegister(CPU6502, Supplier, Consumer, byte)
+     * @see #incrementRegister(CPU6502, RegisterAccess.Getter, RegisterAccess.Setter, byte)
      */
     public static boolean decrementYRegister(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return incrementRegister(cpu, cpu::getYRegister, cpu::setYRegister, (byte) -1);
+        return incrementRegister(cpu, CPU6502::getYRegister, CPU6502::setYRegister, (byte) -1);
     }
 
-    private static byte memoryValue;
-
     /**
      * Increments the memory location specified by the addressing mode
      *
@@ -117,21 +108,18 @@ public class IncrementOperations {
      */
     private static boolean updateMemory(int currentOpCycle, CPU6502 cpu, Bus bus, int direction) {
         if (currentOpCycle == 0) {
-            memoryValue = bus.readByte(cpu.getCurrentAddressPointer());
+            cpu.setCurrentValue(bus.readByte(cpu.getCurrentAddressPointer()));
             return false;
         }
 
         if (currentOpCycle == 1) {
-            memoryValue += direction;
+            cpu.setCurrentValue((byte) (cpu.getCurrentValue() + direction));
             return false;
         }
 
+        byte memoryValue = cpu.getCurrentValue();
         bus.writeByte(cpu.getCurrentAddressPointer(), memoryValue);
-
-        cpu.incrementProgramCounter();
-
-        byte flags = (byte) (((memoryValue < 0 ? 0b10000000 : 0) + (memoryValue == 0 ? 0b00000010 : 0)) | cpu.getFlags().toByte());
-        cpu.getFlags().fromByte(flags);
+        cpu.getFlags().setNegativeAndZero(memoryValue);
         return true;
     }
 }
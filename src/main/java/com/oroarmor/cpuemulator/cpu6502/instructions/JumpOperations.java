@@ -41,7 +41,8 @@ public final class JumpOperations {
     }
 
     /**
-     * Sets the stack pointer to the address specified by the {@link AddressingMode} and pushes the current program counter minus one onto the stack
+     * Sets the stack pointer to the address specified by the {@link AddressingMode} and pushes the current program counter minus one onto the stack.
+     * Every {@link CPU6502.SubroutineListener} is told about the call
      *
      * @see CPU6502Instructions.CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
      */
@@ -61,39 +62,38 @@ public final class JumpOperations {
 
         cpu.setProgramCounter(cpu.getCurrentAddressPointer());
 
+        cpu.notifySubroutineCall(cpu.getProgramCounter());
         return true;
     }
 
     /**
-     * Sets the program counter to the value on the stack, then adds one
+     * Sets the program counter to the value on the stack, then adds one. Every {@link CPU6502.SubroutineListener} is told about the return
      *
      * @see CPU6502Instructions.CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
      */
     public static boolean returnSubRoutine(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        if(currentOpCycle == 0) {
-            return false;
-        }
-
-        if (currentOpCycle == 1) {
+        if (currentOpCycle == 0) {
             cpu.incrementStackPointer();
             return false;
         }
-        if (currentOpCycle == 2) {
+        if (currentOpCycle == 1) {
             byte lo = bus.readByte(0x0100 + cpu.getStackPointer());
             cpu.setProgramCounter(Byte.toUnsignedInt(lo));
             return false;
         }
-        if (currentOpCycle == 3) {
+        if (currentOpCycle == 2) {
             cpu.incrementStackPointer();
             return false;
         }
-        if (currentOpCycle == 4) {
+        if (currentOpCycle == 3) {
             byte high = bus.readByte(0x0100 + cpu.getStackPointer());
             cpu.setProgramCounter(Byte.toUnsignedInt(high) << 8 | cpu.getProgramCounter());
             return false;
         }
 
         cpu.incrementProgramCounter();
+
+        cpu.notifySubroutineReturn();
         return true;
     }
 }
@@ -24,8 +24,6 @@
 
 package com.oroarmor.cpuemulator.cpu6502.instructions;
 
-import java.util.function.Consumer;
-
 import com.oroarmor.cpuemulator.cpu6502.Bus;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
@@ -34,44 +32,41 @@ public final class LoadOperations {
     /**
      * Loads the value at the address specified by the {@link CPU6502Instructions#getAddressingMode} into {@link CPU6502#getAccumulator}
      *
-     * @see LoadOperations#loadValue(int, CPU6502, Bus, CPU6502Instructions, Consumer)
+     * @see LoadOperations#loadValue(int, CPU6502, Bus, CPU6502Instructions, RegisterAccess.Setter)
      */
     public static boolean loadAccumulator(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return loadValue(currentOpCycle, cpu, bus, instruction, cpu::setAccumulator);
+        return loadValue(currentOpCycle, cpu, bus, instruction, CPU6502::setAccumulator);
     }
 
     /**
      * Loads the value at the address specified by the {@link CPU6502Instructions#getAddressingMode} into {@link CPU6502#getXRegister()}
      *
-     * @see LoadOperations#loadValue(int, CPU6502, Bus, CPU6502Instructions, Consumer)
+     * @see LoadOperations#loadValue(int, CPU6502, Bus, CPU6502Instructions, RegisterAccess.Setter)
      */
     public static boolean loadX(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return loadValue(currentOpCycle, cpu, bus, instruction, cpu::setXRegister);
+        return loadValue(currentOpCycle, cpu, bus, instruction, CPU6502::setXRegister);
     }
 
     /**
      * Loads the value at the address specified by the {@link CPU6502Instructions#getAddressingMode} into {@link CPU6502#getYRegister()}
      *
-     * @see LoadOperations#loadValue(int, CPU6502, Bus, CPU6502Instructions, Consumer)
+     * @see LoadOperations#loadValue(int, CPU6502, Bus, CPU6502Instructions, RegisterAccess.Setter)
      */
     public static boolean loadY(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return loadValue(currentOpCycle, cpu, bus, instruction, cpu::setYRegister);
+        return loadValue(currentOpCycle, cpu, bus, instruction, CPU6502::setYRegister);
     }
 
     /**
      * Loads the value at the address specified by the {@link CPU6502Instructions#getAddressingMode} into the consumer for the register set
      *
-     * @param registerSetter The consumer for setting the cpu register
+     * @param registerSetter The setter for the cpu register
      * @see CPU6502Instructions.CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
      */
-    public static boolean loadValue(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction, Consumer<Byte> registerSetter) {
+    public static boolean loadValue(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction, RegisterAccess.Setter registerSetter) {
         int index = cpu.getCurrentAddressPointer();
         byte newValue = bus.readByte(index);
-        registerSetter.accept(newValue);
-        cpu.incrementProgramCounter();
-
-        byte flags = (byte) (((newValue < 0 ? 0b10000000 : 0) + (newValue == 0 ? 0b00000010 : 0)) | cpu.getFlags().toByte());
-        cpu.getFlags().fromByte(flags);
+        registerSetter.set(cpu, newValue);
+        cpu.getFlags().setNegativeAndZero(newValue);
         return true;
     }
 }
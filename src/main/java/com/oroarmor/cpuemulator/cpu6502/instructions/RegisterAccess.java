@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.instructions;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+
+/**
+ * Functional interfaces for reading and writing a register of a {@link CPU6502} without boxing.<br>
+ * They are implemented with unbound method references such as <code>CPU6502::getAccumulator</code>, which do not capture the cpu
+ * and are only created once, so running an instruction never allocates
+ */
+public final class RegisterAccess {
+    private RegisterAccess() {
+    }
+
+    /**
+     * Reads a register
+     */
+    @FunctionalInterface
+    public interface Getter {
+        /**
+         * @param cpu The cpu
+         * @return The value of the register
+         */
+        int get(CPU6502 cpu);
+    }
+
+    /**
+     * Writes a register
+     */
+    @FunctionalInterface
+    public interface Setter {
+        /**
+         * @param cpu   The cpu
+         * @param value The new value of the register
+         */
+        void set(CPU6502 cpu, byte value);
+    }
+}
@@ -24,8 +24,6 @@
 
 package com.oroarmor.cpuemulator.cpu6502.instructions;
 
-import java.util.function.Supplier;
-
 import com.oroarmor.cpuemulator.cpu6502.Bus;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
@@ -34,41 +32,40 @@ public final class StoreOperations {
     /**
      * Stores the value in the {@link CPU6502#getAccumulator} at the address specified by the {@link CPU6502Instructions#getAddressingMode}
      *
-     * @see StoreOperations#storeValue(int, CPU6502, Bus, CPU6502Instructions, Supplier)
+     * @see StoreOperations#storeValue(int, CPU6502, Bus, CPU6502Instructions, RegisterAccess.Getter)
      */
     public static boolean storeAccumulator(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return storeValue(currentOpCycle, cpu, bus, instruction, cpu::getAccumulator);
+        return storeValue(currentOpCycle, cpu, bus, instruction, CPU6502::getAccumulator);
     }
 
     /**
      * Stores the value in the {@link CPU6502#getXRegister} at the address specified by the {@link CPU6502Instructions#getAddressingMode}
      *
-     * @see StoreOperations#storeValue(int, CPU6502, Bus, CPU6502Instructions, Supplier)
+     * @see StoreOperations#storeValue(int, CPU6502, Bus, CPU6502Instructions, RegisterAccess.Getter)
      */
     public static boolean storeX(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return storeValue(currentOpCycle, cpu, bus, instruction, cpu::getXRegister);
+        return storeValue(currentOpCycle, cpu, bus, instruction, CPU6502::getXRegister);
     }
 
     /**
      * Stores the value in the {@link CPU6502#getYRegister} at the address specified by the {@link CPU6502Instructions#getAddressingMode}
      *
-     * @see StoreOperations#storeValue(int, CPU6502, Bus, CPU6502Instructions, Supplier)
+     * @see StoreOperations#storeValue(int, CPU6502, Bus, CPU6502Instructions, RegisterAccess.Getter)
      */
     public static boolean storeY(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction) {
-        return storeValue(currentOpCycle, cpu, bus, instruction, cpu::getYRegister);
+        return storeValue(currentOpCycle, cpu, bus, instruction, CPU6502::getYRegister);
     }
 
     /**
      * Stores the value from the supplier into the address specified by the {@link CPU6502Instructions#getAddressingMode}
      *
-     * @param registerGetter The consumer for setting the cpu register
+     * @param registerGetter The getter for the cpu register
      * @see CPU6502Instructions.CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
      */
-    public static boolean storeValue(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction, Supplier<Integer> registerGetter) {
+    public static boolean storeValue(int currentOpCycle, CPU6502 cpu, Bus bus, CPU6502Instructions instruction, RegisterAccess.Getter registerGetter) {
         int index = cpu.getCurrentAddressPointer();
-        byte newValue = registerGetter.get().byteValue();
+        byte newValue = (byte) registerGetter.get(cpu);
         bus.writeByte(index, newValue);
-        cpu.incrementProgramCounter();
         return true;
     }
 }
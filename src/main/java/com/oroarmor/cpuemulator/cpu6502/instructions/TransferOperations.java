@@ -24,9 +24,6 @@
 
 package com.oroarmor.cpuemulator.cpu6502.instructions;
 
-import java.util.function.Consumer;
-import java.util.function.Supplier;
-
 import com.oroarmor.cpuemulator.cpu6502.Bus;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502;
 import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
@@ -41,13 +38,10 @@ public final class TransferOperations {
      * @return true
      * @see CPU6502InstructionProcessor#runInstruction(int, CPU6502, Bus, CPU6502Instructions)
      */
-    public static boolean transfer(CPU6502 cpu, Supplier<Integer> suppliedRegister, Consumer<Byte> consumingRegister) {
-        byte newValue = (byte) (int) suppliedRegister.get();
-        consumingRegister.accept(newValue);
-        cpu.incrementProgramCounter();
-
-        byte flags = (byte) ((newValue < 0 ? 0b10000000 : 0) | (newValue == 0 ? 0b00000010 : 0) | cpu.getFlags().toByte());
-        cpu.getFlags().fromByte(flags);
+    public static boolean transfer(CPU6502 cpu, RegisterAccess.Getter suppliedRegister, RegisterAccess.Setter consumingRegister) {
+        byte newValue = (byte) suppliedRegister.get(cpu);
+        consumingRegister.set(cpu, newValue);
+        cpu.getFlags().setNegativeAndZero(newValue);
         return true;
     }
 
@@ -55,27 +49,27 @@ public final class TransferOperations {
      * Transfers the A register to the X register
      */
     public static boolean transferAX(int i, CPU6502 cpu, Bus bus, CPU6502Instructions instructions) {
-        return transfer(cpu, cpu::getAccumulator, cpu::setXRegister);
+        return transfer(cpu, CPU6502::getAccumulator, CPU6502::setXRegister);
     }
 
     /**
      * Transfers the A register to the Y register
      */
     public static boolean transferAY(int i, CPU6502 cpu, Bus bus, CPU6502Instructions instructions) {
-        return transfer(cpu, cpu::getAccumulator, cpu::setYRegister);
+        return transfer(cpu, CPU6502::getAccumulator, CPU6502::setYRegister);
     }
 
     /**
      * Transfers the X register to the A register
      */
     public static boolean transferXA(int i, CPU6502 cpu, Bus bus, CPU6502Instructions instructions) {
-        return transfer(cpu, cpu::getXRegister, cpu::setAccumulator);
+        return transfer(cpu, CPU6502::getXRegister, CPU6502::setAccumulator);
     }
 
     /**
      * Transfers the Y register to the A register
      */
     public static boolean transferYA(int i, CPU6502 cpu, Bus bus, CPU6502Instructions instructions) {
-        return transfer(cpu, cpu::getYRegister, cpu::setAccumulator);
+        return transfer(cpu, CPU6502::getYRegister, CPU6502::setAccumulator);
     }
 }
@@ -0,0 +1,149 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.monitoring;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The counters of one machine.<br>
+ * The emulation thread adds every batch to the volatile totals that the monitoring threads read, so the totals are never
+ * behind the last batch even when the machine stops. The rates are worked out from plain fields and published once every interval.
+ * A machine that stops running stops publishing, so once a full interval passes without a publish the rates read as 0 and
+ * the time since the last publish counts as paused.
+ */
+public class MachineMetrics implements MachineMetricsMXBean {
+    /**
+     * The default host time between publishes, 1 second
+     */
+    public static final long DEFAULT_PUBLISH_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final long publishIntervalNanos;
+
+    private long pendingCycles;
+    private long pendingInstructions;
+    private long pendingRunNanos;
+    private long lastPublishNanos;
+
+    private volatile long publishedNanos;
+    private volatile long cyclesRun;
+    private volatile long instructionsRun;
+    private volatile long pausedNanos;
+    private volatile double cyclesPerSecond;
+    private volatile double instructionsPerSecond;
+
+    /**
+     * Creates new metrics that publish every {@link #DEFAULT_PUBLISH_INTERVAL_NANOS}
+     */
+    public MachineMetrics() {
+        this(DEFAULT_PUBLISH_INTERVAL_NANOS);
+    }
+
+    /**
+     * Creates new metrics
+     *
+     * @param publishIntervalNanos The host nanoseconds between publishes
+     */
+    public MachineMetrics(long publishIntervalNanos) {
+        if (publishIntervalNanos <= 0) {
+            throw new IllegalArgumentException(String.format("Publish interval must be positive, %d was given", publishIntervalNanos));
+        }
+        this.publishIntervalNanos = publishIntervalNanos;
+        this.lastPublishNanos = System.nanoTime();
+        this.publishedNanos = lastPublishNanos;
+    }
+
+    /**
+     * Adds a batch, and publishes the counters if the publish interval has passed. Only called from the emulation thread
+     *
+     * @param cycles       The cycles run
+     * @param instructions The instructions started
+     * @param startNanos   The {@link System#nanoTime()} the batch started at
+     * @param endNanos     The {@link System#nanoTime()} the batch ended at
+     */
+    public void record(long cycles, long instructions, long startNanos, long endNanos) {
+        // Only the emulation thread writes the totals, so these do not need to be atomic
+        cyclesRun += cycles;
+        instructionsRun += instructions;
+        pendingCycles += cycles;
+        pendingInstructions += instructions;
+        pendingRunNanos += endNanos - startNanos;
+        if (endNanos - lastPublishNanos >= publishIntervalNanos) {
+            publish(endNanos);
+        }
+    }
+
+    private void publish(long now) {
+        long window = now - lastPublishNanos;
+        pausedNanos += Math.max(0, window - pendingRunNanos);
+        cyclesPerSecond = pendingCycles * 1e9 / window;
+        instructionsPerSecond = pendingInstructions * 1e9 / window;
+        publishedNanos = now;
+
+        pendingCycles = 0;
+        pendingInstructions = 0;
+        pendingRunNanos = 0;
+        lastPublishNanos = now;
+    }
+
+    private boolean isStale(long now) {
+        return now - publishedNanos > 2 * publishIntervalNanos;
+    }
+
+    @Override
+    public double getEmulatedMegahertz() {
+        return isStale(System.nanoTime()) ? 0 : cyclesPerSecond / 1e6;
+    }
+
+    @Override
+    public double getInstructionsPerSecond() {
+        return isStale(System.nanoTime()) ? 0 : instructionsPerSecond;
+    }
+
+    @Override
+    public long getCyclesRun() {
+        return cyclesRun;
+    }
+
+    @Override
+    public long getInstructionsRun() {
+        return instructionsRun;
+    }
+
+    @Override
+    public long getTimePausedMillis() {
+        long now = System.nanoTime();
+        long paused = pausedNanos;
+        long published = publishedNanos;
+        if (now - published > 2 * publishIntervalNanos) {
+            paused += now - published;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(paused);
+    }
+
+    @Override
+    public long getPublishIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(publishIntervalNanos);
+    }
+}
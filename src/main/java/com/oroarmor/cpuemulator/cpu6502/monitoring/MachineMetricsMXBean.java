@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.monitoring;
+
+/**
+ * The throughput of a running {@link com.oroarmor.cpuemulator.cpu6502.Machine}, as seen over JMX.
+ * The totals count every batch the machine has run, and the rates and paused time are as of the last time the machine published them.
+ */
+public interface MachineMetricsMXBean {
+    /**
+     * @return The cycles run per second of host time, in millions, over the last publish interval
+     */
+    double getEmulatedMegahertz();
+
+    /**
+     * @return The instructions started per second of host time over the last publish interval
+     */
+    double getInstructionsPerSecond();
+
+    /**
+     * @return The cycles run since the metrics were created
+     */
+    long getCyclesRun();
+
+    /**
+     * @return The instructions started since the metrics were created
+     */
+    long getInstructionsRun();
+
+    /**
+     * @return The host milliseconds the machine spent outside of {@link com.oroarmor.cpuemulator.cpu6502.Machine#run(long)} since the metrics were created
+     */
+    long getTimePausedMillis();
+
+    /**
+     * @return The host milliseconds between two publishes
+     */
+    long getPublishIntervalMillis();
+}
@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+
+/**
+ * Registers the {@link MachineMetrics} of running machines with an {@link MBeanServer}, as
+ * <code>com.oroarmor.cpuemulator:type=Machine,name=&lt;name&gt;</code>
+ */
+public class MachineRegistry {
+    /**
+     * The domain of every registered machine
+     */
+    public static final String DOMAIN = "com.oroarmor.cpuemulator";
+
+    private final MBeanServer server;
+    private final Map<String, Registration> machines = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a registry for the platform {@link MBeanServer}
+     */
+    public MachineRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Creates a registry
+     *
+     * @param server The server to register with
+     */
+    public MachineRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Registers a machine with metrics that publish every {@link MachineMetrics#DEFAULT_PUBLISH_INTERVAL_NANOS}
+     *
+     * @param name    The name of the machine
+     * @param machine The machine
+     * @return The metrics of the machine
+     */
+    public MachineMetrics register(String name, Machine machine) {
+        return register(name, machine, MachineMetrics.DEFAULT_PUBLISH_INTERVAL_NANOS);
+    }
+
+    /**
+     * Registers a machine. The machine records every {@link Machine#run(long)} into the metrics until it is unregistered
+     *
+     * @param name                 The name of the machine
+     * @param machine              The machine
+     * @param publishIntervalNanos The host nanoseconds between publishes
+     * @return The metrics of the machine
+     */
+    public MachineMetrics register(String name, Machine machine, long publishIntervalNanos) {
+        MachineMetrics metrics = new MachineMetrics(publishIntervalNanos);
+        ObjectName objectName = getObjectName(name);
+        try {
+            server.registerMBean(metrics, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException(String.format("A machine named %s is already registered", name), e);
+        } catch (JMException e) {
+            throw new IllegalStateException(String.format("Could not register %s", objectName), e);
+        }
+        machines.put(name, new Registration(machine, metrics));
+        machine.setMetrics(metrics);
+        return metrics;
+    }
+
+    /**
+     * Unregisters a machine and stops it recording metrics
+     *
+     * @param name The name of the machine
+     * @return True if a machine with the name was registered
+     */
+    public boolean unregister(String name) {
+        Registration registration = machines.remove(name);
+        if (registration == null) {
+            return false;
+        }
+        if (registration.machine.getMetrics() == registration.metrics) {
+            registration.machine.setMetrics(null);
+        }
+        try {
+            server.unregisterMBean(getObjectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException(String.format("Could not unregister %s", name), e);
+        }
+        return true;
+    }
+
+    /**
+     * @param name The name of the machine
+     * @return The metrics of the machine, or null if no machine with the name is registered
+     */
+    public MachineMetrics getMetrics(String name) {
+        Registration registration = machines.get(name);
+        return registration == null ? null : registration.metrics;
+    }
+
+    /**
+     * @param name The name of a machine
+     * @return The name the machine is registered with in the server
+     */
+    public static ObjectName getObjectName(String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=Machine,name=" + ObjectName.quote(name));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(String.format("%s is not a valid machine name", name), e);
+        }
+    }
+
+    private static final class Registration {
+        private final Machine machine;
+        private final MachineMetrics metrics;
+
+        private Registration(Machine machine, MachineMetrics metrics) {
+            this.machine = machine;
+            this.metrics = metrics;
+        }
+    }
+}
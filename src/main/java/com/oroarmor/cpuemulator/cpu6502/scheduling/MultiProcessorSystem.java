@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import java.util.Arrays;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.devices.SharedBusDevice;
+
+/**
+ * Runs two or more {@link CPU6502}s against their own buses with a deterministic interleaving.<br>
+ * Memory shared between the processors is attached to each private bus, for example with a {@link SharedBusDevice}.
+ * The processors are run one after another in the order they were added, each for one quantum of cycles, on the calling thread.
+ * With a quantum of one cycle the processors run in lockstep, and every access to shared memory in a cycle is ordered by processor.
+ * Larger quanta let each processor run its batched {@link CPU6502#run(Bus, long)} between the points where they synchronize,
+ * while keeping the same order from run to run. Every quantum goes through {@link Machine#run(long)}, so metrics and events
+ * are recorded for lockstep processors as well.<br>
+ * A processor that stops at a {@link CPU6502#isAtBreakpoint() breakpoint} ends the run once the others have reached the end of the
+ * quantum. After it is resumed the next run brings it back level with the others before they run on.
+ */
+public class MultiProcessorSystem {
+    private Machine[] processors = new Machine[0];
+    private long[] processorCycles = new long[0];
+    private final long quantumCycles;
+    private long cycles;
+
+    /**
+     * Creates a system that runs its processors in lockstep, one cycle at a time
+     */
+    public MultiProcessorSystem() {
+        this(1);
+    }
+
+    /**
+     * Creates a new system
+     *
+     * @param quantumCycles The cycles each processor runs before the next processor runs
+     */
+    public MultiProcessorSystem(long quantumCycles) {
+        if (quantumCycles <= 0) {
+            throw new IllegalArgumentException(String.format("Quantum must be positive, %d was given", quantumCycles));
+        }
+        this.quantumCycles = quantumCycles;
+    }
+
+    /**
+     * Adds a processor. Processors are run in the order they are added, and one added after the system has run starts level with the others
+     *
+     * @param cpu The cpu
+     * @param bus The private bus of the cpu
+     * @return The machine for the processor
+     */
+    public Machine addProcessor(CPU6502 cpu, Bus bus) {
+        Machine machine = new Machine(cpu, bus);
+        processors = Arrays.copyOf(processors, processors.length + 1);
+        processors[processors.length - 1] = machine;
+        processorCycles = Arrays.copyOf(processorCycles, processors.length);
+        processorCycles[processors.length - 1] = cycles;
+        return machine;
+    }
+
+    /**
+     * Runs every processor for the same number of cycles, stopping early when a processor stops at a breakpoint
+     *
+     * @param cycles The cycles to run
+     * @return The cycles every processor ran, fewer than asked for if a processor stopped
+     */
+    public long run(long cycles) {
+        Machine[] processors = this.processors;
+        long[] processorCycles = this.processorCycles;
+        long start = this.cycles;
+        long end = start + cycles;
+        while (this.cycles < end) {
+            long target = Math.min(this.cycles + quantumCycles, end);
+            long reached = target;
+            for (int i = 0; i < processors.length; i++) {
+                Machine processor = processors[i];
+                long behind = target - processorCycles[i];
+                if (behind > 0) {
+                    processorCycles[i] += processor.run(behind);
+                }
+                reached = Math.min(reached, processorCycles[i]);
+            }
+            this.cycles = reached;
+            if (reached < target) {
+                break;
+            }
+        }
+        return this.cycles - start;
+    }
+
+    /**
+     * @return The processors in the order they are run
+     */
+    public Machine[] getProcessors() {
+        return processors.clone();
+    }
+
+    public long getQuantumCycles() {
+        return quantumCycles;
+    }
+
+    /**
+     * @return The cycles every processor has run
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return How far each processor has run on the clock of the system, in the order they are run
+     */
+    public long[] getProcessorCycles() {
+        return processorCycles.clone();
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+
+/**
+ * Runs a {@link Machine} at a fixed clock rate instead of as fast as possible.<br>
+ * The machine is run in batches of cycles, and after each batch the governor compares the cycles run against
+ * {@link System#nanoTime()}. If the machine is ahead it parks the thread until shortly before the deadline and spins the rest
+ * of the way, which keeps the jitter well under a millisecond while only using a fraction of a core.<br>
+ * The governor stops when the cpu stops at a breakpoint, and can be run again once the cpu is resumed.
+ */
+public class RealTimeGovernor implements Runnable {
+    /**
+     * The default amount of emulated time for each batch, 1 millisecond
+     */
+    public static final long DEFAULT_SLICE_NANOS = 1_000_000L;
+
+    /**
+     * The default amount of time spun instead of parked before each deadline
+     */
+    public static final long DEFAULT_SPIN_NANOS = 100_000L;
+
+    /**
+     * The default lag after which the governor gives up catching up and restarts its schedule
+     */
+    public static final long DEFAULT_MAX_LAG_NANOS = 100_000_000L;
+
+    private final Machine machine;
+    private final long clockRate;
+
+    private long sliceNanos = DEFAULT_SLICE_NANOS;
+    private long spinNanos = DEFAULT_SPIN_NANOS;
+    private long maxLagNanos = DEFAULT_MAX_LAG_NANOS;
+
+    private volatile double speedMultiplier = 1;
+    private volatile boolean running;
+
+    private volatile long cyclesRun;
+    private volatile long lagNanos;
+    private volatile long maxObservedLagNanos;
+
+    private long anchorNanos;
+    private long anchorCycles;
+    private double anchorMultiplier;
+
+    /**
+     * Creates a new governor
+     *
+     * @param machine   The machine to run
+     * @param clockRate The clock rate to run the machine at, in hertz
+     */
+    public RealTimeGovernor(Machine machine, long clockRate) {
+        if (clockRate <= 0) {
+            throw new IllegalArgumentException(String.format("Clock rate must be positive, %d was given", clockRate));
+        }
+        this.machine = machine;
+        this.clockRate = clockRate;
+    }
+
+    /**
+     * Runs the machine on the current thread until {@link #stop()} is called or the cpu stops at a breakpoint
+     */
+    @Override
+    public void run() {
+        runUntil(Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs the machine on the current thread for a length of wall clock time, or until {@link #stop()} is called or the cpu stops at a breakpoint
+     *
+     * @param nanos The wall clock time to run for
+     */
+    public void runFor(long nanos) {
+        runUntil(System.nanoTime() + nanos);
+    }
+
+    private void runUntil(long endNanos) {
+        running = true;
+        reanchor(System.nanoTime());
+
+        while (running && System.nanoTime() - endNanos < 0) {
+            double multiplier = speedMultiplier;
+            if (multiplier != anchorMultiplier) {
+                reanchor(System.nanoTime());
+            }
+
+            long batch = Math.max(1, (long) (clockRate * multiplier * sliceNanos / 1e9));
+            long ran = machine.run(batch);
+            cyclesRun += ran;
+            if (ran < batch) {
+                break;
+            }
+
+            long deadline = anchorNanos + (long) ((cyclesRun - anchorCycles) * 1e9 / (clockRate * multiplier));
+            long behind = System.nanoTime() - deadline;
+            if (behind > 0) {
+                lagNanos = behind;
+                maxObservedLagNanos = Math.max(maxObservedLagNanos, behind);
+                if (behind > maxLagNanos) {
+                    reanchor(System.nanoTime());
+                }
+            } else {
+                lagNanos = 0;
+                waitUntil(Math.min(deadline, endNanos));
+            }
+        }
+
+        running = false;
+    }
+
+    private void reanchor(long now) {
+        anchorNanos = now;
+        anchorCycles = cyclesRun;
+        anchorMultiplier = speedMultiplier;
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (!running) {
+                return;
+            }
+        }
+        while (System.nanoTime() - deadline < 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Stops the governor after the current batch
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * @return True while the governor is running the machine
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Sets how much faster than the clock rate the machine is run. The schedule restarts from the current batch when this changes
+     *
+     * @param speedMultiplier The multiplier, 1 for the real clock rate
+     */
+    public void setSpeedMultiplier(double speedMultiplier) {
+        if (!(speedMultiplier > 0)) {
+            throw new IllegalArgumentException(String.format("Speed multiplier must be positive, %f was given", speedMultiplier));
+        }
+        this.speedMultiplier = speedMultiplier;
+    }
+
+    public double getSpeedMultiplier() {
+        return speedMultiplier;
+    }
+
+    /**
+     * Sets the amount of emulated time for each batch. Smaller slices lower the latency of input and output at the cost of more wakeups
+     *
+     * @param sliceNanos The slice length in nanoseconds
+     */
+    public void setSliceNanos(long sliceNanos) {
+        this.sliceNanos = sliceNanos;
+    }
+
+    public long getSliceNanos() {
+        return sliceNanos;
+    }
+
+    /**
+     * Sets the amount of time before each deadline that is spun instead of parked
+     *
+     * @param spinNanos The spin length in nanoseconds
+     */
+    public void setSpinNanos(long spinNanos) {
+        this.spinNanos = spinNanos;
+    }
+
+    public long getSpinNanos() {
+        return spinNanos;
+    }
+
+    /**
+     * Sets the lag after which the governor stops trying to catch up and restarts its schedule from the current time
+     *
+     * @param maxLagNanos The lag in nanoseconds
+     */
+    public void setMaxLagNanos(long maxLagNanos) {
+        this.maxLagNanos = maxLagNanos;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    /**
+     * @return The clock rate of the machine in hertz
+     */
+    public long getClockRate() {
+        return clockRate;
+    }
+
+    /**
+     * @return The number of cycles the governor has run
+     */
+    public long getCyclesRun() {
+        return cyclesRun;
+    }
+
+    /**
+     * @return How far behind its schedule the machine was after the last batch, in nanoseconds
+     */
+    public long getLagNanos() {
+        return lagNanos;
+    }
+
+    /**
+     * @return The largest lag seen since the governor was created, in nanoseconds
+     */
+    public long getMaxObservedLagNanos() {
+        return maxObservedLagNanos;
+    }
+
+    public Machine getMachine() {
+        return machine;
+    }
+}
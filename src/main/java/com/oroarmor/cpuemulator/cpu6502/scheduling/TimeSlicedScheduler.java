@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+
+/**
+ * Time-slices many unthrottled {@link Machine}s across a fixed work-stealing pool.<br>
+ * Each session runs for a quantum of cycles scaled by its priority and then goes to the back of the queue, so every runnable
+ * session gets its share of the pool in turn. Sessions that are paused or blocked waiting on host input are left out of the
+ * queue entirely until they are resumed or woken, so they never hold a worker. A session whose cpu stops at a breakpoint is paused,
+ * and is run again once the cpu and the session are both resumed.<br>
+ * The run queue is shared by all workers. Each queued session submits one task to the pool, and that task runs whichever session
+ * is at the head of the queue, so the order stays first in first out no matter which worker's deque the task lands in or is stolen from.
+ */
+public class TimeSlicedScheduler {
+    /**
+     * The default cycles each session runs per slice at priority 1
+     */
+    public static final long DEFAULT_QUANTUM_CYCLES = 10_000;
+
+    /**
+     * The most cycles run between checks for a session being blocked or paused
+     */
+    private static final long CHUNK_CYCLES = 1024;
+
+    private final ForkJoinPool pool;
+    private final long quantumCycles;
+    private final ConcurrentLinkedQueue<Session> runQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a scheduler with one worker per available processor and the {@link #DEFAULT_QUANTUM_CYCLES}
+     */
+    public TimeSlicedScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUANTUM_CYCLES);
+    }
+
+    /**
+     * Creates a new scheduler
+     *
+     * @param parallelism   The number of worker threads
+     * @param quantumCycles The cycles each session runs per slice at priority 1
+     */
+    public TimeSlicedScheduler(int parallelism, long quantumCycles) {
+        if (quantumCycles <= 0) {
+            throw new IllegalArgumentException(String.format("Quantum must be positive, %d was given", quantumCycles));
+        }
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        this.quantumCycles = quantumCycles;
+    }
+
+    /**
+     * Adds a machine at priority 1 and starts running it
+     *
+     * @param machine The machine
+     * @return The session for the machine
+     */
+    public Session add(Machine machine) {
+        return add(machine, 1);
+    }
+
+    /**
+     * Adds a machine and starts running it
+     *
+     * @param machine  The machine
+     * @param priority The priority. Each slice runs <code>priority</code> quanta of cycles
+     * @return The session for the machine
+     */
+    public Session add(Machine machine, int priority) {
+        Session session = new Session(machine);
+        session.setPriority(priority);
+        session.schedule();
+        return session;
+    }
+
+    /**
+     * Stops the workers. Slices that are running are finished
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Waits for the workers to finish after {@link #shutdown()}
+     *
+     * @param timeout The longest time to wait
+     * @param unit    The unit of the timeout
+     * @return True if the workers finished
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Queues a session and submits a task to run it
+     *
+     * @param session The session
+     * @return False if the pool was shut down before the task was submitted, in which case the session is not queued
+     */
+    private boolean enqueue(Session session) {
+        runQueue.add(session);
+        try {
+            pool.execute(this::runNext);
+            return true;
+        } catch (RejectedExecutionException e) {
+            runQueue.remove(session);
+            return false;
+        }
+    }
+
+    private void runNext() {
+        Session session = runQueue.poll();
+        if (session != null) {
+            session.runSlice();
+        }
+    }
+
+    public long getQuantumCycles() {
+        return quantumCycles;
+    }
+
+    /**
+     * A machine being time-sliced by a {@link TimeSlicedScheduler}
+     */
+    public final class Session {
+        private final Machine machine;
+
+        private volatile int priority = 1;
+        private volatile boolean paused;
+        private volatile boolean blocked;
+        private volatile boolean removed;
+
+        private boolean queued;
+
+        private volatile long cyclesRun;
+        private volatile long slicesRun;
+
+        private Session(Machine machine) {
+            this.machine = machine;
+        }
+
+        private synchronized void schedule() {
+            if (!queued && !paused && !blocked && !removed && !pool.isShutdown()) {
+                queued = enqueue(this);
+            }
+        }
+
+        /**
+         * Runs one slice. The slice ends early and the session is paused when the cpu stops at a breakpoint, and a session whose
+         * machine throws is not queued again until it is resumed or woken
+         */
+        private void runSlice() {
+            try {
+                long remaining = quantumCycles * priority;
+                while (remaining > 0 && !blocked && !paused && !removed) {
+                    long chunk = Math.min(remaining, CHUNK_CYCLES);
+                    long cycles = machine.run(chunk);
+                    cyclesRun += cycles;
+                    remaining -= cycles;
+                    if (cycles < chunk) {
+                        break;
+                    }
+                }
+                slicesRun++;
+                if (machine.getCpu().isAtBreakpoint()) {
+                    paused = true;
+                }
+            } finally {
+                synchronized (this) {
+                    queued = false;
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * Stops giving the session slices. A slice that is running stops within a few cycles
+         */
+        public void pause() {
+            paused = true;
+        }
+
+        /**
+         * Starts giving a paused session slices again. A session paused at a breakpoint only runs once its cpu is resumed as well
+         */
+        public void resume() {
+            paused = false;
+            schedule();
+        }
+
+        /**
+         * Marks the session as waiting on host input. Meant to be called by a device while the machine is running,
+         * the slice ends within a few cycles and the session is not run again until {@link #wake()} is called
+         */
+        public void block() {
+            blocked = true;
+        }
+
+        /**
+         * Marks the input a blocked session is waiting on as available and queues it to run
+         */
+        public void wake() {
+            blocked = false;
+            schedule();
+        }
+
+        /**
+         * Removes the session from the scheduler for good
+         */
+        public void remove() {
+            removed = true;
+        }
+
+        /**
+         * Sets the priority. Each slice runs <code>priority</code> quanta of cycles
+         *
+         * @param priority The priority, at least 1
+         */
+        public void setPriority(int priority) {
+            if (priority < 1) {
+                throw new IllegalArgumentException(String.format("Priority must be at least 1, %d was given", priority));
+            }
+            this.priority = priority;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public boolean isPaused() {
+            return paused;
+        }
+
+        public boolean isBlocked() {
+            return blocked;
+        }
+
+        public boolean isRemoved() {
+            return removed;
+        }
+
+        public Machine getMachine() {
+            return machine;
+        }
+
+        /**
+         * @return The cycles run by the scheduler
+         */
+        public long getCyclesRun() {
+            return cyclesRun;
+        }
+
+        /**
+         * @return The slices run by the scheduler
+         */
+        public long getSlicesRun() {
+            return slicesRun;
+        }
+    }
+}
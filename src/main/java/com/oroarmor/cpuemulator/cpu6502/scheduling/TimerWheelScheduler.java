@@ -0,0 +1,476 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+
+/**
+ * Paces many {@link Machine}s to their clock rates on a small pool of worker threads.<br>
+ * Every machine is run one quantum of cycles at a time. When a quantum is due the machine is run for the cycles that
+ * quantum covers and then rescheduled one quantum later, so the machine stays in step with the wall clock without a thread of its own.
+ * Deadlines are kept in a hierarchical timer wheel with three levels of 256, 64 and 64 slots. All machines that come due in
+ * the same tick are handed to the workers together, and the timer thread only wakes for ticks that have something due.<br>
+ * A machine whose cpu stops at a {@link com.oroarmor.cpuemulator.cpu6502.CPU6502#isAtBreakpoint() breakpoint} is paused and
+ * not rescheduled until {@link ScheduledMachine#resume()} is called.
+ */
+public class TimerWheelScheduler {
+    /**
+     * The default length of one tick of the wheel, 1 millisecond
+     */
+    public static final long DEFAULT_TICK_NANOS = 1_000_000L;
+
+    private static final int LEVEL_0_BITS = 8;
+    private static final int LEVEL_N_BITS = 6;
+    private static final int LEVEL_0_SIZE = 1 << LEVEL_0_BITS;
+    private static final int LEVEL_N_SIZE = 1 << LEVEL_N_BITS;
+    private static final int LEVEL_1_SHIFT = LEVEL_0_BITS;
+    private static final int LEVEL_2_SHIFT = LEVEL_0_BITS + LEVEL_N_BITS;
+    private static final long WHEEL_SPAN = 1L << (LEVEL_0_BITS + 2 * LEVEL_N_BITS);
+
+    private final long tickNanos;
+    private final int workerCount;
+    private final LongSupplier clock;
+    private final ExecutorService workers;
+    private final Thread timerThread;
+
+    private final ScheduledMachine[] level0 = new ScheduledMachine[LEVEL_0_SIZE];
+    private final ScheduledMachine[] level1 = new ScheduledMachine[LEVEL_N_SIZE];
+    private final ScheduledMachine[] level2 = new ScheduledMachine[LEVEL_N_SIZE];
+    private ScheduledMachine overflow;
+
+    private final ConcurrentLinkedQueue<ScheduledMachine> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger scheduledCount = new AtomicInteger();
+
+    private final long epochNanos;
+    private long currentTick;
+    private volatile long nextWakeTick;
+    private volatile boolean running;
+
+    /**
+     * Creates a scheduler with one worker per available processor and the {@link #DEFAULT_TICK_NANOS}
+     */
+    public TimerWheelScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TICK_NANOS);
+    }
+
+    /**
+     * Creates a new scheduler
+     *
+     * @param workerCount The number of threads that run machines
+     * @param tickNanos   The resolution of the wheel. Deadlines are rounded up to a whole tick
+     */
+    public TimerWheelScheduler(int workerCount, long tickNanos) {
+        this(workerCount, tickNanos, System::nanoTime);
+    }
+
+    /**
+     * Creates a new scheduler that reads the time from a clock
+     *
+     * @param workerCount The number of threads that run machines
+     * @param tickNanos   The resolution of the wheel. Deadlines are rounded up to a whole tick
+     * @param clock       The current time in nanoseconds, for example <code>System::nanoTime</code>
+     */
+    public TimerWheelScheduler(int workerCount, long tickNanos, LongSupplier clock) {
+        if (workerCount <= 0 || tickNanos <= 0) {
+            throw new IllegalArgumentException(String.format("Worker count and tick length must be positive, %d and %d were given", workerCount, tickNanos));
+        }
+        this.workerCount = workerCount;
+        this.tickNanos = tickNanos;
+        this.clock = clock;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "timer-wheel-worker-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timerThread = new Thread(this::runTimer, "timer-wheel");
+        this.timerThread.setDaemon(true);
+        this.epochNanos = clock.getAsLong();
+    }
+
+    /**
+     * Starts the timer thread
+     */
+    public void start() {
+        running = true;
+        currentTick = elapsedTicks(clock.getAsLong());
+        timerThread.start();
+    }
+
+    /**
+     * Stops the timer thread and the workers. Machines that are running finish their current quantum
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(timerThread);
+        workers.shutdown();
+    }
+
+    /**
+     * Waits for the workers to finish after {@link #shutdown()}
+     *
+     * @param timeout The longest time to wait
+     * @param unit    The unit of the timeout
+     * @return True if the workers finished
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        timerThread.join(unit.toMillis(timeout));
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Schedules a machine to run at a clock rate. The first quantum is due one quantum from now
+     *
+     * @param machine      The machine
+     * @param clockRate    The clock rate in hertz
+     * @param quantumNanos The wall clock time each quantum covers
+     * @return The handle for the scheduled machine
+     */
+    public ScheduledMachine schedule(Machine machine, long clockRate, long quantumNanos) {
+        if (clockRate <= 0 || quantumNanos <= 0) {
+            throw new IllegalArgumentException(String.format("Clock rate and quantum must be positive, %d and %d were given", clockRate, quantumNanos));
+        }
+        ScheduledMachine scheduled = new ScheduledMachine(machine, clockRate, quantumNanos, clock.getAsLong() + quantumNanos);
+        scheduledCount.incrementAndGet();
+        submit(scheduled);
+        return scheduled;
+    }
+
+    /**
+     * @return The number of machines scheduled and not cancelled
+     */
+    public int getScheduledCount() {
+        return scheduledCount.get();
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return The tick a deadline falls in, rounded up so the slot is never processed before the deadline
+     */
+    private long deadlineTick(long nanos) {
+        return Math.floorDiv(nanos - epochNanos + tickNanos - 1, tickNanos);
+    }
+
+    /**
+     * @return The last tick that has fully passed at a time
+     */
+    private long elapsedTicks(long nanos) {
+        return Math.floorDiv(nanos - epochNanos, tickNanos);
+    }
+
+    private void submit(ScheduledMachine scheduled) {
+        pending.add(scheduled);
+        if (deadlineTick(scheduled.deadlineNanos) < nextWakeTick) {
+            LockSupport.unpark(timerThread);
+        }
+    }
+
+    private void runTimer() {
+        ScheduledMachine[] due = new ScheduledMachine[64];
+
+        while (running) {
+            ScheduledMachine added;
+            while ((added = pending.poll()) != null) {
+                insert(added);
+            }
+
+            long nowTick = elapsedTicks(clock.getAsLong());
+            int dueCount = 0;
+            while (currentTick < nowTick) {
+                currentTick++;
+                cascade();
+                int slot = (int) (currentTick & (LEVEL_0_SIZE - 1));
+                ScheduledMachine entry = level0[slot];
+                level0[slot] = null;
+                while (entry != null) {
+                    ScheduledMachine next = entry.next;
+                    entry.next = null;
+                    if (!entry.cancelled) {
+                        if (dueCount == due.length) {
+                            due = Arrays.copyOf(due, dueCount * 2);
+                        }
+                        due[dueCount++] = entry;
+                    }
+                    entry = next;
+                }
+            }
+            dispatch(due, dueCount);
+            Arrays.fill(due, 0, dueCount, null);
+
+            long wakeTick = findNextTick();
+            nextWakeTick = wakeTick;
+            if (pending.isEmpty()) {
+                long sleep = epochNanos + wakeTick * tickNanos - clock.getAsLong();
+                if (sleep > 0) {
+                    LockSupport.parkNanos(this, sleep);
+                }
+            }
+            nextWakeTick = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Splits the machines that came due into one batch per worker. Nothing is handed out once the scheduler is shut down
+     */
+    private void dispatch(ScheduledMachine[] due, int dueCount) {
+        if (dueCount == 0 || !running) {
+            return;
+        }
+        int batches = Math.min(workerCount, dueCount);
+        int perBatch = (dueCount + batches - 1) / batches;
+        for (int start = 0; start < dueCount; start += perBatch) {
+            ScheduledMachine[] batch = Arrays.copyOfRange(due, start, Math.min(dueCount, start + perBatch));
+            try {
+                workers.execute(() -> {
+                    for (ScheduledMachine scheduled : batch) {
+                        if (scheduled.runQuantum() && running) {
+                            submit(scheduled);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // shutdown() stopped the workers after the check above
+                return;
+            }
+        }
+    }
+
+    private void insert(ScheduledMachine scheduled) {
+        if (!scheduled.cancelled) {
+            place(scheduled, Math.max(deadlineTick(scheduled.deadlineNanos), currentTick + 1));
+        }
+    }
+
+    private void place(ScheduledMachine scheduled, long tick) {
+        long delta = tick - currentTick;
+        scheduled.tick = tick;
+        if (delta < LEVEL_0_SIZE) {
+            int slot = (int) (tick & (LEVEL_0_SIZE - 1));
+            scheduled.next = level0[slot];
+            level0[slot] = scheduled;
+        } else if (delta < (long) LEVEL_0_SIZE * LEVEL_N_SIZE) {
+            int slot = (int) ((tick >>> LEVEL_1_SHIFT) & (LEVEL_N_SIZE - 1));
+            scheduled.next = level1[slot];
+            level1[slot] = scheduled;
+        } else if (delta < WHEEL_SPAN) {
+            int slot = (int) ((tick >>> LEVEL_2_SHIFT) & (LEVEL_N_SIZE - 1));
+            scheduled.next = level2[slot];
+            level2[slot] = scheduled;
+        } else {
+            scheduled.next = overflow;
+            overflow = scheduled;
+        }
+    }
+
+    /**
+     * Moves the entries of the higher levels down when the current tick crosses into their slot
+     */
+    private void cascade() {
+        if ((currentTick & (LEVEL_0_SIZE - 1)) != 0) {
+            return;
+        }
+        if (((currentTick >>> LEVEL_1_SHIFT) & (LEVEL_N_SIZE - 1)) == 0) {
+            if (((currentTick >>> LEVEL_2_SHIFT) & (LEVEL_N_SIZE - 1)) == 0) {
+                ScheduledMachine entry = overflow;
+                overflow = null;
+                reinsert(entry);
+            }
+            int slot = (int) ((currentTick >>> LEVEL_2_SHIFT) & (LEVEL_N_SIZE - 1));
+            ScheduledMachine entry = level2[slot];
+            level2[slot] = null;
+            reinsert(entry);
+        }
+        int slot = (int) ((currentTick >>> LEVEL_1_SHIFT) & (LEVEL_N_SIZE - 1));
+        ScheduledMachine entry = level1[slot];
+        level1[slot] = null;
+        reinsert(entry);
+    }
+
+    /**
+     * Places cascaded entries back into the wheel. They are due at or after the current tick, which is expired right after cascading
+     */
+    private void reinsert(ScheduledMachine entry) {
+        while (entry != null) {
+            ScheduledMachine next = entry.next;
+            entry.next = null;
+            place(entry, entry.tick);
+            entry = next;
+        }
+    }
+
+    /**
+     * @return The next tick with an entry in the lowest level, or the next tick a higher level cascades
+     */
+    private long findNextTick() {
+        for (long tick = currentTick + 1; tick <= currentTick + LEVEL_0_SIZE; tick++) {
+            if ((tick & (LEVEL_0_SIZE - 1)) == 0) {
+                return tick;
+            }
+            if (level0[(int) (tick & (LEVEL_0_SIZE - 1))] != null) {
+                return tick;
+            }
+        }
+        return currentTick + LEVEL_0_SIZE;
+    }
+
+    /**
+     * A machine scheduled on a {@link TimerWheelScheduler}
+     */
+    public final class ScheduledMachine {
+        private final Machine machine;
+        private final long quantumNanos;
+        private final double cyclesPerQuantum;
+
+        private long deadlineNanos;
+        private double cycleCredit;
+        private long tick;
+        private ScheduledMachine next;
+
+        private volatile boolean cancelled;
+        private boolean paused;
+        private volatile long cyclesRun;
+        private volatile long quantaRun;
+        private volatile long missedDeadlines;
+        private volatile long maxLatenessNanos;
+
+        private ScheduledMachine(Machine machine, long clockRate, long quantumNanos, long deadlineNanos) {
+            this.machine = machine;
+            this.quantumNanos = quantumNanos;
+            this.cyclesPerQuantum = clockRate * (quantumNanos / 1e9);
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Runs one quantum. A machine whose cpu stops at a breakpoint is paused
+         *
+         * @return True if the machine should be rescheduled
+         */
+        private boolean runQuantum() {
+            if (cancelled) {
+                return false;
+            }
+            cycleCredit += cyclesPerQuantum;
+            long cycles = (long) cycleCredit;
+            cycleCredit -= cycles;
+            cyclesRun += machine.run(cycles);
+            quantaRun++;
+            if (machine.getCpu().isAtBreakpoint()) {
+                synchronized (this) {
+                    paused = true;
+                }
+                return false;
+            }
+
+            long finished = clock.getAsLong();
+            deadlineNanos += quantumNanos;
+            long lateness = finished - deadlineNanos;
+            if (lateness > 0) {
+                missedDeadlines++;
+                maxLatenessNanos = Math.max(maxLatenessNanos, lateness);
+            }
+            return !cancelled;
+        }
+
+        /**
+         * Schedules a machine paused at a breakpoint again, one quantum from now. A machine whose cpu is still stopped is paused
+         * again after its next quantum, so the cpu should be resumed first
+         */
+        public synchronized void resume() {
+            if (paused && !cancelled) {
+                paused = false;
+                deadlineNanos = clock.getAsLong() + quantumNanos;
+                submit(this);
+            }
+        }
+
+        /**
+         * @return True if the machine is paused at a breakpoint
+         */
+        public synchronized boolean isPaused() {
+            return paused;
+        }
+
+        /**
+         * Stops scheduling the machine. A quantum that is running is finished
+         */
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                scheduledCount.decrementAndGet();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public Machine getMachine() {
+            return machine;
+        }
+
+        /**
+         * @return The cycles run by the scheduler
+         */
+        public long getCyclesRun() {
+            return cyclesRun;
+        }
+
+        /**
+         * @return The quanta run by the scheduler
+         */
+        public long getQuantaRun() {
+            return quantaRun;
+        }
+
+        /**
+         * @return The number of quanta that finished after the following quantum was already due
+         */
+        public long getMissedDeadlines() {
+            return missedDeadlines;
+        }
+
+        /**
+         * @return The latest a quantum has finished past the following deadline, in nanoseconds
+         */
+        public long getMaxLatenessNanos() {
+            return maxLatenessNanos;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+import java.lang.management.ManagementFactory;
+
+import com.oroarmor.cpuemulator.cpu6502.debug.CycleProfiler;
+import com.oroarmor.cpuemulator.cpu6502.debug.SamplingProfiler;
+import com.oroarmor.cpuemulator.cpu6502.monitoring.MachineMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs every implemented instruction for millions of cycles and checks that the cpu, the bus and the instruction
+ * processors allocate nothing once they are warmed up
+ */
+public class AllocationTest {
+    /**
+     * The bytes the measurement itself may allocate
+     */
+    private static final long ALLOWED_BYTES = 1024;
+
+    /**
+     * The rounds measured before a steady state that still allocates fails
+     */
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final int ROM_START = 0x8000;
+    private static final int PORT_START = 0x7F00;
+    private static final int SUBROUTINE = 0xF000;
+    private static final int LOOP_POINTER = 0xF010;
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private CPU6502 cpu;
+    private Bus bus;
+    private byte[] rom;
+    private byte[] ram;
+
+    @BeforeEach
+    public void reset() {
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "The JVM measures allocations per thread");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        cpu = new CPU6502();
+        rom = new byte[0x10000 - ROM_START];
+        ram = new byte[ROM_START];
+        byte[] port = new byte[16];
+
+        bus = new Bus();
+        bus.attachDevice(new Bus.BusDevice() {
+            @Override
+            public byte readValue(int location) {
+                return port[location - PORT_START];
+            }
+
+            @Override
+            public void writeValue(int location, byte value) {
+                port[location - PORT_START] = value;
+            }
+
+            @Override
+            public boolean isValidAddress(int location) {
+                return location >= PORT_START && location < PORT_START + port.length;
+            }
+        });
+        bus.attachDevice(new Bus.TimedDevice() {
+            @Override
+            public long getNextEventCycle(int location, long cycle) {
+                return Long.MAX_VALUE;
+            }
+
+            @Override
+            public byte readValue(int location) {
+                return location < ROM_START ? ram[location] : rom[location - ROM_START];
+            }
+
+            @Override
+            public void writeValue(int location, byte value) {
+                if (location < ROM_START) {
+                    ram[location] = value;
+                }
+            }
+
+            @Override
+            public boolean isValidAddress(int location) {
+                return location >= 0 && location <= 0xFFFF;
+            }
+        });
+
+        writeRom(0xFFFC, CPU6502Instructions.JMP_ABS.getCode(), ROM_START & 0xFF, ROM_START >> 8);
+        writeRom(SUBROUTINE, CPU6502Instructions.RTS.getCode());
+        writeRom(LOOP_POINTER, ROM_START & 0xFF, ROM_START >> 8);
+        ram[0x40] = 0x00;
+        ram[0x41] = 0x03;
+    }
+
+    private void writeRom(int address, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            rom[address - ROM_START + i] = (byte) values[i];
+        }
+    }
+
+    /**
+     * Writes every implemented instruction in decimal and in binary mode, a subroutine call, and an indirect jump back to the start
+     */
+    private void writeEveryInstruction() {
+        int address = ROM_START;
+        writeRom(address++, CPU6502Instructions.SED.getCode());
+        for (int pass = 0; pass < 2; pass++) {
+            for (CPU6502Instructions instruction : CPU6502Instructions.values()) {
+                String name = instruction.name();
+                if (instruction.getInstructionProcessor() == null || name.startsWith("J") || name.equals("RTS")) {
+                    continue;
+                }
+                int suffix = name.indexOf('_');
+                String mode = suffix == -1 ? "" : name.substring(suffix + 1);
+                writeRom(address++, instruction.getCode());
+                if (mode.startsWith("ABS")) {
+                    writeRom(address, 0xF8, PORT_START - 0x100 >> 8);
+                    address += 2;
+                } else if (mode.startsWith("IN")) {
+                    writeRom(address++, 0x40);
+                } else if (!mode.isEmpty()) {
+                    writeRom(address++, 0x80);
+                }
+            }
+            writeRom(address++, CPU6502Instructions.CLD.getCode());
+        }
+        writeRom(address, CPU6502Instructions.JMP_ABS.getCode(), address + 3 & 0xFF, address + 3 >> 8);
+        address += 3;
+        writeRom(address, CPU6502Instructions.JSR.getCode(), SUBROUTINE & 0xFF, SUBROUTINE >> 8);
+        address += 3;
+        writeRom(address, CPU6502Instructions.JMP_IND.getCode(), LOOP_POINTER & 0xFF, LOOP_POINTER >> 8);
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Measures a few rounds after warming up, since the JIT may only remove an allocation once it compiles the caller
+     */
+    private void assertNoAllocation(Runnable steadyState, String testName) {
+        steadyState.run();
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS && allocated > ALLOWED_BYTES; round++) {
+            long before = allocatedBytes();
+            steadyState.run();
+            allocated = allocatedBytes() - before;
+        }
+        assertTrue(allocated <= ALLOWED_BYTES, testName + " does not allocate, " + allocated + " bytes were allocated");
+    }
+
+    @Test
+    public void tickTest() {
+        writeEveryInstruction();
+        assertNoAllocation(() -> {
+            for (int i = 0; i < 2_000_000; i++) {
+                cpu.tick(bus);
+            }
+        }, "CPU6502.tick");
+    }
+
+    @Test
+    public void runAndStepTest() {
+        writeEveryInstruction();
+        assertNoAllocation(() -> cpu.run(bus, 2_000_000), "CPU6502.run");
+        assertNoAllocation(() -> {
+            for (int i = 0; i < 500_000; i++) {
+                cpu.step(bus);
+            }
+        }, "CPU6502.step");
+    }
+
+    @Test
+    public void machineTest() {
+        writeEveryInstruction();
+        Machine machine = new Machine(cpu, bus);
+        assertNoAllocation(() -> {
+            for (int i = 0; i < 500_000; i++) {
+                machine.run(20);
+            }
+        }, "Machine.run without a flight recording");
+
+        machine.setMetrics(new MachineMetrics(1_000_000L));
+        assertNoAllocation(() -> {
+            for (int i = 0; i < 500_000; i++) {
+                machine.run(20);
+            }
+        }, "Machine.run publishing metrics");
+    }
+
+    @Test
+    public void samplingTest() {
+        writeEveryInstruction();
+        new SamplingProfiler(cpu, 3);
+        assertNoAllocation(() -> cpu.run(bus, 2_000_000), "Sampling the call stack");
+    }
+
+    @Test
+    public void cycleProfilerTest() {
+        writeEveryInstruction();
+        new CycleProfiler(cpu);
+        assertNoAllocation(() -> cpu.run(bus, 2_000_000), "Timing every subroutine call");
+    }
+
+    @Test
+    public void idleLoopTest() {
+        writeRom(ROM_START, CPU6502Instructions.LDA_ABS.getCode(), PORT_START & 0xFF, PORT_START >> 8, CPU6502Instructions.JMP_ABS.getCode(), ROM_START & 0xFF, ROM_START >> 8);
+        cpu.setIdleLoopSkipping(true);
+        assertNoAllocation(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                cpu.run(bus, 100);
+            }
+        }, "Checking loops for idle passes");
+    }
+
+    @Test
+    public void faultTest() {
+        writeRom(ROM_START, 0x02);
+        assertThrows(UnsupportedOperationException.class, () -> cpu.run(bus, 10), "An unknown opcode is still a fault");
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.oroarmor.cpuemulator.cpu6502.debug.Watchpoints;
+import com.oroarmor.cpuemulator.cpu6502.devices.MemoryDevice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BulkTransferTest {
+    private static final int PORT_START = 0x8010;
+
+    private Bus bus;
+    private CountingMemory ram;
+    private byte[] rom;
+    private byte[] port;
+
+    @BeforeEach
+    public void reset() {
+        bus = new Bus();
+        ram = new CountingMemory(0x0000, 0x8000);
+        rom = new byte[0x4000];
+        port = new byte[0x10];
+        for (int i = 0; i < rom.length; i++) {
+            rom[i] = (byte) (i * 7);
+        }
+
+        bus.attachDevice(ram);
+        bus.attachDevice(new Bus.BusDevice() {
+            @Override
+            public byte readValue(int location) {
+                return port[location - PORT_START];
+            }
+
+            @Override
+            public void writeValue(int location, byte value) {
+                port[location - PORT_START] = value;
+            }
+
+            @Override
+            public boolean isValidAddress(int location) {
+                return location >= PORT_START && location < PORT_START + port.length;
+            }
+        });
+        bus.attachDevice(new MemoryDevice(0xC000, rom, true));
+    }
+
+    private byte[] readEachByte(int location, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = bus.readByte(location + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void blockMatchesBytesTest() {
+        byte[] image = new byte[0x10000];
+        new Random(1).nextBytes(image);
+        byte[] romImage = rom.clone();
+        bus.writeBytes(0, image, 0, image.length);
+
+        assertArrayEquals(readEachByte(0, 0x10000), readBytes(0, 0x10000), "Reading the whole bus as a block");
+        assertArrayEquals(romImage, rom, "ROM ignores block writes");
+        for (int i = 0; i < port.length; i++) {
+            assertEquals(image[PORT_START + i], port[i], "A block write across a device boundary reaches the port at " + i);
+        }
+        assertEquals(image[0x1234], bus.readByte(0x1234), "A block write reaches RAM");
+        assertEquals(0, bus.readByte(0x9000), "Unmapped locations are not written");
+
+        Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            int location = random.nextInt(0x10000 + 0x100) - 0x80;
+            int length = random.nextInt(0x300);
+            byte[] expected = readEachByte(location, length);
+            assertArrayEquals(expected, readBytes(location, length), "Reading " + length + " bytes at " + location + " into an array");
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(length + 4);
+            direct.position(2).limit(length + 2);
+            bus.readBytes(location, direct);
+            assertEquals(length + 2, direct.position(), "Reading into a direct buffer fills it");
+            assertEquals(length + 2, direct.limit(), "Reading into a direct buffer keeps its limit");
+            byte[] fromDirect = new byte[length];
+            direct.position(2);
+            direct.get(fromDirect);
+            assertArrayEquals(expected, fromDirect, "Reading " + length + " bytes at " + location + " into a direct buffer");
+
+            byte[] heap = new byte[length + 3];
+            bus.readBytes(location, ByteBuffer.wrap(heap, 3, length).slice());
+            assertArrayEquals(expected, Arrays.copyOfRange(heap, 3, length + 3), "Reading into a sliced heap buffer");
+        }
+    }
+
+    @Test
+    public void bufferWriteTest() {
+        byte[] image = new byte[0x300];
+        new Random(3).nextBytes(image);
+        ByteBuffer direct = ByteBuffer.allocateDirect(image.length);
+        direct.put(image).flip();
+        bus.writeBytes(0x7F00, direct);
+
+        assertEquals(image.length, direct.position(), "Writing a buffer consumes it");
+        assertArrayEquals(Arrays.copyOfRange(image, 0, 0x100), readEachByte(0x7F00, 0x100), "A buffer write reaches RAM");
+        for (int i = 0; i < port.length; i++) {
+            assertEquals(image[PORT_START - 0x7F00 + i], port[i], "A buffer write reaches the port at " + i);
+        }
+    }
+
+    @Test
+    public void arrayBackedTest() {
+        byte[] block = new byte[0x8000];
+        bus.readBytes(0x0000, block, 0, block.length);
+        bus.writeBytes(0x0000, block, 0, block.length);
+        assertEquals(1, ram.blockReads, "RAM is read as one block");
+        assertEquals(1, ram.blockWrites, "RAM is written as one block");
+        assertEquals(0, ram.valueAccesses, "RAM is not accessed one byte at a time");
+    }
+
+    @Test
+    public void watchpointTest() {
+        List<Integer> hits = new ArrayList<>();
+        Watchpoints watchpoints = new Watchpoints(bus, (address, value, write) -> hits.add(address));
+        watchpoints.watchWrite(0x1234);
+        watchpoints.watchRead(0x1240);
+
+        bus.writeBytes(0x1000, new byte[0x400], 0, 0x400);
+        bus.readBytes(0x1000, new byte[0x400], 0, 0x400);
+        assertEquals(List.of(0x1234, 0x1240), hits, "Block transfers through a watched page still trap");
+    }
+
+    private byte[] readBytes(int location, int length) {
+        byte[] bytes = new byte[length];
+        bus.readBytes(location, bytes, 0, length);
+        return bytes;
+    }
+
+    private static class CountingMemory extends MemoryDevice {
+        private int blockReads;
+        private int blockWrites;
+        private int valueAccesses;
+
+        private CountingMemory(int start, int size) {
+            super(start, size);
+        }
+
+        @Override
+        public byte readValue(int location) {
+            valueAccesses++;
+            return super.readValue(location);
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+            valueAccesses++;
+            super.writeValue(location, value);
+        }
+
+        @Override
+        public void readValues(int location, byte[] destination, int offset, int length) {
+            blockReads++;
+            super.readValues(location, destination, offset, length);
+        }
+
+        @Override
+        public void writeValues(int location, byte[] source, int offset, int length) {
+            blockWrites++;
+            super.writeValues(location, source, offset, length);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+import com.oroarmor.cpuemulator.cpu6502.instructions.ReferenceModel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DifferentialFuzzTest {
+    private static void assertMatchesReference(DifferentialFuzzer.Engine engine) throws InterruptedException {
+        DifferentialFuzzer fuzzer = new DifferentialFuzzer(ReferenceModel.ENGINE, engine);
+        DifferentialFuzzer.Result result = fuzzer.fuzz(6502, 20000, Runtime.getRuntime().availableProcessors());
+
+        assertNull(result.divergence, () -> "The engine does not match the reference model: " + result.description);
+        assertEquals(20000, result.cases, "Every case is run");
+    }
+
+    @Test
+    public void enginesAgreeTest() throws InterruptedException {
+        assertMatchesReference(DifferentialFuzzer.CYCLE_STEPPED);
+        assertMatchesReference(DifferentialFuzzer.INSTRUCTION_STEPPED);
+    }
+
+    @Test
+    public void minimizeTest() throws InterruptedException {
+        DifferentialFuzzer.Engine broken = (cpu, bus, instructions) -> {
+            long cycles = 0;
+            for (int i = 0; i < instructions; i++) {
+                boolean incrementX = bus.readByte(cpu.getProgramCounter()) == CPU6502Instructions.INX.getCode();
+                cycles += cpu.step(bus);
+                if (incrementX) {
+                    cpu.setXRegister((byte) (cpu.getXRegister() + 1));
+                }
+            }
+            return cycles;
+        };
+        DifferentialFuzzer fuzzer = new DifferentialFuzzer(ReferenceModel.ENGINE, broken);
+        DifferentialFuzzer.Result result = fuzzer.fuzz(6502, 20000, 2);
+
+        assertNotNull(result.divergence, "The broken engine is found");
+        assertEquals(1, result.divergence.instructions.length, () -> "The case is minimized to one instruction: " + result.description);
+        assertEquals(CPU6502Instructions.INX.getCode(), result.divergence.instructions[0][0], "The minimized case runs the broken instruction");
+        assertEquals(0, result.divergence.memorySeed, "Unneeded state is cleared");
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs random machine states and instruction streams through two {@link Engine}s and compares the registers, flags,
+ * cycle counts and memory writes. Cases that do not match are minimized to a short reproducer.<br>
+ * The streams only use implemented instructions, but jumps can run into any opcode. The reference is usually the
+ * independent {@link com.oroarmor.cpuemulator.cpu6502.instructions.ReferenceModel#ENGINE}.
+ */
+public class DifferentialFuzzer {
+    /**
+     * Clocks the cpu one cycle at a time
+     */
+    public static final Engine CYCLE_STEPPED = (cpu, bus, instructions) -> {
+        long cycles = 0;
+        for (int i = 0; i < instructions; i++) {
+            do {
+                cpu.tick(bus);
+                cycles++;
+            } while (!cpu.isInstructionComplete());
+        }
+        return cycles;
+    };
+
+    /**
+     * Runs the cpu one instruction at a time
+     */
+    public static final Engine INSTRUCTION_STEPPED = (cpu, bus, instructions) -> {
+        long cycles = 0;
+        for (int i = 0; i < instructions; i++) {
+            cycles += cpu.step(bus);
+        }
+        return cycles;
+    };
+
+    private static final CPU6502Instructions[] INSTRUCTIONS = Arrays.stream(CPU6502Instructions.values())
+            .filter(instruction -> instruction.getInstructionProcessor() != null)
+            .toArray(CPU6502Instructions[]::new);
+    private static final int MAX_INSTRUCTIONS = 16;
+
+    private final Engine reference;
+    private final Engine candidate;
+
+    /**
+     * Creates a new fuzzer
+     *
+     * @param reference The engine that is trusted
+     * @param candidate The engine that is checked
+     */
+    public DifferentialFuzzer(Engine reference, Engine candidate) {
+        this.reference = reference;
+        this.candidate = candidate;
+    }
+
+    /**
+     * Runs cases until one does not match or every case was run
+     *
+     * @param seed    The seed for the cases
+     * @param cases   The number of cases to run
+     * @param threads The number of threads to run on
+     * @return The result
+     */
+    public Result fuzz(long seed, long cases, int threads) throws InterruptedException {
+        AtomicLong next = new AtomicLong();
+        AtomicLong run = new AtomicLong();
+        AtomicReference<Case> divergence = new AtomicReference<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                Runner runner = new Runner();
+                long index;
+                while (divergence.get() == null && (index = next.getAndIncrement()) < cases) {
+                    Case fuzzCase = Case.generate(seed ^ index * 0x9E3779B97F4A7C15L);
+                    if (!runner.matches(fuzzCase)) {
+                        divergence.compareAndSet(null, fuzzCase);
+                    }
+                    run.incrementAndGet();
+                }
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("A fuzzing thread failed", e);
+            }
+        }
+
+        Case found = divergence.get();
+        if (found == null) {
+            return new Result(run.get(), null, null);
+        }
+        Runner runner = new Runner();
+        Case minimized = runner.minimize(found);
+        return new Result(run.get(), minimized, runner.describe(minimized));
+    }
+
+    /**
+     * Runs a number of instructions on a cpu
+     */
+    @FunctionalInterface
+    public interface Engine {
+        /**
+         * @param cpu          The cpu, holding the registers before and after the instructions
+         * @param bus          The memory
+         * @param instructions The number of instructions to run
+         * @return The cycles the instructions took
+         */
+        long run(CPU6502 cpu, Bus bus, int instructions);
+    }
+
+    /**
+     * The result of {@link #fuzz(long, long, int)}
+     */
+    public static final class Result {
+        public final long cases;
+        public final Case divergence;
+        public final String description;
+
+        private Result(long cases, Case divergence, String description) {
+            this.cases = cases;
+            this.divergence = divergence;
+            this.description = description;
+        }
+    }
+
+    /**
+     * A starting machine state and an instruction stream. Memory that the stream does not cover is filled from a seed
+     */
+    public static final class Case {
+        public final int programCounter;
+        public final int accumulator;
+        public final int xRegister;
+        public final int yRegister;
+        public final int stackPointer;
+        public final int flags;
+        public final long memorySeed;
+        public final byte[][] instructions;
+
+        public Case(int programCounter, int accumulator, int xRegister, int yRegister, int stackPointer, int flags, long memorySeed, byte[][] instructions) {
+            this.programCounter = programCounter;
+            this.accumulator = accumulator;
+            this.xRegister = xRegister;
+            this.yRegister = yRegister;
+            this.stackPointer = stackPointer;
+            this.flags = flags;
+            this.memorySeed = memorySeed;
+            this.instructions = instructions;
+        }
+
+        static Case generate(long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            byte[][] instructions = new byte[1 + random.nextInt(MAX_INSTRUCTIONS)][];
+            for (int i = 0; i < instructions.length; i++) {
+                CPU6502Instructions instruction = INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)];
+                byte[] bytes = new byte[length(instruction)];
+                bytes[0] = instruction.getCode();
+                for (int b = 1; b < bytes.length; b++) {
+                    bytes[b] = (byte) random.nextInt(0x100);
+                }
+                instructions[i] = bytes;
+            }
+            return new Case(0x0200 + random.nextInt(0xF000), random.nextInt(0x100), random.nextInt(0x100), random.nextInt(0x100), random.nextInt(0x100), random.nextInt(0x100), random.nextLong(), instructions);
+        }
+
+        private static int length(CPU6502Instructions instruction) {
+            String name = instruction.name();
+            if (name.equals("JSR")) {
+                return 3;
+            }
+            int suffix = name.indexOf('_');
+            if (suffix == -1) {
+                return 1;
+            }
+            return name.startsWith("ABS", suffix + 1) || name.startsWith("IND", suffix + 1) ? 3 : 2;
+        }
+    }
+
+    /**
+     * Runs cases on one thread, reusing its cpu and memory
+     */
+    private final class Runner {
+        private final CPU6502 cpu = new CPU6502();
+        private final FuzzBus bus = new FuzzBus();
+
+        boolean matches(Case fuzzCase) {
+            return Arrays.equals(outcome(reference, fuzzCase), outcome(candidate, fuzzCase));
+        }
+
+        long[] outcome(Engine engine, Case fuzzCase) {
+            bus.reset(fuzzCase.memorySeed);
+            int address = fuzzCase.programCounter;
+            for (byte[] instruction : fuzzCase.instructions) {
+                for (byte b : instruction) {
+                    bus.load(address++, b);
+                }
+            }
+
+            cpu.reset();
+            cpu.setProgramCounter(fuzzCase.programCounter);
+            cpu.setAccumulator((byte) fuzzCase.accumulator);
+            cpu.setXRegister((byte) fuzzCase.xRegister);
+            cpu.setYRegister((byte) fuzzCase.yRegister);
+            cpu.setStackPointer(fuzzCase.stackPointer);
+            cpu.getFlags().fromByte((byte) fuzzCase.flags);
+
+            // Engines fail in their own way on an unknown opcode, so only the failure and the state it left are compared
+            long cycles;
+            long error = 0;
+            try {
+                cycles = engine.run(cpu, bus, fuzzCase.instructions.length);
+            } catch (RuntimeException e) {
+                cycles = -1;
+                error = 1;
+            }
+
+            long[] outcome = Arrays.copyOf(bus.writes, bus.writeCount + 8);
+            outcome[bus.writeCount] = cpu.getProgramCounter();
+            outcome[bus.writeCount + 1] = cpu.getAccumulator() & 0xFF;
+            outcome[bus.writeCount + 2] = cpu.getXRegister() & 0xFF;
+            outcome[bus.writeCount + 3] = cpu.getYRegister() & 0xFF;
+            outcome[bus.writeCount + 4] = cpu.getStackPointer();
+            outcome[bus.writeCount + 5] = cpu.getFlags().toByte();
+            outcome[bus.writeCount + 6] = cycles;
+            outcome[bus.writeCount + 7] = error;
+            return outcome;
+        }
+
+        /**
+         * Removes instructions and clears state while the case still does not match
+         */
+        Case minimize(Case fuzzCase) {
+            Case current = fuzzCase;
+            for (int chunk = Math.max(1, current.instructions.length / 2); chunk > 0; chunk /= 2) {
+                boolean removed = true;
+                while (removed) {
+                    removed = false;
+                    for (int start = 0; start < current.instructions.length && current.instructions.length > chunk; start += chunk) {
+                        List<byte[]> remaining = new ArrayList<>(Arrays.asList(current.instructions));
+                        remaining.subList(start, Math.min(start + chunk, remaining.size())).clear();
+                        Case smaller = new Case(current.programCounter, current.accumulator, current.xRegister, current.yRegister, current.stackPointer, current.flags, current.memorySeed, remaining.toArray(new byte[0][]));
+                        if (!matches(smaller)) {
+                            current = smaller;
+                            removed = true;
+                        }
+                    }
+                }
+            }
+
+            List<UnaryOperator<Case>> simplifications = Arrays.asList(
+                    c -> new Case(0x0200, c.accumulator, c.xRegister, c.yRegister, c.stackPointer, c.flags, c.memorySeed, c.instructions),
+                    c -> new Case(c.programCounter, 0, c.xRegister, c.yRegister, c.stackPointer, c.flags, c.memorySeed, c.instructions),
+                    c -> new Case(c.programCounter, c.accumulator, 0, c.yRegister, c.stackPointer, c.flags, c.memorySeed, c.instructions),
+                    c -> new Case(c.programCounter, c.accumulator, c.xRegister, 0, c.stackPointer, c.flags, c.memorySeed, c.instructions),
+                    c -> new Case(c.programCounter, c.accumulator, c.xRegister, c.yRegister, 0xFD, c.flags, c.memorySeed, c.instructions),
+                    c -> new Case(c.programCounter, c.accumulator, c.xRegister, c.yRegister, c.stackPointer, 0, c.memorySeed, c.instructions),
+                    c -> new Case(c.programCounter, c.accumulator, c.xRegister, c.yRegister, c.stackPointer, c.flags, 0, c.instructions)
+            );
+            for (UnaryOperator<Case> simplification : simplifications) {
+                Case simpler = simplification.apply(current);
+                if (!matches(simpler)) {
+                    current = simpler;
+                }
+            }
+            return current;
+        }
+
+        String describe(Case fuzzCase) {
+            StringBuilder builder = new StringBuilder(String.format("PC=%04X A=%02X X=%02X Y=%02X SP=%02X P=%02X memory seed=%d program:", fuzzCase.programCounter, fuzzCase.accumulator, fuzzCase.xRegister, fuzzCase.yRegister, fuzzCase.stackPointer, fuzzCase.flags, fuzzCase.memorySeed));
+            for (byte[] instruction : fuzzCase.instructions) {
+                builder.append(" ").append(CPU6502Instructions.getFrom(instruction[0]));
+                for (int b = 1; b < instruction.length; b++) {
+                    builder.append(String.format(" %02X", instruction[b]));
+                }
+                builder.append(";");
+            }
+            builder.append(String.format("%nreference: %s%ncandidate: %s", Arrays.toString(outcome(reference, fuzzCase)), Arrays.toString(outcome(candidate, fuzzCase))));
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Memory filled from a seed, which logs every write. Resetting only advances a generation counter
+     */
+    private static final class FuzzBus extends Bus {
+        private final byte[] memory = new byte[0x10000];
+        private final int[] generations = new int[0x10000];
+        private int generation;
+        private long seed;
+        private long[] writes = new long[64];
+        private int writeCount;
+
+        void reset(long seed) {
+            this.seed = seed;
+            generation++;
+            writeCount = 0;
+        }
+
+        void load(int location, byte value) {
+            memory[location & 0xFFFF] = value;
+            generations[location & 0xFFFF] = generation;
+        }
+
+        @Override
+        public byte readByte(int location) {
+            int address = location & 0xFFFF;
+            if (generations[address] == generation) {
+                return memory[address];
+            }
+            long mixed = (seed + address) * 0xBF58476D1CE4E5B9L;
+            return (byte) (mixed ^ mixed >>> 31);
+        }
+
+        @Override
+        public void writeByte(int location, byte value) {
+            load(location, value);
+            if (writeCount == writes.length) {
+                writes = Arrays.copyOf(writes, writes.length * 2);
+            }
+            writes[writeCount++] = (long) location << 8 | (value & 0xFF);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+import java.nio.ByteBuffer;
+
+import com.oroarmor.cpuemulator.cpu6502.devices.InputDevice;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdleLoopTest {
+    private static final int INPUT = 0xD000;
+
+    @Test
+    public void spinTest() {
+        Rig skipping = new Rig(true, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        Rig running = new Rig(false, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+
+        assertEquals(1_000_000, skipping.cpu.run(skipping.bus, 1_000_000), "Skipped cycles count as run");
+        assertTrue(skipping.cpu.getSkippedCycles() > 990_000, "JMP * is skipped");
+        running.cpu.run(running.bus, 1_000_000);
+        skipping.assertSameAs(running, "JMP *");
+    }
+
+    @Test
+    public void pollingTest() {
+        int[] poll = {CPU6502Instructions.LDA_ABS.getCode(), INPUT & 0xFF, INPUT >> 8, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02};
+        for (int chunk : new int[]{1, 997, 4096, 200_000}) {
+            Rig skipping = new Rig(true, poll);
+            Rig running = new Rig(false, poll);
+            skipping.input.push(50_001, (byte) 1);
+            running.input.push(50_001, (byte) 1);
+
+            for (long cycles = 0; cycles < 200_000; cycles += chunk) {
+                skipping.cpu.run(skipping.bus, chunk);
+                running.cpu.run(running.bus, chunk);
+                skipping.assertSameAs(running, "Polling in batches of " + chunk);
+            }
+            if (chunk > 1) {
+                assertTrue(skipping.cpu.getSkippedCycles() > 150_000, "Polling in batches of " + chunk + " is skipped");
+            }
+            assertEquals(InputDevice.READY, (byte) skipping.cpu.getAccumulator(), "The event is seen after skipping");
+        }
+    }
+
+    @Test
+    public void sideEffectTest() {
+        Rig counting = new Rig(true, CPU6502Instructions.INX.getCode(), CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        Rig runningCounting = new Rig(false, CPU6502Instructions.INX.getCode(), CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        counting.cpu.run(counting.bus, 10_000);
+        runningCounting.cpu.run(runningCounting.bus, 10_000);
+        assertEquals(0, counting.cpu.getSkippedCycles(), "A loop that changes a register is not skipped");
+        counting.assertSameAs(runningCounting, "Counting");
+
+        Rig writing = new Rig(true, CPU6502Instructions.STA_ABS.getCode(), 0x00, 0x03, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        writing.cpu.run(writing.bus, 10_000);
+        assertEquals(0, writing.cpu.getSkippedCycles(), "A loop that writes is not skipped");
+
+        Rig popping = new Rig(true, CPU6502Instructions.LDA_ABS.getCode(), (INPUT + 1) & 0xFF, INPUT >> 8, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        popping.cpu.run(popping.bus, 10_000);
+        assertEquals(0, popping.cpu.getSkippedCycles(), "A loop that reads a register with side effects is not skipped");
+
+        CPU6502 cpu = new CPU6502();
+        Bus bus = new TestBus();
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0xFC);
+        bus.writeByte(0xFFFE, (byte) 0xFF);
+        cpu.setIdleLoopSkipping(true);
+        cpu.run(bus, 10_000);
+        assertEquals(0, cpu.getSkippedCycles(), "A loop that reads a device without timing is not skipped");
+    }
+
+    private static class Rig {
+        private final CPU6502 cpu = new CPU6502();
+        private final Bus bus = new Bus();
+        private final byte[] memory = new byte[0x10000];
+        private final InputDevice input = new InputDevice(INPUT, 16, cpu::getCycles);
+
+        private Rig(boolean skipping, int... loop) {
+            bus.attachDevice(input);
+            bus.attachDevice(new Bus.TimedDevice() {
+                @Override
+                public long getNextEventCycle(int location, long cycle) {
+                    return Long.MAX_VALUE;
+                }
+
+                @Override
+                public byte readValue(int location) {
+                    return memory[location];
+                }
+
+                @Override
+                public void writeValue(int location, byte value) {
+                    memory[location] = value;
+                }
+
+                @Override
+                public boolean isValidAddress(int location) {
+                    return true;
+                }
+            });
+
+            memory[0xFFFC] = CPU6502Instructions.JMP_ABS.getCode();
+            memory[0xFFFD] = 0x00;
+            memory[0xFFFE] = 0x02;
+            for (int i = 0; i < loop.length; i++) {
+                memory[0x0200 + i] = (byte) loop[i];
+            }
+            cpu.setIdleLoopSkipping(skipping);
+        }
+
+        private void assertSameAs(Rig other, String testName) {
+            assertArrayEquals(other.state(), state(), testName + " ends in the same cpu state");
+            assertArrayEquals(other.memory, memory, testName + " ends with the same memory");
+            assertEquals(other.cpu.getInstructions(), cpu.getInstructions(), testName + " counts the skipped instructions");
+            assertEquals(other.input.getQueue().size(), input.getQueue().size(), testName + " leaves the same input events");
+        }
+
+        private byte[] state() {
+            ByteBuffer buffer = ByteBuffer.allocate(CPU6502.STATE_SIZE);
+            cpu.saveState(buffer);
+            return buffer.array();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oroarmor.cpuemulator.cpu6502.devices.MemoryDevice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MirroredDeviceTest {
+    private Bus bus;
+    private MemoryDevice ram;
+    private List<Integer> registerOffsets;
+
+    @BeforeEach
+    public void reset() {
+        bus = new Bus();
+        ram = new MemoryDevice(0x0000, 0x0800);
+        registerOffsets = new ArrayList<>();
+
+        bus.attachMirroredDevice(ram, 0x0000, 0x1FFF, 0x07FF);
+        bus.attachMirroredDevice(new Bus.BusDevice() {
+            @Override
+            public byte readValue(int location) {
+                registerOffsets.add(location);
+                return (byte) location;
+            }
+
+            @Override
+            public void writeValue(int location, byte value) {
+                registerOffsets.add(location);
+            }
+
+            @Override
+            public boolean isValidAddress(int location) {
+                return false;
+            }
+        }, 0x2000, 0x3FFF, 0x0007);
+        bus.attachMirroredDevice(new MemoryDevice(0x0000, 0x10), 0x4000, 0x4017, 0x000F);
+        bus.attachDevice(new MemoryDevice(0x4000, 0x100));
+    }
+
+    @Test
+    public void mirrorTest() {
+        bus.writeByte(0x0801, (byte) 0x42);
+        assertEquals(0x42, bus.readByte(0x0001), "RAM is mirrored at the start of the window");
+        assertEquals(0x42, bus.readByte(0x1801), "RAM is mirrored at the end of the window");
+        assertEquals(0x42, ram.getMemory()[0x0001], "The device is given the offset into the mirror");
+
+        assertEquals(5, bus.readByte(0x3FFD), "Registers are mirrored across the window");
+        bus.writeByte(0x2008, (byte) 0);
+        assertEquals(List.of(5, 0), registerOffsets, "The registers only ever see their offsets");
+
+        bus.writeByte(0x4011, (byte) 0x17);
+        assertEquals(0x17, bus.readByte(0x4001), "A window that shares its page is mirrored");
+        bus.writeByte(0x4018, (byte) 0x18);
+        assertEquals(0x18, bus.readByte(0x4018), "The device after the window handles the rest of the page");
+        assertEquals(0x00, bus.readByte(0x4008), "The window covers its own locations first");
+    }
+
+    @Test
+    public void blockTest() {
+        byte[] image = new byte[0x2000];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = (byte) (i * 31);
+        }
+        bus.writeBytes(0x07F0, image, 0, 0x20);
+        byte[] expected = new byte[0x20];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = bus.readByte(0x07F0 + i);
+        }
+        byte[] block = new byte[0x20];
+        bus.readBytes(0x17F0, block, 0, block.length);
+        assertArrayEquals(expected, block, "A block that wraps around the mirror matches reading byte by byte");
+        assertEquals(image[0x10], ram.getMemory()[0], "A block write wraps to the start of the mirror");
+
+        bus.readBytes(0x2006, new byte[4], 0, 4);
+        assertEquals(List.of(6, 7, 0, 1), registerOffsets, "A block read of the registers wraps");
+    }
+
+    @Test
+    public void idleLoopTest() {
+        CPU6502 cpu = new CPU6502();
+        bus.attachDevice(new MemoryDevice(0x8000, 0x8000));
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0x00);
+        bus.writeByte(0xFFFE, (byte) 0x80);
+        bus.writeByte(0x8000, CPU6502Instructions.LDA_ABS.getCode());
+        bus.writeByte(0x8001, (byte) 0x01);
+        bus.writeByte(0x8002, (byte) 0x18);
+        bus.writeByte(0x8003, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0x8004, (byte) 0x00);
+        bus.writeByte(0x8005, (byte) 0x80);
+
+        cpu.setIdleLoopSkipping(true);
+        cpu.run(bus, 100_000);
+        assertTrue(cpu.getSkippedCycles() > 90_000, "Mirrored memory keeps its timing for idle loops");
+    }
+
+    @Test
+    public void maskTest() {
+        assertThrows(IllegalArgumentException.class, () -> bus.attachMirroredDevice(ram, 0, 0xFF, 0x0F0F), "Masks must be contiguous low bits");
+    }
+}
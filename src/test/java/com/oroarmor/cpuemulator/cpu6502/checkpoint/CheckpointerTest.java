@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.checkpoint;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.devices.BankedMemoryDevice;
+import com.oroarmor.cpuemulator.cpu6502.devices.MemoryDevice;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointerTest {
+    private Path path;
+
+    @BeforeEach
+    public void reset() throws IOException {
+        path = Files.createTempFile("cpuemulator", ".ckpt");
+        Files.delete(path);
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void resumeTest() throws IOException {
+        Process straight = new Process();
+        straight.machine.run(100_000);
+
+        Process crashed = new Process();
+        try (Checkpointer checkpointer = crashed.checkpointer(10_000)) {
+            assertFalse(checkpointer.restore(), "A new file has no checkpoint");
+            assertEquals(55_000, checkpointer.run(55_000), "Checkpointing runs every cycle");
+            assertEquals(5, checkpointer.getSequence(), "A checkpoint is taken every interval");
+        }
+
+        Process resumed = new Process();
+        try (Checkpointer checkpointer = resumed.checkpointer(10_000)) {
+            assertTrue(checkpointer.restore(), "The last checkpoint is restored");
+            assertEquals(50_000, resumed.cpu.getCycles(), "The cpu goes back to the last checkpoint");
+            assertEquals(5, checkpointer.getSequence(), "The sequence carries on");
+            checkpointer.run(50_000);
+            assertEquals(10, checkpointer.getSequence(), "Checkpoints carry on after restoring");
+        }
+        resumed.assertSameAs(straight, "Resuming from a checkpoint");
+    }
+
+    @Test
+    public void tornWriteTest() throws IOException {
+        Process process = new Process();
+        int stateSize;
+        try (Checkpointer checkpointer = process.checkpointer(1000)) {
+            checkpointer.run(3000);
+            stateSize = checkpointer.getStateSize();
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(16 + 2 * 16 + stateSize + 20);
+            file.write(0x5A);
+        }
+
+        Process restored = new Process();
+        try (Checkpointer checkpointer = restored.checkpointer(1000)) {
+            assertTrue(checkpointer.restore(), "The older checkpoint is restored");
+            assertEquals(2000, restored.cpu.getCycles(), "A checkpoint that does not match its marker is skipped");
+            checkpointer.checkpoint();
+            assertEquals(3, checkpointer.getSequence(), "The broken slot is written next");
+        }
+
+        Process latest = new Process();
+        try (Checkpointer checkpointer = latest.checkpointer(1000)) {
+            assertTrue(checkpointer.restore(), "The rewritten slot is restored");
+            assertEquals(2000, latest.cpu.getCycles(), "The rewritten checkpoint is the newest");
+        }
+    }
+
+    @Test
+    public void bankTest() throws IOException {
+        Process process = new Process();
+        BankedMemoryDevice banked = new BankedMemoryDevice(new byte[0x4000], 0x1000, false);
+        BankedMemoryDevice.Window window = banked.map(process.bus, 0x4000, 1);
+        try (Checkpointer checkpointer = new Checkpointer(process.machine, path, 1000, process.memory, banked, window)) {
+            process.bus.writeByte(0x4010, (byte) 0x42);
+            window.selectBank(3);
+            checkpointer.checkpoint();
+            window.selectBank(0);
+            process.bus.writeByte(0x4010, (byte) 0x00);
+            assertTrue(checkpointer.restore(), "The checkpoint is restored");
+        }
+        assertEquals(3, window.getBank(), "The bank of the window is restored");
+        window.selectBank(1);
+        assertEquals(0x42, process.bus.readByte(0x4010), "The banked memory is restored");
+    }
+
+    @Test
+    public void mismatchTest() throws IOException {
+        Process process = new Process();
+        process.checkpointer(1000).close();
+        assertThrows(IOException.class, () -> new Checkpointer(process.machine, path, 1000), "A file for a different machine is refused");
+
+        Files.write(path, new byte[64]);
+        assertThrows(IOException.class, () -> process.checkpointer(1000), "A file that is not a checkpoint is refused");
+        assertArrayEquals(new byte[64], Files.readAllBytes(path), "A file that is refused is not grown");
+
+        Files.delete(path);
+        process.checkpointer(1000).close();
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(path), 40);
+        Files.write(path, truncated);
+        assertThrows(IOException.class, () -> process.checkpointer(1000), "A truncated checkpoint is refused");
+        assertArrayEquals(truncated, Files.readAllBytes(path), "A truncated checkpoint is not grown");
+        assertThrows(IllegalArgumentException.class, () -> process.checkpointer(0), "The interval must be positive");
+    }
+
+    private class Process {
+        private final CPU6502 cpu = new CPU6502();
+        private final MemoryDevice memory = new MemoryDevice(0, 0x10000);
+        private final Bus bus = new Bus();
+        private final Machine machine = new Machine(cpu, bus);
+
+        private Process() {
+            cpu.reset();
+            bus.attachDevice(memory);
+            write(0xFFFC, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+            write(0x0200, CPU6502Instructions.INX.getCode(), CPU6502Instructions.STX_ABS.getCode(), 0x00, 0x03, CPU6502Instructions.INC_ABS.getCode(), 0x01, 0x03,
+                    CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        }
+
+        private void write(int address, int... values) {
+            for (int i = 0; i < values.length; i++) {
+                bus.writeByte(address + i, (byte) values[i]);
+            }
+        }
+
+        private Checkpointer checkpointer(long interval) throws IOException {
+            return new Checkpointer(machine, path, interval, memory);
+        }
+
+        private void assertSameAs(Process other, String testName) {
+            ByteBuffer state = ByteBuffer.allocate(CPU6502.STATE_SIZE);
+            ByteBuffer otherState = ByteBuffer.allocate(CPU6502.STATE_SIZE);
+            cpu.saveState(state);
+            other.cpu.saveState(otherState);
+            assertArrayEquals(otherState.array(), state.array(), testName + " ends in the same cpu state");
+            assertArrayEquals(other.memory.getMemory(), memory.getMemory(), testName + " ends with the same memory");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchRunnerTest {
+    private static final String MANIFEST = String.join("\n",
+            "# name, rom, load, start, cycles, condition",
+            "pass, store.rom, $8000, $8000, 100000, A=$05 $0200=5 PC=$8005",
+            "fail, store.rom, $8000, $8000, 50000, A=6",
+            "",
+            "budget, store.rom, 0x8000, 0x8000, 1_000",
+            "fault, fault.rom, $8000, $8000, 1000, A=0",
+            "missing, missing.rom, $8000, $8000, 1000, A=0");
+
+    private Path directory;
+    private Path manifest;
+
+    @BeforeEach
+    public void reset() throws IOException {
+        directory = Files.createTempDirectory("batch");
+        manifest = directory.resolve("jobs.txt");
+        Files.write(manifest, MANIFEST.getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("store.rom"), bytes(CPU6502Instructions.LDA_IMM.getCode(), 0x05, CPU6502Instructions.STA_ABS.getCode(), 0x00, 0x02,
+                CPU6502Instructions.JMP_ABS.getCode(), 0x05, 0x80));
+        Files.write(directory.resolve("fault.rom"), bytes(CPU6502Instructions.INX.getCode(), 0xFF));
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void jobTest() throws IOException {
+        List<BatchJob> jobs = BatchJob.parseManifest(Files.readAllLines(manifest), directory);
+        assertEquals(5, jobs.size(), "Comments and blank lines are skipped");
+        assertEquals(1000, jobs.get(2).getCycleBudget(), "Numbers can have underscores");
+
+        List<JobResult> results = BatchRunner.runJobs(jobs, 3);
+        assertEquals(Arrays.asList(JobResult.Outcome.PASS, JobResult.Outcome.FAIL, JobResult.Outcome.PASS, JobResult.Outcome.ERROR, JobResult.Outcome.ERROR),
+                Arrays.asList(results.stream().map(JobResult::getOutcome).toArray()), "Every job has an outcome, in manifest order");
+        assertTrue(results.get(0).getCycles() < BatchRunner.SLICE_CYCLES + CPU6502Instructions.JSR.getMaxCycles(), "A passing job stops once its condition holds");
+        assertTrue(results.get(1).getCycles() - 50_000 < CPU6502Instructions.JSR.getMaxCycles(), "A failing job runs its whole budget and finishes its last instruction");
+        assertTrue(results.get(2).getCycles() >= 1000, "A job without a condition runs its whole budget");
+        assertTrue(results.get(3).getMessage().contains("FF"), "A fault is reported");
+        assertTrue(results.get(4).getMessage().contains("missing.rom"), "A missing ROM is reported");
+        assertEquals(8, results.get(0).getStateHash().length(), "The final state is hashed");
+        assertNotEquals(results.get(0).getStateHash(), results.get(1).getStateHash(), "Different final states hash differently");
+        assertEquals(results.get(1).getStateHash(), BatchRunner.runJob(jobs.get(1)).getStateHash(), "Running a job again gives the same hash");
+    }
+
+    @Test
+    public void commandLineTest() throws IOException {
+        Path csv = directory.resolve("report.csv");
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(1, BatchRunner.run(new String[]{manifest.toString(), "--threads", "2", "--output", csv.toString()}, System.out, new PrintStream(err)),
+                "Failing jobs fail the run");
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(6, lines.size(), "The report has a header and a line per job");
+        assertEquals("name,outcome,cycles,wall_ms,state_hash,message", lines.get(0), "The csv header");
+        assertTrue(lines.get(1).startsWith("pass,PASS,"), "The first job passed");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Files.write(manifest, MANIFEST.split("\n")[1].getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, BatchRunner.run(new String[]{"--format", "jsonl", manifest.toString()}, new PrintStream(out), new PrintStream(err)), "Passing jobs pass the run");
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"name\":\"pass\",\"outcome\":\"PASS\",\"cycles\":") && json.endsWith("\"message\":\"\"}\n"), "The report is one JSON object per line");
+
+        assertEquals(2, BatchRunner.run(new String[]{"--threads"}, new PrintStream(out), new PrintStream(err)), "Bad arguments are a usage error");
+        assertEquals(2, BatchRunner.run(new String[0], new PrintStream(out), new PrintStream(err)), "The manifest is required");
+        assertThrows(IllegalArgumentException.class, () -> BatchJob.parseManifest(Arrays.asList("bad, rom, $8000, $8000, 10, A"), directory), "Checks need a value");
+        assertThrows(IllegalArgumentException.class, () -> BatchJob.parseManifest(Arrays.asList("bad, rom, $10000, $8000, 10"), directory), "Addresses must fit the bus");
+    }
+}
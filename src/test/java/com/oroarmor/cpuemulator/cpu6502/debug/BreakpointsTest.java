@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BreakpointsTest {
+    private CPU6502 cpu;
+    private Bus bus;
+    private Breakpoints breakpoints;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        bus = new TestBus();
+        breakpoints = new Breakpoints();
+        cpu.setBreakpoints(breakpoints);
+
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0x00);
+        bus.writeByte(0xFFFE, (byte) 0x02);
+        bus.writeByte(0x0200, CPU6502Instructions.SEC.getCode());
+        bus.writeByte(0x0201, CPU6502Instructions.CLC.getCode());
+        bus.writeByte(0x0202, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0x0203, (byte) 0x00);
+        bus.writeByte(0x0204, (byte) 0x02);
+    }
+
+    @Test
+    public void bitmapTest() {
+        breakpoints.add(0x0000);
+        breakpoints.add(0xFFFF);
+        breakpoints.add(0xFFFF);
+        assertTrue(breakpoints.contains(0x0000), "The first address can have a breakpoint");
+        assertTrue(breakpoints.contains(0xFFFF), "The last address can have a breakpoint");
+        assertFalse(breakpoints.contains(0xFFFE), "Neighbouring addresses are not set");
+        assertEquals(2, breakpoints.size(), "Adding a breakpoint twice counts it once");
+
+        breakpoints.remove(0xFFFF);
+        breakpoints.remove(0xFFFF);
+        assertEquals(1, breakpoints.size(), "Removing a breakpoint twice counts it once");
+        breakpoints.clear();
+        assertEquals(0, breakpoints.size(), "Clear removes every breakpoint");
+    }
+
+    @Test
+    public void breakpointTest() {
+        assertEquals(100, cpu.run(bus, 100), "An empty set of breakpoints never stops the cpu");
+
+        cpu.reset();
+        breakpoints.add(0x0200);
+        assertEquals(3, cpu.run(bus, 1000), "The cpu stops before the instruction at the breakpoint");
+        assertTrue(cpu.isAtBreakpoint(), "The cpu reports the breakpoint");
+        assertEquals(0x0200, cpu.getProgramCounter(), "The program counter is at the breakpoint");
+
+        cpu.tick(bus);
+        assertEquals(3, cpu.getCycles(), "Clocks are ignored while stopped");
+
+        cpu.resume();
+        assertEquals(7, cpu.run(bus, 1000), "Resuming runs the loop back to the breakpoint");
+        assertEquals(0x0200, cpu.getProgramCounter(), "The program counter is back at the breakpoint");
+    }
+
+    @Test
+    public void conditionalBreakpointTest() {
+        breakpoints.add(0x0201, Breakpoints.Condition.flagEquals(0, true).and(Breakpoints.Condition.accumulatorEquals(0x42)));
+        assertEquals(100, cpu.run(bus, 100), "A false condition does not stop the cpu");
+
+        cpu.setAccumulator((byte) 0x42);
+        cpu.run(bus, 100);
+        assertTrue(cpu.isAtBreakpoint(), "A true condition stops the cpu");
+        assertEquals(0x0201, cpu.getProgramCounter(), "The cpu stops at the conditional breakpoint");
+        assertTrue(cpu.getFlags().getFlag((byte) 0), "The condition saw the carry flag");
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.io.IOException;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CycleProfilerTest {
+    private CPU6502 cpu;
+    private Bus bus;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        bus = new TestBus();
+        cpu.reset();
+
+        write(0xFFFC, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        write(0x0200, CPU6502Instructions.JSR.getCode(), 0x00, 0x03, CPU6502Instructions.JSR.getCode(), 0x00, 0x04, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        for (int i = 0; i < 10; i++) {
+            write(0x0300 + i, CPU6502Instructions.SEC.getCode());
+        }
+        write(0x030A, CPU6502Instructions.RTS.getCode());
+        write(0x0400, CPU6502Instructions.JSR.getCode(), 0x00, 0x03, CPU6502Instructions.CLC.getCode(), CPU6502Instructions.CLC.getCode(), CPU6502Instructions.RTS.getCode());
+    }
+
+    private void write(int address, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            bus.writeByte(address + i, (byte) values[i]);
+        }
+    }
+
+    @Test
+    public void exactCyclesTest() throws IOException {
+        CycleProfiler profiler = new CycleProfiler(cpu);
+        cpu.run(bus, 3 + 83 * 100);
+
+        assertArrayEquals(new int[]{0x0300, 0x0400}, profiler.getRoutines(), "Every returned subroutine is listed");
+        assertEquals(200, profiler.getCalls(0x0300), "Calls from every caller are counted");
+        assertEquals(6400, profiler.getInclusiveCycles(0x0300), "JSR, the body and RTS are counted");
+        assertEquals(6400, profiler.getExclusiveCycles(0x0300), "A leaf subroutine is all exclusive");
+        assertEquals(32, profiler.getMinCycles(0x0300), "The shortest call");
+        assertEquals(32, profiler.getMaxCycles(0x0300), "The longest call");
+        assertEquals(32.0, profiler.getMeanCycles(0x0300), "The mean call");
+
+        assertEquals(100, profiler.getCalls(0x0400), "Outer calls are counted");
+        assertEquals(4800, profiler.getInclusiveCycles(0x0400), "Inclusive cycles hold the nested call");
+        assertEquals(1600, profiler.getExclusiveCycles(0x0400), "Exclusive cycles leave out the nested call");
+        assertEquals(0, profiler.getDepth(), "Every call returned");
+
+        StringBuilder out = new StringBuilder();
+        profiler.writeReport(out);
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(3, lines.length, "The report has a header and one line per subroutine");
+        assertTrue(lines[1].startsWith("$0300") && lines[2].startsWith("$0400"), "The report is ordered by exclusive cycles");
+
+        profiler.reset();
+        assertEquals(0, profiler.getRoutines().length, "Resetting removes every subroutine");
+        assertEquals(0, profiler.getCalls(0x0300), "Resetting removes the calls");
+    }
+
+    @Test
+    public void samplingProfilerTest() {
+        SamplingProfiler sampling = new SamplingProfiler(cpu, 7);
+        CycleProfiler profiler = new CycleProfiler(cpu);
+        assertEquals(2, cpu.getSubroutineListeners().length, "Both profilers listen to the cpu");
+        cpu.run(bus, 3 + 83 * 100);
+
+        assertEquals(200, profiler.getCalls(0x0300), "The cycle profiler sees every call");
+        assertEquals(6400, profiler.getInclusiveCycles(0x0300), "The cycle profiler counts every cycle");
+        assertTrue(sampling.getSelfSamples(0x0300) > 0 && sampling.getSelfSamples(0x0400) > 0, "The sampling profiler keeps its call stack");
+        assertEquals(0, sampling.getDepth(), "Every call returned on the sampling profiler");
+
+        profiler.detach();
+        assertEquals(1, cpu.getSubroutineListeners().length, "Detaching removes only that profiler");
+        long samples = sampling.getSelfSamples(0x0300);
+        cpu.run(bus, 83 * 100);
+        assertEquals(200, profiler.getCalls(0x0300), "A detached profiler counts nothing");
+        assertTrue(sampling.getSelfSamples(0x0300) > samples, "The other profiler keeps running");
+    }
+
+    @Test
+    public void recursionTest() {
+        CycleProfiler profiler = new CycleProfiler(cpu);
+        write(0x0200, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+
+        profiler.onCall(cpu, 0x1000);
+        cpu.run(bus, 10);
+        profiler.onCall(cpu, 0x1000);
+        cpu.run(bus, 10);
+        profiler.onReturn(cpu);
+        cpu.run(bus, 10);
+        profiler.onReturn(cpu);
+
+        assertEquals(2, profiler.getCalls(0x1000), "Both calls are counted");
+        assertEquals(36, profiler.getInclusiveCycles(0x1000), "Recursive calls are counted once inclusively");
+        assertEquals(36, profiler.getExclusiveCycles(0x1000), "Exclusive cycles add up to the outer call");
+        assertEquals(16, profiler.getMinCycles(0x1000), "The inner call is the shortest");
+        assertEquals(36, profiler.getMaxCycles(0x1000), "The outer call is the longest");
+        assertEquals(26.0, profiler.getMeanCycles(0x1000), "The mean of both calls");
+    }
+
+    @Test
+    public void stallTest() {
+        CycleProfiler profiler = new CycleProfiler(cpu);
+        cpu.run(bus, 3 + 6);
+        cpu.stall(1000);
+        cpu.run(bus, 2000);
+
+        assertEquals(1032, profiler.getMaxCycles(0x0300), "Stalled cycles are counted against the running subroutine");
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.io.IOException;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.devices.MemoryDevice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeviceProfilerTest {
+    private static final int SLOW = 0xD000;
+
+    private CPU6502 cpu;
+    private Bus bus;
+    private MemoryDevice ram;
+    private MemoryDevice rom;
+    private SlowDevice slow;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        cpu.reset();
+        bus = new Bus();
+        ram = new MemoryDevice(0x0000, 0x8000);
+        slow = new SlowDevice();
+        byte[] program = new byte[0x8000];
+        rom = new MemoryDevice(0x8000, program, true);
+        bus.attachDevice(ram);
+        bus.attachDevice(slow);
+        bus.attachDevice(rom);
+
+        int[] code = {CPU6502Instructions.LDA_ABS.getCode(), SLOW & 0xFF, SLOW >> 8, CPU6502Instructions.STA_ABS.getCode(), 0x00, 0x02,
+                CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x80};
+        for (int i = 0; i < code.length; i++) {
+            program[i] = (byte) code[i];
+        }
+        program[0x7FFC] = CPU6502Instructions.JMP_ABS.getCode();
+        program[0x7FFD] = 0x00;
+        program[0x7FFE] = (byte) 0x80;
+    }
+
+    @Test
+    public void countTest() {
+        Bus.BusDevice[] routes = new Bus.BusDevice[256];
+        for (int page = 0; page < 256; page++) {
+            routes[page] = bus.getPageDevice(page);
+        }
+
+        DeviceProfiler profiler = new DeviceProfiler(bus, 16);
+        profiler.start();
+        cpu.run(bus, 30_000);
+        profiler.stop();
+
+        DeviceProfiler.DeviceStats slowStats = profiler.getStats(slow);
+        assertEquals(slow.reads, slowStats.getReads(), "Every read of the device is counted");
+        assertEquals(slow.reads, profiler.getStats(ram).getWrites(), "Every write of the memory is counted");
+        assertEquals(0, profiler.getStats(ram).getReads(), "Devices are counted separately on shared pages");
+        assertEquals((byte) slow.reads, bus.readByte(0x0200), "The program runs through the profiler");
+        assertTrue(slowStats.getTimedAccesses() > 0 && slowStats.getTimedAccesses() < slowStats.getAccesses(), "Only some accesses are timed");
+        assertSame(slow, profiler.getWorstDevices().get(0).getDevice(), "The slow device is the worst offender");
+
+        for (int page = 0; page < 256; page++) {
+            assertSame(routes[page], bus.getPageDevice(page), "Stopping restores page " + page);
+        }
+        long reads = slowStats.getReads();
+        cpu.run(bus, 1000);
+        assertEquals(reads, slowStats.getReads(), "A stopped profiler counts nothing");
+    }
+
+    @Test
+    public void stackedStopTest() {
+        Bus.BusDevice original = bus.getPageDevice(0x02);
+        DeviceProfiler profiler = new DeviceProfiler(bus, 1);
+        profiler.start();
+        int[] writes = new int[1];
+        Watchpoints watchpoints = new Watchpoints(bus, (address, value, write) -> writes[0]++);
+        watchpoints.watchWrite(0x0200);
+
+        profiler.stop();
+        cpu.run(bus, 1000);
+        assertTrue(writes[0] > 0, "Stopping leaves proxies mapped over the profiler in place");
+        assertEquals(0, profiler.getStats(ram).getWrites(), "A stopped profiler counts nothing");
+
+        watchpoints.clear();
+        assertSame(original, bus.getPageDevice(0x02), "Removing both proxies restores the page");
+    }
+
+    @Test
+    public void blockTest() {
+        DeviceProfiler profiler = new DeviceProfiler(bus, 1);
+        profiler.start();
+        bus.writeBytes(0x1000, new byte[]{1, 2, 3, 4}, 0, 4);
+        byte[] read = new byte[0x200];
+        bus.readBytes(0x1000, read, 0, read.length);
+        profiler.stop();
+
+        assertEquals(3, read[2], "Block transfers reach the device");
+        assertEquals(1, profiler.getStats(ram).getWrites(), "A block write in one page is one access");
+        assertEquals(2, profiler.getStats(ram).getReads(), "A block read is one access per page");
+        assertEquals(3, profiler.getStats(ram).getTimedAccesses(), "Every access is timed");
+        assertNull(profiler.getStats(new MemoryDevice(0, 1)), "Unattached devices have no statistics");
+    }
+
+    @Test
+    public void reportTest() throws IOException {
+        DeviceProfiler profiler = new DeviceProfiler(bus, 1);
+        profiler.start();
+        cpu.run(bus, 1000);
+
+        StringBuilder out = new StringBuilder();
+        profiler.writeReport(out);
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(4, lines.length, "The report has a header and one line per accessed device");
+        assertTrue(lines[1].endsWith(slow.toString()), "The worst offender is first");
+
+        profiler.reset();
+        assertEquals(0, profiler.getStats(slow).getAccesses(), "Resetting removes the statistics");
+        assertThrows(IllegalArgumentException.class, () -> new DeviceProfiler(bus, 0), "The sample interval must be positive");
+    }
+
+    private static class SlowDevice implements Bus.BusDevice {
+        private int reads;
+
+        @Override
+        public byte readValue(int location) {
+            long end = System.nanoTime() + 100_000;
+            while (System.nanoTime() < end) {
+                // Waits like a device backed by slow host hardware
+            }
+            return (byte) ++reads;
+        }
+
+        @Override
+        public void writeValue(int location, byte value) {
+        }
+
+        @Override
+        public boolean isValidAddress(int location) {
+            return location == SLOW;
+        }
+
+        @Override
+        public String toString() {
+            return "slow";
+        }
+    }
+}
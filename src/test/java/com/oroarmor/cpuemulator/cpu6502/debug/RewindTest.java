@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RewindTest {
+    private Machine machine;
+    private List<byte[]> history;
+
+    @BeforeEach
+    public void reset() {
+        Bus bus = new TestBus();
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0x00);
+        bus.writeByte(0xFFFE, (byte) 0x02);
+        bus.writeByte(0x0200, CPU6502Instructions.INC_ZP.getCode());
+        bus.writeByte(0x0201, (byte) 0x10);
+        bus.writeByte(0x0202, CPU6502Instructions.SEC.getCode());
+        bus.writeByte(0x0203, CPU6502Instructions.LDA_ZP.getCode());
+        bus.writeByte(0x0204, (byte) 0x10);
+        bus.writeByte(0x0205, CPU6502Instructions.SEC.getCode());
+        bus.writeByte(0x0206, CPU6502Instructions.STA_ABS.getCode());
+        bus.writeByte(0x0207, (byte) 0x00);
+        bus.writeByte(0x0208, (byte) 0x30);
+        bus.writeByte(0x0209, CPU6502Instructions.SEC.getCode());
+        bus.writeByte(0x020A, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0x020B, (byte) 0x00);
+        bus.writeByte(0x020C, (byte) 0x02);
+        machine = new Machine(new CPU6502(), bus);
+        history = new ArrayList<>();
+    }
+
+    /**
+     * The cpu state followed by the memory the program writes
+     */
+    private byte[] snapshot() {
+        ByteBuffer buffer = ByteBuffer.allocate(CPU6502.STATE_SIZE + 2);
+        machine.getCpu().saveState(buffer);
+        buffer.put(machine.getBus().readByte(0x10));
+        buffer.put(machine.getBus().readByte(0x3000));
+        return buffer.array();
+    }
+
+    /**
+     * Runs until the instruction, keeping a snapshot for every instruction boundary
+     */
+    private void record(Rewind rewind, long instructions) {
+        if (history.isEmpty()) {
+            history.add(snapshot());
+        }
+        while (rewind.getInstructionCount() < instructions) {
+            rewind.run(1);
+            if (machine.getCpu().isInstructionComplete()) {
+                history.add(snapshot());
+            }
+        }
+    }
+
+    @Test
+    public void stepBackTest() {
+        Rewind rewind = new Rewind(machine, 50, 1 << 16);
+        record(rewind, 500);
+
+        for (int count : new int[]{1, 7, 100, 250}) {
+            rewind.stepBack(count);
+            int instruction = (int) rewind.getInstructionCount();
+            assertEquals(500 - count, instruction, "Stepping back " + count + " goes to the right instruction");
+            assertArrayEquals(history.get(instruction), snapshot(), "Stepping back " + count + " restores the cpu and memory");
+
+            history.subList(instruction + 1, history.size()).clear();
+            record(rewind, 500);
+        }
+    }
+
+    @Test
+    public void budgetTest() {
+        Rewind rewind = new Rewind(machine, 20, 2048);
+        record(rewind, 2000);
+
+        assertTrue(rewind.getRecordedInstructions() < 2000, "Old keyframes are dropped to stay in the budget");
+        assertTrue(rewind.getRecordedInstructions() > 0, "Recent instructions are kept");
+        assertThrows(IllegalArgumentException.class, () -> rewind.stepBack(2000), "Dropped instructions can not be reached");
+
+        rewind.stepBack(rewind.getRecordedInstructions());
+        assertEquals(1, rewind.getKeyframeCount(), "Going back to the oldest keyframe drops the newer ones");
+    }
+
+    @Test
+    public void untrackedTest() {
+        Rewind rewind = new Rewind(machine, 50, 1 << 16);
+        rewind.run(100);
+        machine.run(1000);
+        assertThrows(IllegalStateException.class, () -> rewind.stepBack(1), "Stepping back over cycles run outside of the recording");
+        assertThrows(IllegalStateException.class, () -> rewind.run(1), "Running after cycles run outside of the recording");
+        assertEquals(1100, machine.getCpu().getCycles(), "The cpu is left where it was run to");
+    }
+
+    @Test
+    public void detachTest() {
+        Bus.BusDevice original = machine.getBus().getPageDevice(0x30);
+        Rewind rewind = new Rewind(machine, 50, 1 << 16);
+        rewind.run(1000);
+        assertTrue(rewind.getJournalSize() > 0, "Writes are journaled");
+
+        rewind.detach();
+        assertEquals(original, machine.getBus().getPageDevice(0x30), "Detaching restores the pages");
+    }
+
+    @Test
+    public void stackedDetachTest() {
+        Bus bus = machine.getBus();
+        Bus.BusDevice original = bus.getPageDevice(0x30);
+        Rewind rewind = new Rewind(machine, 50, 1 << 16);
+        List<Integer> writes = new ArrayList<>();
+        Watchpoints watchpoints = new Watchpoints(bus, (address, value, write) -> writes.add(address));
+        watchpoints.watchWrite(0x3000);
+
+        rewind.detach();
+        machine.run(100);
+        assertTrue(writes.size() > 0, "Detaching leaves proxies mapped over the rewind in place");
+        assertEquals(0, rewind.getJournalSize(), "Detached pages are not journaled");
+
+        watchpoints.clear();
+        assertEquals(original, bus.getPageDevice(0x30), "Removing both proxies restores the page");
+    }
+}
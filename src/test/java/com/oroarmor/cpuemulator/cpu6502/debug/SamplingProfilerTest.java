@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.io.IOException;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SamplingProfilerTest {
+    private static final int ITERATION_CYCLES = 83;
+
+    private CPU6502 cpu;
+    private Bus bus;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        bus = new TestBus();
+        cpu.reset();
+
+        write(0xFFFC, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        write(0x0200, CPU6502Instructions.JSR.getCode(), 0x00, 0x03, CPU6502Instructions.JSR.getCode(), 0x00, 0x04, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x02);
+        for (int i = 0; i < 10; i++) {
+            write(0x0300 + i, CPU6502Instructions.SEC.getCode());
+        }
+        write(0x030A, CPU6502Instructions.RTS.getCode());
+        write(0x0400, CPU6502Instructions.JSR.getCode(), 0x00, 0x03, CPU6502Instructions.CLC.getCode(), CPU6502Instructions.CLC.getCode(), CPU6502Instructions.RTS.getCode());
+        write(0x0500, CPU6502Instructions.JSR.getCode(), 0x00, 0x06);
+        write(0x0600, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x06);
+    }
+
+    private void write(int address, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            bus.writeByte(address + i, (byte) values[i]);
+        }
+    }
+
+    @Test
+    public void collapsedStackTest() throws IOException {
+        SamplingProfiler profiler = new SamplingProfiler(cpu, 1);
+        cpu.run(bus, 3 + ITERATION_CYCLES * 100);
+
+        StringBuilder out = new StringBuilder();
+        profiler.writeCollapsedStacks(out);
+        assertEquals("root 1503\nroot;$0300 2600\nroot;$0400 1600\nroot;$0400;$0300 2600\n", out.toString(), "Every cycle is counted against the routine running it");
+        assertEquals(5200, profiler.getSelfSamples(0x0300), "Self samples add up every caller");
+        assertEquals(3 + ITERATION_CYCLES * 100, profiler.getTotalSamples(), "Every cycle is sampled");
+        assertEquals(0, profiler.getDepth(), "The shadow stack returns to the root");
+
+        out.setLength(0);
+        profiler.writeCollapsedStacks(out, address -> address == 0x0300 ? "delay" : "twice");
+        assertEquals("root 1503\nroot;delay 2600\nroot;twice 1600\nroot;twice;delay 2600\n", out.toString(), "Routines can be named");
+    }
+
+    @Test
+    public void intervalTest() {
+        SamplingProfiler ticked = new SamplingProfiler(cpu, 7);
+        for (int i = 0; i < 70_000; i++) {
+            cpu.tick(bus);
+        }
+
+        CPU6502 running = new CPU6502();
+        running.reset();
+        SamplingProfiler ran = new SamplingProfiler(running, 7);
+        running.run(bus, 70_000);
+
+        assertEquals(10_000, ticked.getTotalSamples(), "Ticking samples every interval");
+        assertEquals(10_000, ran.getTotalSamples(), "Running samples every interval");
+        for (int routine : new int[]{0x0300, 0x0400}) {
+            assertEquals(ticked.getSelfSamples(routine), ran.getSelfSamples(routine), "Ticking and running sample the same routines");
+        }
+
+        ticked.detach();
+        cpu.run(bus, 1000);
+        assertEquals(10_000, ticked.getTotalSamples(), "A detached profiler is not sampled");
+    }
+
+    @Test
+    public void skippedCyclesTest() {
+        write(0xFFFD, 0x00, 0x05);
+        cpu.setIdleLoopSkipping(true);
+        SamplingProfiler profiler = new SamplingProfiler(cpu, 10);
+        cpu.run(bus, 100_000);
+        cpu.stall(1000);
+        cpu.step(bus);
+
+        assertEquals(cpu.getCycles() / 10, profiler.getTotalSamples(), "Skipped and stalled cycles are sampled");
+        assertEquals(profiler.getTotalSamples(), profiler.getSelfSamples(0x0600), "The idle routine holds the samples");
+        assertEquals(profiler.getTotalSamples(), profiler.getSamplesAt(0x0600) + profiler.getSamplesAt(0x0601) + profiler.getSamplesAt(0x0602) + profiler.getSamplesAt(0x0603),
+                "The idle loop's program counter holds the samples");
+    }
+
+    @Test
+    public void unmatchedReturnTest() {
+        SamplingProfiler profiler = new SamplingProfiler(cpu, 1);
+        profiler.onReturn(cpu);
+        assertEquals(0, profiler.getDepth(), "A return without a call stays at the root");
+
+        for (int i = 0; i < SamplingProfiler.MAX_DEPTH + 10; i++) {
+            profiler.onCall(cpu, 0x1000 + i);
+        }
+        assertEquals(SamplingProfiler.MAX_DEPTH + 10, profiler.getDepth(), "Calls past the deepest stack are counted");
+        for (int i = 0; i < 10; i++) {
+            profiler.onReturn(cpu);
+        }
+        profiler.sample(cpu);
+        assertEquals(1, profiler.getSelfSamples(0x1000 + SamplingProfiler.MAX_DEPTH - 1), "Untracked calls return to the deepest tracked routine");
+    }
+}
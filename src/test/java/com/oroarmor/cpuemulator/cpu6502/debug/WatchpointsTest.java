@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.debug;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WatchpointsTest {
+    private Bus bus;
+    private List<String> accesses;
+    private Watchpoints watchpoints;
+
+    @BeforeEach
+    public void reset() {
+        bus = new TestBus();
+        accesses = new ArrayList<>();
+        watchpoints = new Watchpoints(bus, (address, value, write) -> accesses.add(String.format("%s %04X %02X", write ? "W" : "R", address, value)));
+    }
+
+    @Test
+    public void watchTest() {
+        watchpoints.watchRead(0x1234);
+        watchpoints.watchWrite(0x1235);
+
+        bus.writeByte(0x1234, (byte) 0x11);
+        bus.writeByte(0x1235, (byte) 0x22);
+        bus.readByte(0x1234);
+        bus.readByte(0x1235);
+        bus.readByte(0x1236);
+
+        assertEquals(2, accesses.size(), "Only watched accesses are reported");
+        assertEquals("W 1235 22", accesses.get(0), "Writes report the value written");
+        assertEquals("R 1234 11", accesses.get(1), "Reads report the value read");
+        assertEquals((byte) 0x22, bus.readByte(0x1235), "Accesses reach the device");
+    }
+
+    @Test
+    public void cpuTest() {
+        CPU6502 cpu = new CPU6502();
+        bus.writeByte(0xFFFC, CPU6502Instructions.STA_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0x00);
+        bus.writeByte(0xFFFE, (byte) 0x30);
+        cpu.setAccumulator((byte) 0x5A);
+        watchpoints.watchWrite(0x3000);
+
+        for (int i = 0; i < CPU6502Instructions.STA_ABS.getMaxCycles(); i++) {
+            cpu.tick(bus);
+        }
+
+        assertEquals(1, accesses.size(), "The store is reported");
+        assertEquals("W 3000 5A", accesses.get(0), "The store writes the accumulator");
+    }
+
+    @Test
+    public void restoreTest() {
+        Bus.BusDevice original = bus.getPageDevice(0x12);
+
+        watchpoints.watchRead(0x1200);
+        watchpoints.watchRead(0x12FF);
+        watchpoints.watchWrite(0x12FF);
+        assertEquals(3, watchpoints.size(), "Reads and writes are counted separately");
+        assertTrue(original != bus.getPageDevice(0x12), "Watched pages are routed to a proxy");
+        assertSame(bus.getPageDevice(0x13), bus.getPageDevice(0x13), "Other pages keep their route");
+
+        watchpoints.remove(0x1200);
+        assertTrue(original != bus.getPageDevice(0x12), "The page stays proxied while it has watchpoints");
+        assertFalse(watchpoints.isReadWatched(0x1200), "The removed watchpoint is gone");
+        assertTrue(watchpoints.isWriteWatched(0x12FF), "The other watchpoints stay");
+
+        watchpoints.remove(0x12FF);
+        assertSame(original, bus.getPageDevice(0x12), "Removing the last watchpoint restores the page");
+        assertEquals(0, watchpoints.size(), "No watchpoints are left");
+    }
+
+    @Test
+    public void stackedTest() {
+        Bus.BusDevice original = bus.getPageDevice(0x12);
+        List<String> outerAccesses = new ArrayList<>();
+        Watchpoints outer = new Watchpoints(bus, (address, value, write) -> outerAccesses.add(String.format("%s %04X %02X", write ? "W" : "R", address, value)));
+        watchpoints.watchWrite(0x1200);
+        outer.watchWrite(0x1200);
+
+        watchpoints.clear();
+        bus.writeByte(0x1200, (byte) 0x33);
+        assertEquals(0, accesses.size(), "The removed proxy is unlinked from under the other");
+        assertEquals(1, outerAccesses.size(), "The proxy on top keeps its watchpoints");
+        assertEquals((byte) 0x33, bus.readByte(0x1200), "Accesses still reach the device");
+
+        outer.remove(0x1200);
+        assertSame(original, bus.getPageDevice(0x12), "Removing both proxies restores the page");
+    }
+}
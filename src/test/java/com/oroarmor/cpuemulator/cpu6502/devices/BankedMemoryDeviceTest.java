@@ -0,0 +1,177 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.debug.Watchpoints;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BankedMemoryDeviceTest {
+    private static final int BANK_SIZE = 0x4000;
+    private static final int MAPPER_REGISTER = 0x6000;
+
+    private Bus bus;
+    private MemoryDevice ram;
+    private BankedMemoryDevice rom;
+    private BankedMemoryDevice.Window switchable;
+
+    @BeforeEach
+    public void reset() {
+        byte[] image = new byte[16 * BANK_SIZE];
+        for (int bank = 0; bank < 16; bank++) {
+            Arrays.fill(image, bank * BANK_SIZE, (bank + 1) * BANK_SIZE, (byte) (0xA0 | bank));
+            image[bank * BANK_SIZE] = (byte) bank;
+        }
+
+        bus = new Bus();
+        ram = new MemoryDevice(0x0000, 0x2000);
+        rom = new BankedMemoryDevice(image, BANK_SIZE, true);
+        bus.attachDevice(ram);
+        bus.attachDevice(new Bus.BusDevice() {
+            @Override
+            public byte readValue(int location) {
+                return 0;
+            }
+
+            @Override
+            public void writeValue(int location, byte value) {
+                switchable.selectBank(value & 0x0F);
+            }
+
+            @Override
+            public boolean isValidAddress(int location) {
+                return location == MAPPER_REGISTER;
+            }
+        });
+        switchable = rom.map(bus, 0x8000, 0);
+        rom.map(bus, 0xC000, 15);
+    }
+
+    private void writeFixedBank(int address, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            rom.getMemory()[15 * BANK_SIZE + address - 0xC000 + i] = (byte) values[i];
+        }
+    }
+
+    @Test
+    public void mapperRegisterTest() {
+        writeFixedBank(0xFFFC, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0xC0);
+        writeFixedBank(0xC000,
+                CPU6502Instructions.LDA_IMM.getCode(), 0x05,
+                CPU6502Instructions.STA_ABS.getCode(), MAPPER_REGISTER & 0xFF, MAPPER_REGISTER >> 8,
+                CPU6502Instructions.LDA_ABS.getCode(), 0x00, 0x80,
+                CPU6502Instructions.STA_ZP.getCode(), 0x10,
+                CPU6502Instructions.LDA_IMM.getCode(), 0x09,
+                CPU6502Instructions.STA_ABS.getCode(), MAPPER_REGISTER & 0xFF, MAPPER_REGISTER >> 8,
+                CPU6502Instructions.LDA_ABS.getCode(), 0x00, 0x80,
+                CPU6502Instructions.STA_ZP.getCode(), 0x11);
+
+        CPU6502 cpu = new CPU6502();
+        for (int i = 0; i < 9; i++) {
+            cpu.step(bus);
+        }
+        assertEquals(5, ram.getMemory()[0x10], "The program reads bank 5 after selecting it");
+        assertEquals(9, ram.getMemory()[0x11], "The program reads bank 9 after selecting it");
+        assertEquals(9, switchable.getBank(), "The window shows the last selected bank");
+    }
+
+    @Test
+    public void readWriteTest() {
+        switchable.selectBank(3);
+        assertEquals(3, bus.readByte(0x8000), "A window reads the start of its bank");
+        assertEquals((byte) 0xA3, bus.readByte(0xBFFF), "A window reads the end of its bank");
+        bus.writeByte(0x8000, (byte) 0x77);
+        assertEquals(3, bus.readByte(0x8000), "ROM ignores writes");
+
+        byte[] block = new byte[0x200];
+        bus.readBytes(0xBF00, block, 0, block.length);
+        byte[] expected = new byte[0x200];
+        Arrays.fill(expected, 0, 0x100, (byte) 0xA3);
+        Arrays.fill(expected, 0x100, 0x200, (byte) 0xAF);
+        expected[0x100] = 15;
+        assertArrayEquals(expected, block, "A block read crosses from one window into the next");
+
+        BankedMemoryDevice banked = new BankedMemoryDevice(new byte[4 * 0x1000], 0x1000, false);
+        BankedMemoryDevice.Window window = banked.map(bus, 0x2000, 0);
+        bus.writeByte(0x2345, (byte) 0x11);
+        window.selectBank(2);
+        bus.writeByte(0x2345, (byte) 0x22);
+        window.selectBank(0);
+        assertEquals(0x11, bus.readByte(0x2345), "RAM banks keep their values across switches");
+        window.selectBank(2);
+        assertEquals(0x22, bus.readByte(0x2345), "Each RAM bank has its own values");
+        assertEquals(0x22, banked.getMemory()[2 * 0x1000 + 0x345], "A bank is a slice of the backing array");
+    }
+
+    @Test
+    public void watchpointTest() {
+        List<Byte> reads = new ArrayList<>();
+        Watchpoints watchpoints = new Watchpoints(bus, (address, value, write) -> reads.add(value));
+        watchpoints.watchRead(0x8000);
+        bus.readByte(0x8000);
+        switchable.selectBank(7);
+        bus.readByte(0x8000);
+        watchpoints.clear();
+        switchable.selectBank(8);
+        assertEquals(List.of((byte) 0, (byte) 7), reads, "Watchpoints over a window see the selected bank");
+        assertEquals(8, bus.readByte(0x8000), "The window is routed to its views again after the watchpoints are removed");
+    }
+
+    @Test
+    public void mapUnderWatchpointTest() {
+        BankedMemoryDevice banked = new BankedMemoryDevice(new byte[4 * 0x1000], 0x1000, false);
+        List<Integer> writes = new ArrayList<>();
+        Watchpoints watchpoints = new Watchpoints(bus, (address, value, write) -> writes.add(address));
+        watchpoints.watchWrite(0x2010);
+        BankedMemoryDevice.Window window = banked.map(bus, 0x2000, 1);
+        bus.writeByte(0x2010, (byte) 0x55);
+        assertEquals(List.of(0x2010), writes, "A watchpoint set before the window is mapped still fires");
+        assertEquals(0x55, banked.getMemory()[0x1010], "Writes through the watchpoint reach the window");
+
+        watchpoints.clear();
+        window.selectBank(1);
+        bus.writeByte(0x2010, (byte) 0x66);
+        assertEquals(1, writes.size(), "The removed watchpoint does not fire");
+        assertEquals(0x66, bus.readByte(0x2010), "The page is routed to the window after the watchpoint is removed");
+    }
+
+    @Test
+    public void invalidTest() {
+        assertThrows(IllegalArgumentException.class, () -> switchable.selectBank(16), "Selecting a bank past the end");
+        assertThrows(IllegalArgumentException.class, () -> new BankedMemoryDevice(new byte[0x1000], 0x180, false), "Banks must be whole pages");
+        assertThrows(IllegalArgumentException.class, () -> rom.map(bus, 0xC100, 0), "Windows must fit in the bus");
+    }
+}
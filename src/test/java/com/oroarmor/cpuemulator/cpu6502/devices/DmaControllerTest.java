@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DmaControllerTest {
+    private static final int DMA_REGISTER = 0x4014;
+
+    private CPU6502 cpu;
+    private Bus bus;
+    private MemoryDevice ram;
+    private MemoryDevice sprites;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        ram = new MemoryDevice(0x0000, 0x4000);
+        sprites = new MemoryDevice(0x0000, 0x100);
+        bus = createBus(cpu, ram, sprites);
+    }
+
+    private static Bus createBus(CPU6502 cpu, MemoryDevice ram, MemoryDevice sprites) {
+        Bus bus = new Bus();
+        bus.attachDevice(ram);
+        bus.attachDevice(new DmaController(DMA_REGISTER, bus, cpu, sprites, 0x0000));
+        bus.attachDevice(new MemoryDevice(0x8000, 0x8000));
+
+        for (int i = 0; i < 0x100; i++) {
+            bus.writeByte(0x0300 + i, (byte) (i ^ 0x5A));
+        }
+        bus.writeByte(0x0010, (byte) 0x03);
+        writeProgram(bus, 0xFFFC, CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x80);
+        return bus;
+    }
+
+    private static void writeProgram(Bus bus, int address, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            bus.writeByte(address + i, (byte) values[i]);
+        }
+    }
+
+    private void checkStall(int stallCycles, String testName) {
+        cpu.step(bus);
+        cpu.step(bus);
+        assertEquals(4, cpu.step(bus), testName + " the store runs normally");
+        assertEquals(stallCycles, cpu.getStallCycles(), testName + " stalls the cpu");
+        assertEquals(stallCycles + 2, cpu.step(bus), testName + " runs the stall before the next instruction");
+        assertArrayEquals(Arrays.copyOfRange(ram.getMemory(), 0x0300, 0x0400), sprites.getMemory(), testName + " copies the page");
+    }
+
+    @Test
+    public void oddCycleTest() {
+        writeProgram(bus, 0x8000, CPU6502Instructions.LDA_IMM.getCode(), 0x03, CPU6502Instructions.STA_ABS.getCode(), 0x14, 0x40, CPU6502Instructions.SEC.getCode());
+        checkStall(DmaController.STALL_CYCLES + 1, "A write on an odd cycle");
+        assertEquals(9 + 514 + 2, cpu.getCycles(), "A write on an odd cycle steals 514 cycles");
+    }
+
+    @Test
+    public void evenCycleTest() {
+        writeProgram(bus, 0x8000, CPU6502Instructions.LDA_ZP.getCode(), 0x10, CPU6502Instructions.STA_ABS.getCode(), 0x14, 0x40, CPU6502Instructions.SEC.getCode());
+        checkStall(DmaController.STALL_CYCLES, "A write on an even cycle");
+        assertEquals(10 + 513 + 2, cpu.getCycles(), "A write on an even cycle steals 513 cycles");
+    }
+
+    @Test
+    public void runMatchesTickTest() {
+        writeProgram(bus, 0x8000, CPU6502Instructions.LDA_IMM.getCode(), 0x03, CPU6502Instructions.STA_ABS.getCode(), 0x14, 0x40,
+                CPU6502Instructions.SEC.getCode(), CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x80);
+        CPU6502 ticked = new CPU6502();
+        Bus tickedBus = createBus(ticked, new MemoryDevice(0x0000, 0x4000), new MemoryDevice(0x0000, 0x100));
+        writeProgram(tickedBus, 0x8000, CPU6502Instructions.LDA_IMM.getCode(), 0x03, CPU6502Instructions.STA_ABS.getCode(), 0x14, 0x40,
+                CPU6502Instructions.SEC.getCode(), CPU6502Instructions.JMP_ABS.getCode(), 0x00, 0x80);
+        for (int chunk : new int[]{7, 100, 513, 5000}) {
+            cpu.reset();
+            ticked.reset();
+            for (int cycles = 0; cycles < 5000; cycles += chunk) {
+                assertEquals(chunk, cpu.run(bus, chunk), "Stalled cycles count as run in batches of " + chunk);
+                for (int i = 0; i < chunk; i++) {
+                    ticked.tick(tickedBus);
+                }
+                assertArrayEquals(state(ticked), state(cpu), "Running in batches of " + chunk + " matches ticking");
+            }
+        }
+    }
+
+    @Test
+    public void byteTargetTest() {
+        byte[] received = new byte[0x100];
+        DmaController byteDma = new DmaController(DMA_REGISTER, bus, cpu, new Bus.BusDevice() {
+            @Override
+            public byte readValue(int location) {
+                return 0;
+            }
+
+            @Override
+            public void writeValue(int location, byte value) {
+                received[location - 0x2000] = value;
+            }
+
+            @Override
+            public boolean isValidAddress(int location) {
+                return false;
+            }
+        }, 0x2000);
+        byteDma.writeValue(DMA_REGISTER, (byte) 0x03);
+        assertArrayEquals(Arrays.copyOfRange(ram.getMemory(), 0x0300, 0x0400), received, "A target that is not backed by an array gets the page");
+        assertEquals(1, byteDma.getTransfers(), "The transfer is counted");
+    }
+
+    private static byte[] state(CPU6502 cpu) {
+        ByteBuffer buffer = ByteBuffer.allocate(CPU6502.STATE_SIZE);
+        cpu.saveState(buffer);
+        return buffer.array();
+    }
+}
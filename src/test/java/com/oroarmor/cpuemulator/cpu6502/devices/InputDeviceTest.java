@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InputDeviceTest {
+    private long cycle;
+    private InputDevice device;
+    private Bus bus;
+
+    @BeforeEach
+    public void reset() {
+        cycle = 0;
+        device = new InputDevice(0xD010, 4, () -> cycle);
+        bus = new Bus();
+        bus.attachDevice(device);
+    }
+
+    @Test
+    public void timestampTest() {
+        device.push(10, (byte) 0x41);
+        device.push(20, (byte) 0x42);
+
+        assertEquals(0, bus.readByte(0xD010), "Events are not visible before their cycle");
+        assertEquals(0, bus.readByte(0xD011), "Reading data without an event returns the last value");
+
+        cycle = 10;
+        assertEquals(InputDevice.READY, bus.readByte(0xD010), "Events are visible at their cycle");
+        assertEquals(InputDevice.READY, bus.readByte(0xD010), "Reading the status does not remove the event");
+        assertEquals(0x41, bus.readByte(0xD011), "Reading data removes the event");
+        assertEquals(0, bus.readByte(0xD010), "The next event is not visible yet");
+        assertEquals(0x41, bus.readByte(0xD011), "The data register keeps the last value");
+
+        cycle = 25;
+        assertEquals(0x42, bus.readByte(0xD011), "Late reads see the event");
+    }
+
+    @Test
+    public void queueTest() {
+        InputQueue queue = new InputQueue(3);
+        assertEquals(4, queue.getCapacity(), "The capacity is rounded up to a power of two");
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(0, (byte) i), "The queue accepts events until it is full");
+            }
+            assertFalse(queue.offer(0, (byte) 4), "A full queue rejects events");
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i, queue.poll(0), "Events come out in order after wrapping");
+            }
+            assertEquals(-1, queue.poll(0), "An empty queue has no events");
+        }
+
+        queue.offer(50, (byte) 1);
+        queue.offer(10, (byte) 2);
+        assertEquals(-1, queue.poll(49), "Earlier timestamps wait for the events before them");
+        assertEquals(1, queue.poll(50), "The first event is visible at its cycle");
+        assertEquals(2, queue.poll(50), "The moved event is visible with the event before it");
+    }
+
+    @Test
+    public void hostThreadTest() throws InterruptedException {
+        int events = 100000;
+        InputQueue queue = new InputQueue(64);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < events; i++) {
+                while (!queue.offer(i, (byte) i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < events; i++) {
+            int value;
+            while ((value = queue.poll(Long.MAX_VALUE)) == -1) {
+                Thread.yield();
+            }
+            assertEquals(i & 0xFF, value, "Events from another thread arrive in order");
+        }
+        producer.join();
+        assertEquals(0, queue.size(), "Every event is consumed");
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.devices;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import com.oroarmor.cpuemulator.cpu6502.debug.Watchpoints;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordReplayTest {
+    private CPU6502 cpu;
+    private Bus bus;
+    private List<Byte> output;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        output = new ArrayList<>();
+    }
+
+    /**
+     * Creates a bus with a program that copies the input data register to $3000 in a loop
+     */
+    private void createBus(Bus.BusDevice input) {
+        Bus memory = new TestBus();
+        memory.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        memory.writeByte(0xFFFD, (byte) 0x00);
+        memory.writeByte(0xFFFE, (byte) 0x02);
+        memory.writeByte(0x0200, CPU6502Instructions.LDA_ABS.getCode());
+        memory.writeByte(0x0201, (byte) 0x11);
+        memory.writeByte(0x0202, (byte) 0xD0);
+        memory.writeByte(0x0203, CPU6502Instructions.SEC.getCode());
+        memory.writeByte(0x0204, CPU6502Instructions.STA_ABS.getCode());
+        memory.writeByte(0x0205, (byte) 0x00);
+        memory.writeByte(0x0206, (byte) 0x30);
+        memory.writeByte(0x0207, CPU6502Instructions.SEC.getCode());
+        memory.writeByte(0x0208, CPU6502Instructions.JMP_ABS.getCode());
+        memory.writeByte(0x0209, (byte) 0x00);
+        memory.writeByte(0x020A, (byte) 0x02);
+
+        bus = new Bus();
+        bus.attachDevice(input);
+        bus.attachDevice(new SharedBusDevice(memory, 0x0000, 0xFFFF));
+        new Watchpoints(bus, (address, value, write) -> output.add(value)).watchWrite(0x3000);
+    }
+
+    @Test
+    public void recordReplayTest() throws IOException {
+        InputDevice input = new InputDevice(0xD010, 64, cpu::getCycles);
+        for (int i = 0; i < 40; i++) {
+            input.push(i * 37L, (byte) (i * 7));
+        }
+
+        ByteArrayOutputStream journal = new ByteArrayOutputStream();
+        RecordingDevice recording = new RecordingDevice(input, cpu::getCycles, journal);
+        createBus(recording);
+        cpu.run(bus, 2000);
+        recording.close();
+        List<Byte> recordedOutput = new ArrayList<>(output);
+
+        assertTrue(recording.getReads() > 100, "Every read is recorded");
+        assertTrue(journal.size() < recording.getReads() * 4, "Entries are compact");
+
+        reset();
+        ReplayDevice replay = new ReplayDevice(new InputDevice(0xD010, 1, cpu::getCycles), cpu::getCycles, new ByteArrayInputStream(journal.toByteArray()));
+        createBus(replay);
+        cpu.run(bus, 2000);
+
+        assertEquals(recording.getReads(), replay.getReads(), "Every read is replayed");
+        assertEquals(recordedOutput, output, "The replayed run matches the recorded run");
+    }
+
+    @Test
+    public void divergenceTest() throws IOException {
+        ByteArrayOutputStream journal = new ByteArrayOutputStream();
+        long[] cycle = {10};
+        RecordingDevice recording = new RecordingDevice(new InputDevice(0xD010, 1, () -> 0), () -> cycle[0], journal);
+        recording.readValue(0xD011);
+        recording.close();
+
+        cycle[0] = 11;
+        ReplayDevice replay = new ReplayDevice(new InputDevice(0xD010, 1, () -> 0), () -> cycle[0], new ByteArrayInputStream(journal.toByteArray()));
+        assertThrows(IllegalStateException.class, () -> replay.readValue(0xD011), "Reads at a different cycle are detected");
+        assertThrows(IllegalArgumentException.class, () -> new ReplayDevice(new InputDevice(0xD010, 1, () -> 0), () -> 0, new ByteArrayInputStream(new byte[8])), "Other streams are rejected");
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.events;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import com.oroarmor.cpuemulator.cpu6502.debug.Rewind;
+import com.oroarmor.cpuemulator.cpu6502.devices.MemoryDevice;
+import com.oroarmor.cpuemulator.cpu6502.scheduling.MultiProcessorSystem;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EmulatorEventsTest {
+    private static final List<Class<? extends Event>> EVENTS = Arrays.asList(MachineRunEvent.class, FaultEvent.class, SnapshotEvent.class, RestoreEvent.class, PageTableEvent.class);
+
+    private CPU6502 cpu;
+    private TestBus bus;
+    private Machine machine;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        cpu.reset();
+        bus = new TestBus();
+        machine = new Machine(cpu, bus);
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0x00);
+        bus.writeByte(0xFFFE, (byte) 0x02);
+        bus.writeByte(0x0200, CPU6502Instructions.INX.getCode());
+        bus.writeByte(0x0201, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0x0202, (byte) 0x00);
+        bus.writeByte(0x0203, (byte) 0x02);
+    }
+
+    private List<RecordedEvent> record(Runnable action) throws IOException {
+        Path file = Files.createTempFile("cpuemulator", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (Class<? extends Event> event : EVENTS) {
+                recording.enable(event).withoutThreshold();
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("com.oroarmor.cpuemulator."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals("com.oroarmor.cpuemulator." + name)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void disabledByDefaultTest() {
+        for (Class<? extends Event> event : EVENTS) {
+            assertFalse(event.getAnnotation(Enabled.class).value(), event.getSimpleName() + " is disabled by default");
+            assertFalse(EventType.getEventType(event).isEnabled(), event.getSimpleName() + " is off without a recording");
+        }
+    }
+
+    @Test
+    public void runTest() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            machine.run(1000);
+            machine.run(500);
+        });
+
+        List<RecordedEvent> runs = named(events, "MachineRun");
+        assertEquals(2, runs.size(), "Every batch is recorded");
+        assertEquals(1000, runs.get(0).getLong("cycles"), "The cycles of the batch");
+        assertEquals(500, runs.get(1).getLong("requestedCycles"), "The requested cycles of the batch");
+        assertEquals(cpu.getInstructions(), runs.get(0).getLong("instructions") + runs.get(1).getLong("instructions"), "The instructions of both batches");
+    }
+
+    @Test
+    public void faultTest() throws IOException {
+        bus.writeByte(0x0201, (byte) 0xFF);
+        List<RecordedEvent> events = record(() -> assertThrows(UnsupportedOperationException.class, () -> machine.run(1000), "The fault is still thrown"));
+
+        List<RecordedEvent> faults = named(events, "Fault");
+        assertEquals(1, faults.size(), "The fault is recorded");
+        assertEquals(0x0201, faults.get(0).getInt("programCounter"), "The fault records where the cpu was");
+        assertTrue(faults.get(0).getString("message").contains("FF"), "The fault records the message");
+    }
+
+    @Test
+    public void lockstepTest() throws IOException {
+        MultiProcessorSystem system = new MultiProcessorSystem();
+        system.addProcessor(cpu, bus);
+        List<RecordedEvent> runs = named(record(() -> system.run(100)), "MachineRun");
+        assertEquals(100, runs.size(), "Every lockstep cycle is recorded");
+        assertEquals(100, runs.stream().mapToLong(event -> event.getLong("cycles")).sum(), "The cycles of every lockstep batch");
+
+        bus.writeByte(0x0201, (byte) 0xFF);
+        List<RecordedEvent> faults = named(record(() -> assertThrows(UnsupportedOperationException.class, () -> system.run(1000), "The fault is still thrown")), "Fault");
+        assertEquals(1, faults.size(), "A fault of a lockstep processor is recorded");
+        assertEquals(0x0201, faults.get(0).getInt("programCounter"), "The fault records where the cpu was");
+    }
+
+    @Test
+    public void rewindAndPageTableTest() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            Rewind rewind = new Rewind(machine, 100, 1 << 16);
+            rewind.run(1000);
+            rewind.stepBack(5);
+            bus.attachDevice(new MemoryDevice(0x4000, 0x100));
+        });
+
+        assertTrue(named(events, "Snapshot").size() >= 10, "Every keyframe is recorded");
+        List<RecordedEvent> restores = named(events, "Restore");
+        assertEquals(1, restores.size(), "Stepping back is recorded");
+        assertEquals(cpu.getCycles(), restores.get(0).getLong("cycle"), "The restore records the cycle it went back to");
+
+        List<RecordedEvent> invalidations = named(events, "PageTableInvalidation");
+        assertEquals(257, invalidations.size(), "Mapping every page and attaching a device are recorded");
+        assertEquals(256, invalidations.get(256).getInt("pages"), "Attaching a device throws away every page");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.instructions;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ArithmeticTests {
+    private CPU6502 cpu;
+    private Bus bus;
+
+    @BeforeEach
+    public void reset() {
+        cpu = new CPU6502();
+        bus = new TestBus();
+    }
+
+    private void checkImmediate(CPU6502Instructions instruction, boolean decimal, int accumulator, int operand, boolean carry, int expectedValue, int expectedFlags, String testName) {
+        cpu.reset();
+        cpu.setAccumulator((byte) accumulator);
+        cpu.getFlags().setFlag((byte) 0, carry);
+        cpu.getFlags().setFlag((byte) 3, decimal);
+        bus.writeByte(0xFFFC, instruction.getCode());
+        bus.writeByte(0xFFFD, (byte) operand);
+
+        cpu.tick(bus);
+        cpu.tick(bus);
+
+        assertEquals((byte) expectedValue, (byte) cpu.getAccumulator(), testName + " sets the accumulator");
+        assertEquals(expectedFlags, cpu.getFlags().toByte() & 0b11000011, testName + " sets the NVZC flags");
+        assertEquals(decimal, cpu.getFlags().getFlag((byte) 3), testName + " leaves the decimal flag alone");
+    }
+
+    @Test
+    public void addBinaryTests() {
+        checkImmediate(CPU6502Instructions.ADC_IMM, false, 0x01, 0x01, false, 0x02, 0b00000000, "ADC 1 + 1");
+        checkImmediate(CPU6502Instructions.ADC_IMM, false, 0x01, 0x01, true, 0x03, 0b00000000, "ADC 1 + 1 + C");
+        checkImmediate(CPU6502Instructions.ADC_IMM, false, 0x7F, 0x01, false, 0x80, 0b11000000, "ADC overflows into the sign bit");
+        checkImmediate(CPU6502Instructions.ADC_IMM, false, 0xFF, 0x01, false, 0x00, 0b00000011, "ADC wraps and carries");
+        checkImmediate(CPU6502Instructions.ADC_IMM, false, 0x80, 0x80, false, 0x00, 0b01000011, "ADC overflows negative numbers");
+    }
+
+    @Test
+    public void subtractBinaryTests() {
+        checkImmediate(CPU6502Instructions.SBC_IMM, false, 0x05, 0x03, true, 0x02, 0b00000001, "SBC 5 - 3");
+        checkImmediate(CPU6502Instructions.SBC_IMM, false, 0x05, 0x03, false, 0x01, 0b00000001, "SBC 5 - 3 - borrow");
+        checkImmediate(CPU6502Instructions.SBC_IMM, false, 0x03, 0x05, true, 0xFE, 0b10000000, "SBC borrows");
+        checkImmediate(CPU6502Instructions.SBC_IMM, false, 0x80, 0x01, true, 0x7F, 0b01000001, "SBC overflows");
+        checkImmediate(CPU6502Instructions.SBC_IMM, false, 0x10, 0x10, true, 0x00, 0b00000011, "SBC to zero");
+    }
+
+    @Test
+    public void addDecimalTests() {
+        checkImmediate(CPU6502Instructions.ADC_IMM, true, 0x12, 0x34, false, 0x46, 0b00000000, "Decimal ADC 12 + 34");
+        checkImmediate(CPU6502Instructions.ADC_IMM, true, 0x58, 0x46, true, 0x05, 0b11000001, "Decimal ADC 58 + 46 + C");
+        checkImmediate(CPU6502Instructions.ADC_IMM, true, 0x15, 0x26, false, 0x41, 0b00000000, "Decimal ADC carries between digits");
+        checkImmediate(CPU6502Instructions.ADC_IMM, true, 0x99, 0x01, false, 0x00, 0b10000001, "Decimal ADC takes Z from the binary sum and N from the intermediate value");
+        checkImmediate(CPU6502Instructions.ADC_IMM, true, 0x79, 0x00, true, 0x80, 0b11000000, "Decimal ADC sets overflow from the intermediate value");
+    }
+
+    @Test
+    public void subtractDecimalTests() {
+        checkImmediate(CPU6502Instructions.SBC_IMM, true, 0x46, 0x12, true, 0x34, 0b00000001, "Decimal SBC 46 - 12");
+        checkImmediate(CPU6502Instructions.SBC_IMM, true, 0x40, 0x13, true, 0x27, 0b00000001, "Decimal SBC borrows between digits");
+        checkImmediate(CPU6502Instructions.SBC_IMM, true, 0x32, 0x02, false, 0x29, 0b00000001, "Decimal SBC 32 - 2 - borrow");
+        checkImmediate(CPU6502Instructions.SBC_IMM, true, 0x12, 0x21, true, 0x91, 0b10000000, "Decimal SBC wraps below zero");
+        checkImmediate(CPU6502Instructions.SBC_IMM, true, 0x21, 0x21, true, 0x00, 0b00000011, "Decimal SBC to zero");
+    }
+
+    @Test
+    public void decimalTablesMatchDecimalArithmetic() {
+        for (int a = 0; a < 100; a++) {
+            for (int b = 0; b < 100; b++) {
+                int bcdA = (a / 10) << 4 | a % 10;
+                int bcdB = (b / 10) << 4 | b % 10;
+                int sum = a + b;
+                int difference = a - b;
+
+                int add = DecimalModeTables.add(bcdA, bcdB, 0);
+                assertEquals((sum % 100 / 10) << 4 | sum % 10, add & 0xFF, "Decimal add of " + a + " and " + b);
+                assertEquals(sum >= 100, (add & 0x100) != 0, "Decimal add carry of " + a + " and " + b);
+
+                int subtract = DecimalModeTables.subtract(bcdA, bcdB, 1);
+                int wrapped = (difference + 100) % 100;
+                assertEquals((wrapped / 10) << 4 | wrapped % 10, subtract & 0xFF, "Decimal subtract of " + a + " and " + b);
+                assertEquals(difference >= 0, (subtract & 0x100) != 0, "Decimal subtract carry of " + a + " and " + b);
+            }
+        }
+    }
+
+    @Test
+    public void zeroPageTest() {
+        cpu.setAccumulator((byte) 0x09);
+        cpu.getFlags().setFlag((byte) 3, true);
+        bus.writeByte(0xFFFC, CPU6502Instructions.ADC_ZP.getCode());
+        bus.writeByte(0xFFFD, (byte) 0x10);
+        bus.writeByte(0x0010, (byte) 0x01);
+
+        for (int i = 0; i < CPU6502Instructions.ADC_ZP.getMaxCycles(); i++) {
+            cpu.tick(bus);
+        }
+
+        assertEquals(0x10, cpu.getAccumulator(), "Decimal ADC zero page reads the operand from memory");
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.instructions;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sweeps every {@link CPU6502Instructions} over register, flag and operand combinations, including page crossing and
+ * zero page wrapping addresses, and checks the registers, flags, memory writes and cycle counts against the {@link ReferenceModel}
+ */
+public class ConformanceSweepTest {
+    private static final int[] EDGE_VALUES = {0x00, 0x01, 0x7F, 0x80, 0xFE, 0xFF};
+    private static final int[] FLAGS = {0x00, 0x09, 0xFF};
+    private static final int[] ARITHMETIC_FLAGS = {0x00, 0x01, 0x08, 0x09};
+    private static final int[] STACK_POINTERS = {0xFD, 0x00, 0xFF};
+    private static final int[] ABSOLUTE_ADDRESSES = {0x0000, 0x00FF, 0x01FE, 0x10FF, 0x1080, 0x7FFF, 0xFF00, 0xFFFF};
+    private static final int[] PROGRAM_COUNTERS = {0x0400, 0x04FE};
+
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+    @Test
+    public void tableMatchesInstructionsTest() {
+        for (CPU6502Instructions instruction : CPU6502Instructions.values()) {
+            if (!isImplemented(instruction)) {
+                continue;
+            }
+            ReferenceModel.Opcode opcode = ReferenceModel.OPCODES[instruction.getCode() & 0xFF];
+            assertNotNull(opcode, instruction + " has the opcode of a real instruction");
+            assertEquals(opcode.mnemonic, instruction.name().split("_")[0], instruction + " has the opcode of " + opcode.mnemonic);
+            assertEquals(opcode.cycles + (opcode.pagePenalty ? 1 : 0), instruction.getMaxCycles(), instruction + " has the right maximum cycles");
+        }
+    }
+
+    @Test
+    public void sweepTest() {
+        long cases = Arrays.stream(CPU6502Instructions.values()).parallel().filter(ConformanceSweepTest::isImplemented).mapToLong(this::sweep).sum();
+
+        assertTrue(failures.isEmpty(), () -> failures.size() + " case(s) do not match the reference model, the first are:\n" + String.join("\n", failures.stream().limit(20).toArray(String[]::new)));
+        assertTrue(cases > 1_000_000, "Every instruction is swept");
+    }
+
+    /**
+     * Instructions that are only listed have no processor yet
+     */
+    private static boolean isImplemented(CPU6502Instructions instruction) {
+        return instruction.getInstructionProcessor() != null;
+    }
+
+    /**
+     * Runs every case for one instruction
+     *
+     * @return The number of cases run
+     */
+    private long sweep(CPU6502Instructions instruction) {
+        Sweeper sweeper = new Sweeper(instruction);
+        ReferenceModel.Opcode opcode = ReferenceModel.OPCODES[instruction.getCode() & 0xFF];
+        boolean arithmetic = opcode.mnemonic.equals("ADC") || opcode.mnemonic.equals("SBC");
+
+        for (int pc : PROGRAM_COUNTERS) {
+            switch (opcode.mode) {
+                case "IMP":
+                    for (int a : EDGE_VALUES) for (int x : EDGE_VALUES) for (int y : EDGE_VALUES) for (int sp : STACK_POINTERS) for (int p : FLAGS) {
+                        sweeper.run(pc, a, x, y, sp, p);
+                    }
+                    break;
+                case "IMM":
+                    for (int operand = 0; operand <= 0xFF; operand++) {
+                        sweeper.poke(pc + 1, operand);
+                        if (arithmetic) {
+                            for (int a = 0; a <= 0xFF; a++) for (int p : ARITHMETIC_FLAGS) {
+                                sweeper.run(pc, a, 0, 0, 0xFD, p);
+                            }
+                        } else {
+                            for (int p : FLAGS) {
+                                sweeper.run(pc, 0x55, 0x55, 0x55, 0xFD, p);
+                            }
+                        }
+                    }
+                    break;
+                case "ZP":
+                case "ZPX":
+                case "ZPY":
+                    for (int zeroPage : EDGE_VALUES) for (int index : EDGE_VALUES) for (int a : EDGE_VALUES) for (int p : arithmetic ? ARITHMETIC_FLAGS : FLAGS) {
+                        sweeper.poke(pc + 1, zeroPage);
+                        sweeper.run(pc, a, index, index, 0xFD, p);
+                    }
+                    break;
+                case "ABS":
+                case "ABX":
+                case "ABY":
+                    for (int address : ABSOLUTE_ADDRESSES) for (int index : EDGE_VALUES) for (int a : EDGE_VALUES) for (int sp : STACK_POINTERS) for (int p : arithmetic ? ARITHMETIC_FLAGS : FLAGS) {
+                        sweeper.poke(pc + 1, address & 0xFF);
+                        sweeper.poke(pc + 2, address >> 8);
+                        sweeper.run(pc, a, index, index, sp, p);
+                    }
+                    break;
+                case "IND":
+                    for (int pointer : new int[]{0x1000, 0x10FF, 0x02FF, 0xFFFF, 0x0000}) for (int address : ABSOLUTE_ADDRESSES) {
+                        sweeper.poke(pc + 1, pointer & 0xFF);
+                        sweeper.poke(pc + 2, pointer >> 8);
+                        sweeper.poke(pointer, address & 0xFF);
+                        sweeper.poke((pointer & 0xFF00) | ((pointer + 1) & 0xFF), address >> 8);
+                        sweeper.run(pc, 0, 0, 0, 0xFD, 0);
+                    }
+                    break;
+                case "IZX":
+                case "IZY":
+                    for (int zeroPage : EDGE_VALUES) for (int index : EDGE_VALUES) for (int address : ABSOLUTE_ADDRESSES) for (int a : EDGE_VALUES) for (int p : arithmetic ? ARITHMETIC_FLAGS : FLAGS) {
+                        int pointer = opcode.mode.equals("IZX") ? (zeroPage + index) & 0xFF : zeroPage;
+                        sweeper.poke(pc + 1, zeroPage);
+                        sweeper.poke(pointer, address & 0xFF);
+                        sweeper.poke((pointer + 1) & 0xFF, address >> 8);
+                        sweeper.run(pc, a, index, index, 0xFD, p);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown addressing mode " + opcode.mode);
+            }
+        }
+        return sweeper.cases;
+    }
+
+    /**
+     * Runs cases for one instruction against the engine and the reference model, on memory filled with random values
+     */
+    private final class Sweeper {
+        private final CPU6502Instructions instruction;
+        private final byte[] memory = new byte[0x10000];
+        private final SweepBus bus = new SweepBus();
+        private final CPU6502 cpu = new CPU6502();
+        private final ReferenceModel.State reference;
+        private int[] pokes = new int[8];
+        private int pokeCount;
+        private long cases;
+
+        private Sweeper(CPU6502Instructions instruction) {
+            this.instruction = instruction;
+            SplittableRandom random = new SplittableRandom(instruction.ordinal());
+            for (int address = 0; address < memory.length; address++) {
+                memory[address] = (byte) random.nextInt(0x100);
+            }
+            System.arraycopy(memory, 0, bus.memory, 0, memory.length);
+            reference = new ReferenceModel.State(memory.clone());
+        }
+
+        /**
+         * Sets a byte of memory for the next case
+         */
+        void poke(int address, int value) {
+            if (pokeCount == pokes.length) {
+                pokes = Arrays.copyOf(pokes, pokeCount * 2);
+            }
+            pokes[pokeCount++] = (address & 0xFFFF) << 8 | (value & 0xFF);
+        }
+
+        void run(int pc, int a, int x, int y, int sp, int p) {
+            cases++;
+            for (int i = 0; i < pokeCount; i++) {
+                bus.memory[pokes[i] >>> 8] = (byte) pokes[i];
+                reference.memory[pokes[i] >>> 8] = (byte) pokes[i];
+            }
+            bus.memory[pc] = instruction.getCode();
+            reference.memory[pc] = instruction.getCode();
+
+            reference.pc = pc;
+            reference.a = a;
+            reference.x = x;
+            reference.y = y;
+            reference.sp = sp;
+            reference.p = p;
+            reference.cycles = 0;
+            reference.writeCount = 0;
+            ReferenceModel.execute(reference);
+
+            cpu.reset();
+            cpu.setProgramCounter(pc);
+            cpu.setAccumulator((byte) a);
+            cpu.setXRegister((byte) x);
+            cpu.setYRegister((byte) y);
+            cpu.setStackPointer(sp);
+            cpu.getFlags().fromByte((byte) p);
+            bus.writeCount = 0;
+            String error = null;
+            try {
+                do {
+                    cpu.tick(bus);
+                } while (!cpu.isInstructionComplete() && cpu.getCycles() < 16);
+            } catch (RuntimeException e) {
+                error = e.toString();
+            }
+
+            int[] expected = {reference.pc, reference.a, reference.x, reference.y, reference.sp, reference.p | 0x20, reference.cycles};
+            int[] actual = {cpu.getProgramCounter(), cpu.getAccumulator() & 0xFF, cpu.getXRegister() & 0xFF, cpu.getYRegister() & 0xFF, cpu.getStackPointer(), cpu.getFlags().toByte() & 0xFF, (int) cpu.getCycles()};
+            int[] expectedWrites = Arrays.copyOf(reference.writes, reference.writeCount);
+            int[] actualWrites = Arrays.copyOf(bus.writes, bus.writeCount);
+            if (error != null || !Arrays.equals(expected, actual) || !Arrays.equals(expectedWrites, actualWrites)) {
+                if (failures.size() < 1000) {
+                    failures.add(String.format("%s PC=%04X A=%02X X=%02X Y=%02X SP=%02X P=%02X pokes=%s: expected PC,A,X,Y,SP,P,cycles %s writes %s, was %s writes %s%s",
+                            instruction, pc, a, x, y, sp, p, describe(pokes, pokeCount), hex(expected), describe(expectedWrites, expectedWrites.length), hex(actual), describe(actualWrites, actualWrites.length), error == null ? "" : " " + error));
+                }
+            }
+
+            restore(reference.memory, reference.writes, reference.writeCount);
+            restore(bus.memory, bus.writes, bus.writeCount);
+            restore(reference.memory, pokes, pokeCount);
+            restore(bus.memory, pokes, pokeCount);
+            reference.memory[pc] = memory[pc];
+            bus.memory[pc] = memory[pc];
+            pokeCount = 0;
+        }
+
+        private void restore(byte[] target, int[] entries, int count) {
+            for (int i = 0; i < count; i++) {
+                int address = entries[i] >>> 8;
+                target[address] = memory[address];
+            }
+        }
+
+        private String describe(int[] entries, int count) {
+            StringBuilder builder = new StringBuilder("[");
+            for (int i = 0; i < count; i++) {
+                builder.append(String.format(i == 0 ? "%04X=%02X" : " %04X=%02X", entries[i] >>> 8, entries[i] & 0xFF));
+            }
+            return builder.append("]").toString();
+        }
+
+        private String hex(int[] values) {
+            StringBuilder builder = new StringBuilder("[");
+            for (int i = 0; i < values.length; i++) {
+                builder.append(i == 0 ? "" : " ").append(Integer.toHexString(values[i]).toUpperCase());
+            }
+            return builder.append("]").toString();
+        }
+    }
+
+    /**
+     * All 64K of memory, logging every write
+     */
+    private static final class SweepBus extends Bus {
+        private final byte[] memory = new byte[0x10000];
+        private int[] writes = new int[4];
+        private int writeCount;
+
+        @Override
+        public byte readByte(int location) {
+            return memory[location & 0xFFFF];
+        }
+
+        @Override
+        public void writeByte(int location, byte value) {
+            memory[location & 0xFFFF] = value;
+            if (writeCount == writes.length) {
+                writes = Arrays.copyOf(writes, writeCount * 2);
+            }
+            writes[writeCount++] = (location & 0xFFFF) << 8 | (value & 0xFF);
+        }
+    }
+}
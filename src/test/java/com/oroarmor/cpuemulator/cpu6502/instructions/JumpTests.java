@@ -112,6 +112,6 @@ class JumpTests {
             cpu.tick(bus);
         }
 
-        assertEquals(0xFFFE, cpu.getProgramCounter(), "RTS sets the correct program counter");
+        assertEquals(0xFFFF, cpu.getProgramCounter(), "RTS sets the correct program counter");
     }
 }
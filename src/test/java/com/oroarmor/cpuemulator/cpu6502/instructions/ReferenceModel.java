@@ -0,0 +1,408 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.instructions;
+
+import java.util.Arrays;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.DifferentialFuzzer;
+
+/**
+ * A reference 6502 that runs one instruction at a time from a table of opcodes. It does not share any code with the
+ * {@link com.oroarmor.cpuemulator.cpu6502.CPU6502}, so the two can be compared.<br>
+ * Each table row is the opcode, the mnemonic, the addressing mode and the number of cycles, where a <code>*</code>
+ * adds a cycle when the indexed address is in a different page.
+ */
+public final class ReferenceModel {
+    private static final String TABLE = String.join("\n",
+            "A9 LDA IMM 2", "A5 LDA ZP 3", "B5 LDA ZPX 4", "AD LDA ABS 4", "BD LDA ABX 4*", "B9 LDA ABY 4*", "A1 LDA IZX 6", "B1 LDA IZY 5*",
+            "A2 LDX IMM 2", "A6 LDX ZP 3", "B6 LDX ZPY 4", "AE LDX ABS 4", "BE LDX ABY 4*",
+            "A0 LDY IMM 2", "A4 LDY ZP 3", "B4 LDY ZPX 4", "AC LDY ABS 4", "BC LDY ABX 4*",
+            "85 STA ZP 3", "95 STA ZPX 4", "8D STA ABS 4", "9D STA ABX 5", "99 STA ABY 5", "81 STA IZX 6", "91 STA IZY 6",
+            "86 STX ZP 3", "96 STX ZPY 4", "8E STX ABS 4",
+            "84 STY ZP 3", "94 STY ZPX 4", "8C STY ABS 4",
+            "AA TAX IMP 2", "A8 TAY IMP 2", "8A TXA IMP 2", "98 TYA IMP 2",
+            "69 ADC IMM 2", "65 ADC ZP 3", "75 ADC ZPX 4", "6D ADC ABS 4", "7D ADC ABX 4*", "79 ADC ABY 4*", "61 ADC IZX 6", "71 ADC IZY 5*",
+            "E9 SBC IMM 2", "E5 SBC ZP 3", "F5 SBC ZPX 4", "ED SBC ABS 4", "FD SBC ABX 4*", "F9 SBC ABY 4*", "E1 SBC IZX 6", "F1 SBC IZY 5*",
+            "E6 INC ZP 5", "F6 INC ZPX 6", "EE INC ABS 6", "FE INC ABX 7",
+            "C6 DEC ZP 5", "D6 DEC ZPX 6", "CE DEC ABS 6", "DE DEC ABX 7",
+            "E8 INX IMP 2", "C8 INY IMP 2", "CA DEX IMP 2", "88 DEY IMP 2",
+            "4C JMP ABS 3", "6C JMP IND 5", "20 JSR ABS 6", "60 RTS IMP 6",
+            "18 CLC IMP 2", "D8 CLD IMP 2", "58 CLI IMP 2", "B8 CLV IMP 2", "38 SEC IMP 2", "F8 SED IMP 2", "78 SEI IMP 2");
+
+    static final Opcode[] OPCODES = new Opcode[256];
+
+    static {
+        for (String row : TABLE.split("\n")) {
+            String[] columns = row.split(" ");
+            int code = Integer.parseInt(columns[0], 16);
+            boolean pagePenalty = columns[3].endsWith("*");
+            int cycles = Integer.parseInt(columns[3].replace("*", ""));
+            OPCODES[code] = new Opcode(code, columns[1], columns[2], cycles, pagePenalty);
+        }
+    }
+
+    /**
+     * Runs the reference model on the registers of a cpu and the memory of a bus, for {@link DifferentialFuzzer}.
+     * The registers are copied back to the cpu afterwards, even when an opcode is not in the table
+     */
+    public static final DifferentialFuzzer.Engine ENGINE = (cpu, bus, instructions) -> {
+        State state = new State(bus);
+        state.pc = cpu.getProgramCounter();
+        state.a = cpu.getAccumulator() & 0xFF;
+        state.x = cpu.getXRegister() & 0xFF;
+        state.y = cpu.getYRegister() & 0xFF;
+        state.sp = cpu.getStackPointer() & 0xFF;
+        state.p = cpu.getFlags().toByte() & 0xFF;
+        try {
+            for (int i = 0; i < instructions; i++) {
+                execute(state);
+            }
+        } finally {
+            cpu.setProgramCounter(state.pc);
+            cpu.setAccumulator((byte) state.a);
+            cpu.setXRegister((byte) state.x);
+            cpu.setYRegister((byte) state.y);
+            cpu.setStackPointer(state.sp);
+            cpu.getFlags().fromByte((byte) state.p);
+        }
+        return state.cycles;
+    };
+
+    private ReferenceModel() {
+    }
+
+    /**
+     * Runs the instruction at the program counter
+     *
+     * @param state The state to run on
+     */
+    static void execute(State state) {
+        Opcode opcode = OPCODES[state.read(state.pc)];
+        if (opcode == null) {
+            throw new IllegalArgumentException(String.format("Opcode %02X is not in the reference table", state.read(state.pc)));
+        }
+        state.pc = (state.pc + 1) & 0xFFFF;
+
+        int address = 0;
+        boolean pageCrossed = false;
+        switch (opcode.mode) {
+            case "IMP":
+                break;
+            case "IMM":
+                address = state.pc;
+                state.pc = (state.pc + 1) & 0xFFFF;
+                break;
+            case "ZP":
+                address = state.fetch();
+                break;
+            case "ZPX":
+                address = (state.fetch() + state.x) & 0xFF;
+                break;
+            case "ZPY":
+                address = (state.fetch() + state.y) & 0xFF;
+                break;
+            case "ABS":
+                address = state.fetchWord();
+                break;
+            case "ABX":
+            case "ABY": {
+                int base = state.fetchWord();
+                address = (base + (opcode.mode.equals("ABX") ? state.x : state.y)) & 0xFFFF;
+                pageCrossed = (base >> 8) != (address >> 8);
+                break;
+            }
+            case "IND": {
+                int pointer = state.fetchWord();
+                int highPointer = (pointer & 0xFF00) | ((pointer + 1) & 0xFF);
+                address = state.read(pointer) | state.read(highPointer) << 8;
+                break;
+            }
+            case "IZX": {
+                int pointer = (state.fetch() + state.x) & 0xFF;
+                address = state.read(pointer) | state.read((pointer + 1) & 0xFF) << 8;
+                break;
+            }
+            case "IZY": {
+                int pointer = state.fetch();
+                int base = state.read(pointer) | state.read((pointer + 1) & 0xFF) << 8;
+                address = (base + state.y) & 0xFFFF;
+                pageCrossed = (base >> 8) != (address >> 8);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown addressing mode " + opcode.mode);
+        }
+        state.cycles += opcode.cycles + (opcode.pagePenalty && pageCrossed ? 1 : 0);
+
+        switch (opcode.mnemonic) {
+            case "LDA":
+                state.a = state.setNZ(state.read(address));
+                break;
+            case "LDX":
+                state.x = state.setNZ(state.read(address));
+                break;
+            case "LDY":
+                state.y = state.setNZ(state.read(address));
+                break;
+            case "STA":
+                state.write(address, state.a);
+                break;
+            case "STX":
+                state.write(address, state.x);
+                break;
+            case "STY":
+                state.write(address, state.y);
+                break;
+            case "TAX":
+                state.x = state.setNZ(state.a);
+                break;
+            case "TAY":
+                state.y = state.setNZ(state.a);
+                break;
+            case "TXA":
+                state.a = state.setNZ(state.x);
+                break;
+            case "TYA":
+                state.a = state.setNZ(state.y);
+                break;
+            case "ADC":
+                add(state, state.read(address));
+                break;
+            case "SBC":
+                subtract(state, state.read(address));
+                break;
+            case "INC":
+                state.write(address, state.setNZ((state.read(address) + 1) & 0xFF));
+                break;
+            case "DEC":
+                state.write(address, state.setNZ((state.read(address) - 1) & 0xFF));
+                break;
+            case "INX":
+                state.x = state.setNZ((state.x + 1) & 0xFF);
+                break;
+            case "INY":
+                state.y = state.setNZ((state.y + 1) & 0xFF);
+                break;
+            case "DEX":
+                state.x = state.setNZ((state.x - 1) & 0xFF);
+                break;
+            case "DEY":
+                state.y = state.setNZ((state.y - 1) & 0xFF);
+                break;
+            case "JMP":
+                state.pc = address;
+                break;
+            case "JSR": {
+                int returnAddress = (state.pc - 1) & 0xFFFF;
+                state.push(returnAddress >> 8);
+                state.push(returnAddress & 0xFF);
+                state.pc = address;
+                break;
+            }
+            case "RTS": {
+                int low = state.pull();
+                int high = state.pull();
+                state.pc = ((high << 8 | low) + 1) & 0xFFFF;
+                break;
+            }
+            case "CLC":
+                state.p &= ~State.C;
+                break;
+            case "CLD":
+                state.p &= ~State.D;
+                break;
+            case "CLI":
+                state.p &= ~State.I;
+                break;
+            case "CLV":
+                state.p &= ~State.V;
+                break;
+            case "SEC":
+                state.p |= State.C;
+                break;
+            case "SED":
+                state.p |= State.D;
+                break;
+            case "SEI":
+                state.p |= State.I;
+                break;
+            default:
+                throw new IllegalStateException("Unknown mnemonic " + opcode.mnemonic);
+        }
+    }
+
+    /**
+     * Binary add, and the NMOS decimal add with N and V taken before the high digit is adjusted
+     */
+    private static void add(State state, int value) {
+        int carry = state.p & State.C;
+        int binary = state.a + value + carry;
+        int flags = state.p & ~(State.N | State.V | State.Z | State.C);
+        if ((state.p & State.D) == 0) {
+            flags |= (binary & 0x80) != 0 ? State.N : 0;
+            flags |= ((state.a ^ binary) & (value ^ binary) & 0x80) != 0 ? State.V : 0;
+            flags |= (binary & 0xFF) == 0 ? State.Z : 0;
+            flags |= binary > 0xFF ? State.C : 0;
+            state.a = binary & 0xFF;
+        } else {
+            int sum = (state.a & 0x0F) + (value & 0x0F) + carry;
+            if (sum > 9) {
+                sum += 6;
+            }
+            sum = (sum & 0x0F) + (state.a & 0xF0) + (value & 0xF0) + (sum > 0x0F ? 0x10 : 0);
+            flags |= (binary & 0xFF) == 0 ? State.Z : 0;
+            flags |= (sum & 0x80) != 0 ? State.N : 0;
+            flags |= ((state.a ^ sum) & 0x80) != 0 && ((state.a ^ value) & 0x80) == 0 ? State.V : 0;
+            if ((sum & 0x1F0) > 0x90) {
+                sum += 0x60;
+            }
+            flags |= (sum & 0xFF0) > 0xF0 ? State.C : 0;
+            state.a = sum & 0xFF;
+        }
+        state.p = flags;
+    }
+
+    /**
+     * Binary subtract, and the NMOS decimal subtract which sets the flags from the binary result
+     */
+    private static void subtract(State state, int value) {
+        int borrow = (state.p & State.C) == 0 ? 1 : 0;
+        int binary = state.a - value - borrow;
+        int flags = state.p & ~(State.N | State.V | State.Z | State.C);
+        flags |= (binary & 0x80) != 0 ? State.N : 0;
+        flags |= ((state.a ^ value) & (state.a ^ binary) & 0x80) != 0 ? State.V : 0;
+        flags |= (binary & 0xFF) == 0 ? State.Z : 0;
+        flags |= binary >= 0 ? State.C : 0;
+        if ((state.p & State.D) == 0) {
+            state.a = binary & 0xFF;
+        } else {
+            int low = (state.a & 0x0F) - (value & 0x0F) - borrow;
+            int result;
+            if ((low & 0x10) != 0) {
+                result = ((low - 6) & 0x0F) | ((state.a & 0xF0) - (value & 0xF0) - 0x10);
+            } else {
+                result = (low & 0x0F) | ((state.a & 0xF0) - (value & 0xF0));
+            }
+            if ((result & 0x100) != 0) {
+                result -= 0x60;
+            }
+            state.a = result & 0xFF;
+        }
+        state.p = flags;
+    }
+
+    static final class Opcode {
+        final int code;
+        final String mnemonic;
+        final String mode;
+        final int cycles;
+        final boolean pagePenalty;
+
+        private Opcode(int code, String mnemonic, String mode, int cycles, boolean pagePenalty) {
+            this.code = code;
+            this.mnemonic = mnemonic;
+            this.mode = mode;
+            this.cycles = cycles;
+            this.pagePenalty = pagePenalty;
+        }
+    }
+
+    /**
+     * The registers, flags and memory of the reference model, and the writes made to memory. The memory is either an array or a bus
+     */
+    static final class State {
+        static final int C = 0x01;
+        static final int Z = 0x02;
+        static final int I = 0x04;
+        static final int D = 0x08;
+        static final int V = 0x40;
+        static final int N = 0x80;
+
+        int pc;
+        int a;
+        int x;
+        int y;
+        int sp;
+        int p;
+        int cycles;
+        final byte[] memory;
+        final Bus bus;
+        int[] writes = new int[4];
+        int writeCount;
+
+        State(byte[] memory) {
+            this.memory = memory;
+            this.bus = null;
+        }
+
+        State(Bus bus) {
+            this.memory = null;
+            this.bus = bus;
+        }
+
+        int read(int address) {
+            return (bus == null ? memory[address & 0xFFFF] : bus.readByte(address & 0xFFFF)) & 0xFF;
+        }
+
+        void write(int address, int value) {
+            if (bus == null) {
+                memory[address & 0xFFFF] = (byte) value;
+            } else {
+                bus.writeByte(address & 0xFFFF, (byte) value);
+            }
+            if (writeCount == writes.length) {
+                writes = Arrays.copyOf(writes, writeCount * 2);
+            }
+            writes[writeCount++] = (address & 0xFFFF) << 8 | (value & 0xFF);
+        }
+
+        int fetch() {
+            int value = read(pc);
+            pc = (pc + 1) & 0xFFFF;
+            return value;
+        }
+
+        int fetchWord() {
+            int low = fetch();
+            return low | fetch() << 8;
+        }
+
+        void push(int value) {
+            write(0x0100 | sp, value);
+            sp = (sp - 1) & 0xFF;
+        }
+
+        int pull() {
+            sp = (sp + 1) & 0xFF;
+            return read(0x0100 | sp);
+        }
+
+        int setNZ(int value) {
+            p = (p & ~(N | Z)) | (value & 0x80) | (value == 0 ? Z : 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.monitoring;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import com.oroarmor.cpuemulator.cpu6502.scheduling.MultiProcessorSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MachineRegistryTest {
+    private static final String NAME = "registry-test";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private MachineRegistry registry;
+    private CPU6502 cpu;
+    private TestBus bus;
+    private Machine machine;
+
+    @BeforeEach
+    public void reset() {
+        registry = new MachineRegistry();
+        cpu = new CPU6502();
+        cpu.reset();
+        bus = new TestBus();
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0x00);
+        bus.writeByte(0xFFFE, (byte) 0x02);
+        bus.writeByte(0x0200, CPU6502Instructions.INX.getCode());
+        bus.writeByte(0x0201, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0x0202, (byte) 0x00);
+        bus.writeByte(0x0203, (byte) 0x02);
+        machine = new Machine(cpu, bus);
+    }
+
+    @AfterEach
+    public void unregister() {
+        registry.unregister(NAME);
+    }
+
+    @Test
+    public void publishTest() throws JMException, InterruptedException {
+        MachineMetrics metrics = registry.register(NAME, machine, 5_000_000L);
+        ObjectName name = MachineRegistry.getObjectName(NAME);
+        assertTrue(server.isRegistered(name), "The machine is registered");
+        assertSame(metrics, machine.getMetrics(), "The machine records into the metrics");
+        assertSame(metrics, registry.getMetrics(NAME), "The registry finds the metrics");
+
+        long end = System.nanoTime() + 50_000_000L;
+        while (System.nanoTime() < end) {
+            machine.run(1000);
+        }
+        Thread.sleep(20);
+        machine.run(1000);
+
+        long cycles = (long) server.getAttribute(name, "CyclesRun");
+        assertEquals(cpu.getCycles(), cycles, "The cycles of every batch are counted");
+        assertTrue((long) server.getAttribute(name, "InstructionsRun") > 0, "The instructions are published");
+        assertTrue((long) server.getAttribute(name, "TimePausedMillis") >= 15, "The time outside of run is paused");
+        assertEquals(5L, server.getAttribute(name, "PublishIntervalMillis"), "The publish interval");
+
+        Thread.sleep(20);
+        assertEquals(0.0, server.getAttribute(name, "EmulatedMegahertz"), "A machine that stopped publishing has no rate");
+    }
+
+    @Test
+    public void rateTest() {
+        MachineMetrics metrics = new MachineMetrics(1_000_000_000L);
+        long start = System.nanoTime();
+        metrics.record(500_000, 200_000, start, start + 250_000_000L);
+        assertEquals(500_000, metrics.getCyclesRun(), "The totals count batches before the interval");
+        assertEquals(0.0, metrics.getEmulatedMegahertz(), "No rate is published before the interval");
+        metrics.record(1_500_000, 600_000, start + 500_000_000L, start + 1_000_000_000L);
+
+        assertEquals(2_000_000, metrics.getCyclesRun(), "The cycles are published");
+        assertEquals(800_000, metrics.getInstructionsRun(), "The instructions are published");
+        assertEquals(2.0, metrics.getEmulatedMegahertz(), 0.01, "Two million cycles in a second");
+        assertEquals(800_000, metrics.getInstructionsPerSecond(), 1, "The instructions per second");
+        assertEquals(250, metrics.getTimePausedMillis(), 5, "The gaps between batches are paused");
+    }
+
+    @Test
+    public void stoppedTest() {
+        MachineMetrics metrics = registry.register(NAME, machine, 1_000_000_000L);
+        machine.run(1000);
+        registry.unregister(NAME);
+
+        assertEquals(1000, metrics.getCyclesRun(), "The last batches before the machine stopped are counted");
+        assertEquals(cpu.getInstructions(), metrics.getInstructionsRun(), "The last instructions before the machine stopped are counted");
+    }
+
+    @Test
+    public void lockstepTest() {
+        MultiProcessorSystem system = new MultiProcessorSystem();
+        Machine processor = system.addProcessor(cpu, bus);
+        MachineMetrics metrics = new MachineMetrics(1_000_000_000L);
+        processor.setMetrics(metrics);
+        system.run(10_000);
+
+        assertEquals(10_000, metrics.getCyclesRun(), "Every cycle of a lockstep processor is counted");
+        assertEquals(cpu.getInstructions(), metrics.getInstructionsRun(), "Every instruction of a lockstep processor is counted");
+    }
+
+    @Test
+    public void unregisterTest() {
+        registry.register(NAME, machine);
+        assertThrows(IllegalArgumentException.class, () -> registry.register(NAME, new Machine(new CPU6502(), new TestBus())), "Names are unique");
+        assertTrue(registry.unregister(NAME), "The machine is unregistered");
+        assertFalse(server.isRegistered(MachineRegistry.getObjectName(NAME)), "The bean is removed");
+        assertNull(machine.getMetrics(), "The machine stops recording");
+        assertFalse(registry.unregister(NAME), "Only registered machines are unregistered");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import com.oroarmor.cpuemulator.cpu6502.debug.Breakpoints;
+import com.oroarmor.cpuemulator.cpu6502.devices.SharedBusDevice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MultiProcessorSystemTest {
+    private Bus sharedBus;
+
+    @BeforeEach
+    public void reset() {
+        sharedBus = new TestBus();
+    }
+
+    /**
+     * Adds a processor that shares the zero page and increments $10 in a loop
+     */
+    private Machine addIncrementingProcessor(MultiProcessorSystem system) {
+        Bus privateMemory = new TestBus();
+        privateMemory.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        privateMemory.writeByte(0xFFFD, (byte) 0x00);
+        privateMemory.writeByte(0xFFFE, (byte) 0x02);
+        privateMemory.writeByte(0x0200, CPU6502Instructions.INC_ZP.getCode());
+        privateMemory.writeByte(0x0201, (byte) 0x10);
+        privateMemory.writeByte(0x0202, CPU6502Instructions.SEC.getCode());
+        privateMemory.writeByte(0x0203, CPU6502Instructions.JMP_ABS.getCode());
+        privateMemory.writeByte(0x0204, (byte) 0x00);
+        privateMemory.writeByte(0x0205, (byte) 0x02);
+
+        Bus bus = new Bus();
+        bus.attachDevice(new SharedBusDevice(sharedBus, 0x0000, 0x00FF));
+        bus.attachDevice(new SharedBusDevice(privateMemory, 0x0100, 0xFFFF));
+        return system.addProcessor(new CPU6502(), bus);
+    }
+
+    private int runSystem(long quantum, int processors, long cycles) {
+        reset();
+        MultiProcessorSystem system = new MultiProcessorSystem(quantum);
+        for (int i = 0; i < processors; i++) {
+            addIncrementingProcessor(system);
+        }
+        assertEquals(cycles, system.run(cycles), "The system runs every cycle");
+        assertEquals(cycles, system.getCycles(), "The system runs every cycle");
+        for (Machine machine : system.getProcessors()) {
+            assertEquals(cycles, machine.getCpu().getCycles(), "Every processor runs every cycle");
+        }
+        return Byte.toUnsignedInt(sharedBus.readByte(0x10));
+    }
+
+    @Test
+    public void lockstepTest() {
+        int single = runSystem(1, 1, 1000);
+        assertNotEquals(0, single, "A single processor increments shared memory");
+        assertEquals(single, runSystem(1, 2, 1000), "Processors in lockstep read the same value in the same cycle");
+    }
+
+    @Test
+    public void quantumTest() {
+        int first = runSystem(100, 2, 1000);
+        assertEquals(first, runSystem(100, 2, 1000), "Runs with the same quantum are identical");
+        assertNotEquals(runSystem(1, 2, 1000), first, "Processors in separate quanta both see the increments");
+        assertNotEquals(0, runSystem(300, 2, 1000), "The last quantum runs the remaining cycles");
+    }
+
+    private void runToBreakpoint(long quantum, long otherCycles) {
+        reset();
+        MultiProcessorSystem system = new MultiProcessorSystem(quantum);
+        addIncrementingProcessor(system);
+        CPU6502 stopped = addIncrementingProcessor(system).getCpu();
+        Breakpoints breakpoints = new Breakpoints();
+        breakpoints.add(0x0203);
+        stopped.setBreakpoints(breakpoints);
+
+        assertEquals(10, system.run(1000), "The run ends when a processor stops at a breakpoint");
+        assertEquals(10, system.getCycles(), "Only the cycles every processor ran are counted");
+        assertEquals(10, system.getProcessorCycles()[1], "The stopped processor makes no progress");
+        assertEquals(otherCycles, system.getProcessorCycles()[0], "The other processor finishes the quantum");
+
+        breakpoints.clear();
+        stopped.resume();
+        assertEquals(990, system.run(990), "A resumed processor runs again");
+        assertArrayEquals(new long[]{1000, 1000}, system.getProcessorCycles(), "The resumed processor catches up with the others");
+        for (Machine machine : system.getProcessors()) {
+            assertEquals(1000, machine.getCpu().getCycles(), "Every processor runs every cycle");
+        }
+    }
+
+    @Test
+    public void breakpointTest() {
+        runToBreakpoint(1, 11);
+        runToBreakpoint(100, 100);
+    }
+
+    @Test
+    public void invalidQuantumTest() {
+        assertThrows(IllegalArgumentException.class, () -> new MultiProcessorSystem(0), "The quantum must be positive");
+    }
+}
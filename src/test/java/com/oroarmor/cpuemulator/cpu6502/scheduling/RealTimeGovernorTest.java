@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import com.oroarmor.cpuemulator.cpu6502.debug.Breakpoints;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RealTimeGovernorTest {
+    private Machine machine;
+
+    @BeforeEach
+    public void reset() {
+        Bus bus = new TestBus();
+        // JMP $FFFC
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0xFC);
+        bus.writeByte(0xFFFE, (byte) 0xFF);
+        machine = new Machine(new CPU6502(), bus);
+    }
+
+    @Test
+    public void testClockRate() {
+        RealTimeGovernor governor = new RealTimeGovernor(machine, 100_000);
+        long start = System.nanoTime();
+        governor.runFor(200_000_000L);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double expected = 100_000 * seconds;
+        assertTrue(Math.abs(governor.getCyclesRun() - expected) < expected * 0.25, "Governor runs close to the clock rate, ran " + governor.getCyclesRun() + " cycles, expected " + expected);
+        assertEquals(governor.getCyclesRun(), machine.getCpu().getCycles(), "Governor counts the cycles the cpu ran");
+    }
+
+    @Test
+    public void testSpeedMultiplier() {
+        RealTimeGovernor governor = new RealTimeGovernor(machine, 100_000);
+        governor.setSpeedMultiplier(0.5);
+        long start = System.nanoTime();
+        governor.runFor(200_000_000L);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double expected = 50_000 * seconds;
+        assertTrue(Math.abs(governor.getCyclesRun() - expected) < expected * 0.25, "Governor runs at the multiplied clock rate, ran " + governor.getCyclesRun() + " cycles, expected " + expected);
+    }
+
+    @Test
+    public void testStop() throws InterruptedException {
+        RealTimeGovernor governor = new RealTimeGovernor(machine, 100_000);
+        Thread thread = new Thread(governor);
+        thread.start();
+        Thread.sleep(50);
+        governor.stop();
+        thread.join(1000);
+
+        assertTrue(!thread.isAlive() && !governor.isRunning(), "Governor stops when asked");
+        assertThrows(IllegalArgumentException.class, () -> governor.setSpeedMultiplier(0), "Speed multiplier must be positive");
+    }
+
+    @Test
+    public void testBreakpoint() {
+        Breakpoints breakpoints = new Breakpoints();
+        breakpoints.add(0xFFFC);
+        machine.getCpu().setBreakpoints(breakpoints);
+        RealTimeGovernor governor = new RealTimeGovernor(machine, 100_000);
+        long start = System.nanoTime();
+        governor.runFor(5_000_000_000L);
+
+        assertTrue(System.nanoTime() - start < 1_000_000_000L, "Governor stops when the cpu stops at a breakpoint");
+        assertTrue(machine.getCpu().isAtBreakpoint() && !governor.isRunning(), "Governor stops when the cpu stops at a breakpoint");
+        assertEquals(0, governor.getCyclesRun(), "No cycles run past the breakpoint");
+
+        breakpoints.clear();
+        machine.getCpu().resume();
+        governor.runFor(20_000_000L);
+        assertTrue(governor.getCyclesRun() > 0, "Governor runs again once the cpu is resumed");
+    }
+}
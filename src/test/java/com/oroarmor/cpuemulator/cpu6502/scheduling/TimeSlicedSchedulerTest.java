@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import com.oroarmor.cpuemulator.cpu6502.debug.Breakpoints;
+import com.oroarmor.cpuemulator.cpu6502.scheduling.TimeSlicedScheduler.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSlicedSchedulerTest {
+    private TimeSlicedScheduler scheduler;
+
+    @BeforeEach
+    public void reset() {
+        scheduler = new TimeSlicedScheduler(2, 3_000);
+    }
+
+    @AfterEach
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    private static Machine createMachine() {
+        Bus bus = new TestBus();
+        // JMP $FFFC
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0xFC);
+        bus.writeByte(0xFFFE, (byte) 0xFF);
+        return new Machine(new CPU6502(), bus);
+    }
+
+    @Test
+    public void testPriorities() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler = new TimeSlicedScheduler(1, 3_000);
+        Session low = scheduler.add(createMachine(), 1);
+        Session high = scheduler.add(createMachine(), 2);
+        Thread.sleep(200);
+        low.pause();
+        high.pause();
+        Thread.sleep(20);
+
+        assertTrue(low.getSlicesRun() > 5 && high.getSlicesRun() > 5, "Both sessions get slices");
+        double ratio = (double) high.getCyclesRun() / low.getCyclesRun();
+        assertTrue(ratio > 1.5 && ratio < 2.5, "Priority 2 runs about twice the cycles of priority 1, ratio was " + ratio);
+        assertEquals(high.getCyclesRun(), high.getMachine().getCpu().getCycles(), "Scheduler counts the cycles run");
+    }
+
+    @Test
+    public void testPauseAndResume() throws InterruptedException {
+        Session session = scheduler.add(createMachine());
+        Thread.sleep(50);
+        session.pause();
+        Thread.sleep(20);
+        long cycles = session.getCyclesRun();
+        Thread.sleep(50);
+
+        assertTrue(cycles > 0, "Session runs before it is paused");
+        assertEquals(cycles, session.getCyclesRun(), "Paused sessions do not run");
+
+        session.resume();
+        Thread.sleep(50);
+        assertTrue(session.getCyclesRun() > cycles, "Resumed sessions run again");
+    }
+
+    @Test
+    public void testBlockAndWake() throws InterruptedException {
+        Session blocked = scheduler.add(createMachine());
+        Session other = scheduler.add(createMachine());
+        Thread.sleep(20);
+        blocked.block();
+        Thread.sleep(20);
+        long blockedCycles = blocked.getCyclesRun();
+        long otherCycles = other.getCyclesRun();
+        Thread.sleep(50);
+
+        assertEquals(blockedCycles, blocked.getCyclesRun(), "Blocked sessions do not run");
+        assertTrue(other.getCyclesRun() > otherCycles, "Other sessions keep running while one is blocked");
+
+        blocked.wake();
+        Thread.sleep(50);
+        assertTrue(blocked.getCyclesRun() > blockedCycles, "Woken sessions run again");
+        other.remove();
+        blocked.remove();
+    }
+
+    @Test
+    public void testBreakpoint() throws InterruptedException {
+        Machine machine = createMachine();
+        Breakpoints breakpoints = new Breakpoints();
+        breakpoints.add(0xFFFC);
+        machine.getCpu().setBreakpoints(breakpoints);
+        Session session = scheduler.add(machine);
+        Thread.sleep(50);
+
+        assertTrue(session.isPaused() && machine.getCpu().isAtBreakpoint(), "Sessions are paused when the cpu stops at a breakpoint");
+        assertEquals(1, session.getSlicesRun(), "Sessions stopped at a breakpoint are not run again");
+        assertEquals(0, session.getCyclesRun(), "No cycles run past the breakpoint");
+
+        breakpoints.clear();
+        machine.getCpu().resume();
+        session.resume();
+        Thread.sleep(50);
+        assertTrue(session.getCyclesRun() > 0, "Sessions run again once the cpu and the session are resumed");
+        session.remove();
+    }
+
+    @Test
+    public void testShutdownWhileRunning() throws InterruptedException {
+        Session[] sessions = new Session[8];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = scheduler.add(createMachine());
+        }
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> uncaught.set(e));
+        try {
+            Thread.sleep(10);
+            Thread shutdown = new Thread(scheduler::shutdown);
+            shutdown.start();
+            for (int i = 0; shutdown.isAlive() || i < 1000; i++) {
+                sessions[i % sessions.length].pause();
+                sessions[i % sessions.length].resume();
+            }
+            shutdown.join();
+            assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS), "Workers finish after shutdown");
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+        assertNull(uncaught.get(), "Shutting down does not fail the workers");
+    }
+}
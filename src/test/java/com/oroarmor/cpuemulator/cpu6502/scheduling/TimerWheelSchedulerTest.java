@@ -0,0 +1,211 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Eli Orona
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.oroarmor.cpuemulator.cpu6502.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import com.oroarmor.cpuemulator.cpu6502.Bus;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502;
+import com.oroarmor.cpuemulator.cpu6502.CPU6502Instructions;
+import com.oroarmor.cpuemulator.cpu6502.Machine;
+import com.oroarmor.cpuemulator.cpu6502.TestBus;
+import com.oroarmor.cpuemulator.cpu6502.debug.Breakpoints;
+import com.oroarmor.cpuemulator.cpu6502.scheduling.TimerWheelScheduler.ScheduledMachine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimerWheelSchedulerTest {
+    private AtomicLong clock;
+    private TimerWheelScheduler scheduler;
+
+    @BeforeEach
+    public void reset() {
+        clock = new AtomicLong();
+        scheduler = new TimerWheelScheduler(4, TimerWheelScheduler.DEFAULT_TICK_NANOS, clock::get);
+    }
+
+    @AfterEach
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    private static Machine createMachine() {
+        Bus bus = new TestBus();
+        // JMP $FFFC
+        bus.writeByte(0xFFFC, CPU6502Instructions.JMP_ABS.getCode());
+        bus.writeByte(0xFFFD, (byte) 0xFC);
+        bus.writeByte(0xFFFE, (byte) 0xFF);
+        return new Machine(new CPU6502(), bus);
+    }
+
+    /**
+     * Waits for the timer thread to catch up with the clock, failing after a few seconds
+     */
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long end = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - end < 0, message);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testManyMachines() throws InterruptedException {
+        List<ScheduledMachine> machines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            machines.add(scheduler.schedule(createMachine(), 10_000, 10_000_000L));
+        }
+        scheduler.start();
+
+        for (int quantum = 1; quantum <= 30; quantum++) {
+            clock.addAndGet(10_000_000L);
+            int expected = quantum;
+            await(() -> machines.stream().allMatch(machine -> machine.getQuantaRun() == expected), "Each machine runs one quantum every 10ms");
+        }
+
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        for (ScheduledMachine machine : machines) {
+            assertEquals(30, machine.getQuantaRun(), "Each machine runs one quantum every 10ms");
+            assertEquals(machine.getCyclesRun(), machine.getMachine().getCpu().getCycles(), "Scheduler counts the cycles run");
+            assertEquals(3000, machine.getCyclesRun(), "Each quantum runs 10ms worth of cycles");
+            assertEquals(0, machine.getMissedDeadlines(), "No quantum finishes late");
+        }
+        assertEquals(20, scheduler.getScheduledCount(), "All machines are scheduled");
+    }
+
+    @Test
+    public void testHigherLevels() throws InterruptedException {
+        ScheduledMachine machine = scheduler.schedule(createMachine(), 1_000, 300_000_000L);
+        scheduler.start();
+
+        clock.set(299_000_000L);
+        Thread.sleep(20);
+        assertEquals(0, machine.getQuantaRun(), "Quanta do not run before they are due");
+
+        clock.set(300_000_000L);
+        await(() -> machine.getQuantaRun() == 1, "Quanta longer than the first level of the wheel cascade down and run on time");
+        clock.set(600_000_000L);
+        await(() -> machine.getQuantaRun() == 2, "Quanta longer than the first level of the wheel cascade down and run on time");
+
+        clock.set(750_000_000L);
+        Thread.sleep(20);
+        assertEquals(2, machine.getQuantaRun(), "Quanta do not run before they are due");
+        assertEquals(600, machine.getCyclesRun(), "Each quantum runs 300ms worth of cycles");
+    }
+
+    @Test
+    public void testDeadlineRounding() throws InterruptedException {
+        clock.set(500_000L);
+        ScheduledMachine machine = scheduler.schedule(createMachine(), 10_000, 1_000_000L);
+        scheduler.start();
+
+        clock.set(1_500_000L);
+        Thread.sleep(20);
+        assertEquals(0, machine.getQuantaRun(), "Quanta do not run before the tick their deadline is rounded up to");
+        clock.set(1_999_999L);
+        Thread.sleep(20);
+        assertEquals(0, machine.getQuantaRun(), "Quanta do not run before the tick their deadline is rounded up to");
+
+        clock.set(2_000_000L);
+        await(() -> machine.getQuantaRun() == 1, "Quanta run once the tick their deadline is rounded up to has passed");
+    }
+
+    @Test
+    public void testBreakpoint() throws InterruptedException {
+        Machine stopped = createMachine();
+        Breakpoints breakpoints = new Breakpoints();
+        breakpoints.add(0xFFFC);
+        stopped.getCpu().setBreakpoints(breakpoints);
+        ScheduledMachine machine = scheduler.schedule(stopped, 10_000, 10_000_000L);
+        scheduler.start();
+
+        clock.addAndGet(10_000_000L);
+        await(machine::isPaused, "Machines are paused when the cpu stops at a breakpoint");
+        clock.addAndGet(50_000_000L);
+        Thread.sleep(20);
+        assertEquals(1, machine.getQuantaRun(), "Machines stopped at a breakpoint are not run again");
+        assertEquals(0, machine.getCyclesRun(), "No cycles run past the breakpoint");
+
+        breakpoints.clear();
+        stopped.getCpu().resume();
+        machine.resume();
+        clock.addAndGet(10_000_000L);
+        await(() -> machine.getQuantaRun() == 2, "Machines run again once the cpu and the machine are resumed");
+        assertEquals(100, machine.getCyclesRun(), "The resumed machine runs a full quantum");
+        assertFalse(machine.isPaused(), "The resumed machine is not paused");
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        ScheduledMachine machine = scheduler.schedule(createMachine(), 10_000, 10_000_000L);
+        scheduler.start();
+        for (int quantum = 1; quantum <= 5; quantum++) {
+            clock.addAndGet(10_000_000L);
+            int expected = quantum;
+            await(() -> machine.getQuantaRun() == expected, "Machine runs before it is cancelled");
+        }
+        machine.cancel();
+
+        clock.addAndGet(50_000_000L);
+        Thread.sleep(20);
+
+        assertEquals(5, machine.getQuantaRun(), "Machine stops running after it is cancelled");
+        assertEquals(0, scheduler.getScheduledCount(), "Cancelled machines are not counted");
+    }
+
+    @Test
+    public void testShutdownWhileDispatching() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            scheduler.schedule(createMachine(), 10_000, 1_000_000L);
+        }
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> uncaught.set(e));
+        try {
+            scheduler.start();
+            for (int i = 0; i < 50; i++) {
+                clock.addAndGet(1_000_000L);
+                Thread.yield();
+            }
+            scheduler.shutdown();
+            assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS), "Workers finish after shutdown");
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+        assertEquals(null, uncaught.get(), "Shutting down does not fail the timer thread");
+    }
+}